@@ -0,0 +1,40 @@
+package jobmanager.bench;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link SpecifyJobBenchmark} at 1, 2, 4 and 8 producer threads, then the latency and storm
+ * benchmarks. Any JMH command-line options (e.g. {@code -p manager=JobManager}) are passed through.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar jobmanager.bench.BenchmarkRunner
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] PRODUCER_THREADS = {1, 2, 4, 8};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options commandLine = new CommandLineOptions(args);
+        for (int threads : PRODUCER_THREADS) {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .include(SpecifyJobBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .include(ReleaseLatencyBenchmark.class.getSimpleName())
+                .include(LoginStormBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package jobmanager.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for a storm of {@code stormSize} servers, all calling {@code serverLogin} at once, to be
+ * registered and released by one job that needs every one of them.
+ *
+ * <p>Half of the storm logs in as ComputeServers and half as StorageServers, so the striped manager
+ * can spread the logins over two locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(1)
+public class LoginStormBenchmark {
+
+    @Param({"JobManager", "JobManager:COMBINING", "StripedJobManager"})
+    String manager;
+
+    @Param({"16", "128", "512"})
+    int stormSize;
+
+    Object jobManager;
+    private CyclicBarrier start;
+    private final Semaphore released = new Semaphore(0);
+    private final List<Thread> storm = new ArrayList<>();
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        jobManager = Managers.newManager(manager);
+        released.drainPermits();
+        start = new CyclicBarrier(stormSize + 1);
+        for (int i = 0; i < stormSize; i++) {
+            String type = i % 2 == 0 ? Workload.COMPUTE : Workload.STORAGE;
+            int id = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    while (true) {
+                        start.await();
+                        Managers.serverLogin(jobManager, type, id);
+                        released.release();
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    // TEAR DOWN
+                }
+            }, "storm-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            storm.add(thread);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        // EVERY STORM THREAD IS BACK AT THE BARRIER, NOT INSIDE serverLogin
+        for (Thread thread : storm) {
+            thread.interrupt();
+        }
+        for (Thread thread : storm) {
+            thread.join();
+        }
+        storm.clear();
+    }
+
+    @Benchmark
+    public void loginStorm() throws InterruptedException, BrokenBarrierException {
+        Map<String, Integer> job = Managers.newJob("storm" + next++);
+        job.put(Workload.COMPUTE, (stormSize + 1) / 2);
+        job.put(Workload.STORAGE, stormSize / 2);
+        Managers.specifyJob(jobManager, job);
+        start.await();
+        released.acquire(stormSize);
+    }
+}
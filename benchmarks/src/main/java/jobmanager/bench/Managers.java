@@ -0,0 +1,106 @@
+package jobmanager.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.Map;
+
+/**
+ * Reflective access to the coursework classes in {@code ../src}.
+ *
+ * <p>Those classes live in the default package, which cannot be imported from a named package, and
+ * JMH refuses to generate code for benchmarks in the default package. So the benchmarks hold a
+ * {@code Manager} as a plain {@code Object} and call it through method handles resolved once here.
+ */
+final class Managers {
+
+    private static final MethodHandle NEW_JOB;
+    private static final MethodHandle SPECIFY_JOB;
+    private static final MethodHandle SERVER_LOGIN;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> manager = Class.forName("Manager");
+            Class<?> jobRequest = Class.forName("JobRequest");
+
+            Constructor<?> newJob = jobRequest.getDeclaredConstructor(String.class);
+            newJob.setAccessible(true);
+            NEW_JOB = lookup.unreflectConstructor(newJob)
+                    .asType(MethodType.methodType(Map.class, String.class));
+            SPECIFY_JOB = lookup.findVirtual(manager, "specifyJob", MethodType.methodType(void.class, jobRequest))
+                    .asType(MethodType.methodType(void.class, Object.class, Map.class));
+            SERVER_LOGIN = lookup.findVirtual(manager, "serverLogin",
+                            MethodType.methodType(String.class, String.class, int.class))
+                    .asType(MethodType.methodType(String.class, Object.class, String.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Managers() {
+    }
+
+    /**
+     * Creates a Manager by the simple name of its class, e.g. {@code "JobManager"}. A JobManager can
+     * be given a {@code LockMode} after a colon, e.g. {@code "JobManager:COMBINING"}.
+     */
+    static Object newManager(String name) {
+        int colon = name.indexOf(':');
+        String className = colon < 0 ? name : name.substring(0, colon);
+        try {
+            Object manager;
+            if (colon < 0) {
+                manager = Class.forName(className).getConstructor().newInstance();
+            } else {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                Class<? extends Enum> lockMode = (Class<? extends Enum>) Class.forName("LockMode");
+                manager = Class.forName(className).getConstructor(lockMode)
+                        .newInstance(Enum.valueOf(lockMode, name.substring(colon + 1)));
+            }
+            if (!Class.forName("Manager").isInstance(manager)) {
+                throw new IllegalArgumentException(className + " does not implement Manager");
+            }
+            return manager;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("cannot create Manager " + className, e);
+        }
+    }
+
+    /** Creates an empty JobRequest; fill in its requirements with {@code put(type, count)}. */
+    @SuppressWarnings("unchecked")
+    static Map<String, Integer> newJob(String jobName) {
+        try {
+            return (Map<String, Integer>) NEW_JOB.invokeExact(jobName);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void specifyJob(Object manager, Map<String, Integer> job) {
+        try {
+            SPECIFY_JOB.invokeExact(manager, job);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static String serverLogin(Object manager, String type, int id) {
+        try {
+            return (String) SERVER_LOGIN.invokeExact(manager, type, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
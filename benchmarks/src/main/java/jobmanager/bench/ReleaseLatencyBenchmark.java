@@ -0,0 +1,92 @@
+package jobmanager.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency from the call that makes a job runnable until every one of its servers has been released.
+ *
+ * <ul>
+ * <li>{@link #specifyToRelease}: the servers are already waiting and the job is submitted.</li>
+ * <li>{@link #loginToRelease}: the job is pending one server short and the benchmark thread logs
+ * in as that last server.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(1)
+public class ReleaseLatencyBenchmark {
+
+    @Param({"JobManager", "JobManager:COMBINING", "StripedJobManager"})
+    String manager;
+
+    @Param({"SINGLE_TYPE", "MULTI_TYPE"})
+    Workload workload;
+
+    /** Scales the job, see {@link Workload}. */
+    @Param({"1", "10"})
+    int width;
+
+    Object jobManager;
+    private final Semaphore released = new Semaphore(0);
+    private final List<ServerPool> pools = new ArrayList<>();
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setUp(org.openjdk.jmh.infra.BenchmarkParams params) {
+        jobManager = Managers.newManager(manager);
+        released.drainPermits();
+        boolean login = params.getBenchmark().endsWith("loginToRelease");
+        // FOR loginToRelease THE POOL IS ONE SERVER SHORT OF THE JOB, OTHERWISE IT HOLDS TWO JOBS' WORTH
+        int compute = login ? workload.compute(width) - (lastType().equals(Workload.COMPUTE) ? 1 : 0)
+                : 2 * workload.compute(width);
+        int storage = login ? Math.max(0, workload.storage(width) - 1) : 2 * workload.storage(width);
+        pools.add(new ServerPool(jobManager, Workload.COMPUTE, compute, 0, job -> released.release()).start());
+        pools.add(new ServerPool(jobManager, Workload.STORAGE, storage, 0, job -> released.release()).start());
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        pools.forEach(ServerPool::stop);
+        pools.clear();
+    }
+
+    private String lastType() {
+        return workload.storage(width) > 0 ? Workload.STORAGE : Workload.COMPUTE;
+    }
+
+    @Benchmark
+    public void specifyToRelease() throws InterruptedException {
+        Managers.specifyJob(jobManager, workload.newJob("job" + next++, width));
+        released.acquire(workload.servers(width));
+    }
+
+    @Benchmark
+    public String loginToRelease() throws InterruptedException {
+        Managers.specifyJob(jobManager, workload.newJob("job" + next++, width));
+        String job = Managers.serverLogin(jobManager, lastType(), Integer.MAX_VALUE);
+        released.acquire(workload.servers(width) - 1);
+        return job;
+    }
+}
@@ -0,0 +1,64 @@
+package jobmanager.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A fixed set of server threads of one type that keep logging in to a Manager.
+ *
+ * <p>Each thread calls {@code serverLogin} in a loop and hands every job name it is released with to
+ * a callback, so a benchmark can count releases. {@link #stop()} releases the blocked threads with
+ * throw-away jobs named {@value #DRAIN_PREFIX}... and waits for them to exit.
+ */
+final class ServerPool {
+
+    static final String DRAIN_PREFIX = "drain-";
+
+    private final Object manager;
+    private final String type;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean stopping;
+
+    ServerPool(Object manager, String type, int count, int firstId, Consumer<String> onRelease) {
+        this.manager = manager;
+        this.type = type;
+        for (int i = 0; i < count; i++) {
+            int id = firstId + i;
+            Thread thread = new Thread(() -> {
+                while (!stopping) {
+                    String job = Managers.serverLogin(manager, type, id);
+                    if (!job.startsWith(DRAIN_PREFIX)) {
+                        onRelease.accept(job);
+                    }
+                }
+            }, type + "-" + id);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+    }
+
+    ServerPool start() {
+        threads.forEach(Thread::start);
+        return this;
+    }
+
+    void stop() {
+        stopping = true;
+        int drained = 0;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                Map<String, Integer> drain = Managers.newJob(DRAIN_PREFIX + type + "-" + drained++);
+                drain.put(type, 1);
+                Managers.specifyJob(manager, drain);
+                try {
+                    thread.join(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package jobmanager.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Closed-loop {@code specifyJob} throughput: jobs per second that are submitted and fully released.
+ *
+ * <p>Every benchmark thread is a producer. Each invocation submits {@value #BATCH} jobs and waits
+ * until all of their servers have been released, which keeps the queue bounded. A pool of server
+ * threads per type logs straight back in after every release. Run with {@code -t N} (or through
+ * {@link BenchmarkRunner}) to vary the number of producers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class SpecifyJobBenchmark {
+
+    static final int BATCH = 16;
+    private static final int MAX_PRODUCERS = 1024;
+
+    @Param({"JobManager", "JobManager:COMBINING", "StripedJobManager"})
+    String manager;
+
+    @Param({"SINGLE_TYPE", "MULTI_TYPE", "DEEP_BACKLOG"})
+    Workload workload;
+
+    /** Server threads per server type. */
+    @Param({"8", "64"})
+    int servers;
+
+    Object jobManager;
+    final Semaphore[] released = new Semaphore[MAX_PRODUCERS];
+    private final AtomicInteger producerIds = new AtomicInteger();
+    private final List<ServerPool> pools = new ArrayList<>();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        jobManager = Managers.newManager(manager);
+        for (int i = 0; i < MAX_PRODUCERS; i++) {
+            released[i] = new Semaphore(0);
+        }
+        workload.fillBacklog(jobManager);
+        pools.add(new ServerPool(jobManager, Workload.COMPUTE, servers, 0, this::onRelease).start());
+        if (workload.storage(1) > 0) {
+            pools.add(new ServerPool(jobManager, Workload.STORAGE, servers, 0, this::onRelease).start());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        pools.forEach(ServerPool::stop);
+        pools.clear();
+    }
+
+    // JOB NAMES ARE "p<producer>-<n>", SO A RELEASE CAN BE CREDITED TO ITS PRODUCER
+    private void onRelease(String jobName) {
+        released[Integer.parseInt(jobName, 1, jobName.indexOf('-'), 10)].release();
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int id;
+        long next;
+
+        @Setup(Level.Trial)
+        public void setUp(SpecifyJobBenchmark benchmark) {
+            id = benchmark.producerIds.getAndIncrement();
+            if (id >= MAX_PRODUCERS) {
+                throw new IllegalStateException("at most " + MAX_PRODUCERS + " producer threads");
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void specifyJob(Producer producer) throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            Managers.specifyJob(jobManager, workload.newJob("p" + producer.id + "-" + producer.next++, 1));
+        }
+        released[producer.id].acquire(BATCH * workload.servers(1));
+    }
+}
@@ -0,0 +1,66 @@
+package jobmanager.bench;
+
+import java.util.Map;
+
+/**
+ * The shapes of job the benchmarks submit.
+ *
+ * <p>{@code width} scales every requirement, so a width-10 {@link #MULTI_TYPE} job needs twenty
+ * ComputeServers and ten StorageServers.
+ */
+public enum Workload {
+
+    /** Jobs that need only ComputeServers. */
+    SINGLE_TYPE(1, 0, 0),
+
+    /** Jobs that need two ComputeServers for every StorageServer, as in {@code exampleUR2Test}. */
+    MULTI_TYPE(2, 1, 0),
+
+    /** SINGLE_TYPE jobs queued behind a backlog of jobs needing a server type that never logs in. */
+    DEEP_BACKLOG(1, 0, 10_000);
+
+    static final String COMPUTE = "ComputeServer";
+    static final String STORAGE = "StorageServer";
+    static final String MISSING = "ArchiveServer";
+
+    private final int compute;
+    private final int storage;
+    private final int backlog;
+
+    Workload(int compute, int storage, int backlog) {
+        this.compute = compute;
+        this.storage = storage;
+        this.backlog = backlog;
+    }
+
+    int compute(int width) {
+        return compute * width;
+    }
+
+    int storage(int width) {
+        return storage * width;
+    }
+
+    int servers(int width) {
+        return compute(width) + storage(width);
+    }
+
+    Map<String, Integer> newJob(String jobName, int width) {
+        Map<String, Integer> job = Managers.newJob(jobName);
+        job.put(COMPUTE, compute(width));
+        if (storage > 0) {
+            job.put(STORAGE, storage(width));
+        }
+        return job;
+    }
+
+    /** Queues the jobs that can never run, ahead of the measured ones. */
+    void fillBacklog(Object manager) {
+        for (int i = 0; i < backlog; i++) {
+            Map<String, Integer> job = Managers.newJob("backlog-" + i);
+            job.put(MISSING, 1);
+            job.put(COMPUTE, 1);
+            Managers.specifyJob(manager, job);
+        }
+    }
+}
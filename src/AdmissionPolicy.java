@@ -0,0 +1,18 @@
+// ADMISSION POLICY
+// WHAT JobManager DOES WITH A NEW JOB WHEN ITS QUEUE IS AT ONE OF ITS LIMITS (THE GLOBAL
+// LIMIT ON PENDING JOBS, OR THE LIMIT ON PENDING JOBS NEEDING ONE OF THE JOB'S TYPES).
+// SET WITH JobManager.setAdmissionPolicy() AND THE LIMITS WITH JobManager.setQueueLimit().
+public enum AdmissionPolicy {
+
+	// TURN THE NEW JOB AWAY: specifyJob THROWS JobRejectedException (THE DEFAULT).
+	REJECT,
+
+	// HOLD specifyJob UNTIL THERE IS ROOM, UP TO THE ADMISSION TIMEOUT, AND THEN
+	// REJECT THE JOB AS REJECT DOES. BLOCKED SUBMITTERS ARE LET IN OLDEST FIRST.
+	BLOCK,
+
+	// MAKE ROOM BY DROPPING THE OLDEST PENDING JOB THAT COUNTS AGAINST THE LIMIT (ANY
+	// JOB FOR THE GLOBAL LIMIT, ONE NEEDING THE TYPE FOR A TYPE'S LIMIT). THE DROPPED
+	// JOB IS REMOVED AS cancelJob WOULD REMOVE IT.
+	SHED_OLDEST
+}
@@ -0,0 +1,12 @@
+import java.util.function.Consumer;
+
+// A Manager that also lets a server log in without blocking a thread.
+// The Manager interface itself must not be changed, so the asynchronous login is an extension of it.
+public interface AsyncManager extends Manager {
+
+	// Logs the server in and returns straight away.
+	// When the server is picked for a job, onAssigned is called once with the job name, on the thread
+	// whose specifyJob or serverLogin call released the job, after that call has released its lock.
+	// Asynchronous and blocking logins share the same idle servers and are matched by the same rules.
+	public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned);
+}
@@ -0,0 +1,10 @@
+import java.util.Collection;
+
+// A Manager that can also take many jobs in one call.
+// The Manager interface itself must not be changed, so batch submission is an extension of it.
+public interface BatchManager extends Manager {
+
+	// Queues every job in the order given, as if specifyJob had been called on each in turn,
+	// and releases servers in the same FIFO order that those calls would have.
+	public void specifyJobs(Collection<JobRequest> jobs);
+}
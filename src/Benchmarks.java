@@ -0,0 +1,1066 @@
+//////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+//        BENCHMARKS
+//        Rough timings for the JobManager data structures, run with:
+//            java Benchmarks
+//
+//        NOTE: these are simple System.nanoTime() loops with a warm-up round, good enough to compare
+//              one structure against another on the same machine but not a replacement for a proper
+//              benchmark harness.
+//
+//////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.*;
+
+public class Benchmarks {
+
+	// GIVES UP ON A RUN WHOSE MANAGER HAS RELEASED NOTHING FOR THIS LONG
+	private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	public static void main(String[] args) {
+		Benchmarks benchmarks = new Benchmarks();
+
+		System.out.println("\n\nJob queue (middle removal):");
+		benchmarks.jobQueueBenchmark();
+
+		// 1M PARKED LOGINS NEED VIRTUAL THREADS, PLATFORM THREADS ARE KEPT TO 10k
+		int parked = ServerLauncher.virtualThreadsSupported() ? 1_000_000 : 10_000;
+		System.out.println("\n\nParked logins (" + parked + " servers):");
+		benchmarks.parkedLoginLoadTest(parked);
+
+		System.out.println("\n\nScheduling policies (simulated):");
+		benchmarks.schedulingPolicySimulation();
+
+		System.out.println("\n\nSharded manager scaling (8 submitting threads):");
+		benchmarks.shardScalingTest(50_000);
+
+		System.out.println("\n\nJournal (durable submissions):");
+		benchmarks.journalBenchmark(25_000);
+
+		System.out.println("\n\nJob descriptors (JobRequest vs JobSpec):");
+		benchmarks.jobSpecBenchmark(200_000);
+
+		System.out.println("\n\nTrace replay (the same recorded load into each manager):");
+		benchmarks.traceReplayBenchmark(10_000);
+
+		System.out.println("\n\nCapacity packing (10k idle servers, cores and memory):");
+		benchmarks.capacityPackingBenchmark(10_000, 50_000);
+
+		System.out.println("\n\nRelease latency (condition wake-up vs handoff):");
+		benchmarks.releaseLatencyBenchmark();
+
+		System.out.println("\n\nLock contention (64 servers, 4 submitters):");
+		benchmarks.lockContentionBenchmark(20_000);
+
+		System.out.println("\n\nServer selection (racks of 50 compute and 50 storage servers):");
+		benchmarks.serverSelectionBenchmark(20_000);
+
+		System.out.println("\n\nGang reservations (60 compute and 12 storage servers, a big job every 500 steps):");
+		benchmarks.gangReservationBenchmark(20_000);
+	}
+
+	// JOB QUEUE BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// COMPARES THE OLD LinkedList<JobRequest> PENDING QUEUE WITH JobQueue.
+	// THE QUEUE IS FILLED WITH N JOBS, THEN A JOB FROM A RANDOM POSITION IS TAKEN OUT
+	// (AS HAPPENS WHEN A JOB BEHIND AN UNSATISFIABLE ONE IS RELEASED) AND A NEW JOB IS
+	// ADDED AT THE BACK, KEEPING THE QUEUE AT N JOBS.
+	public void jobQueueBenchmark() {
+		int[] sizes = { 1_000, 10_000, 100_000 };
+		int removals = 2_000;
+
+		// WARM UP BOTH QUEUES BEFORE TIMING
+		linkedListRemovals(10_000, removals);
+		jobQueueRemovals(10_000, removals);
+
+		System.out.printf("%10s %22s %22s%n", "queued", "LinkedList ns/op", "JobQueue ns/op");
+		for (int size : sizes) {
+			double linkedList = linkedListRemovals(size, removals);
+			double jobQueue = jobQueueRemovals(size, removals);
+			System.out.printf("%10d %22.1f %22.1f%n", size, linkedList, jobQueue);
+		}
+	}
+
+	// THE OLD PATTERN: FIND THE JOB BY INDEX WITH get(i), THEN remove(i)
+	private double linkedListRemovals(int size, int removals) {
+		Random random = new Random(42);
+		LinkedList<JobRequest> queue = new LinkedList<>();
+		for (int i = 0; i < size; i++) {
+			queue.add(newJob(i));
+		}
+		long checksum = 0;
+		long start = System.nanoTime();
+		for (int r = 0; r < removals; r++) {
+			int i = random.nextInt(queue.size());
+			JobRequest job = queue.get(i);
+			queue.remove(i);
+			checksum += job.jobName.length();
+			queue.add(newJob(size + r));
+		}
+		long elapsed = System.nanoTime() - start;
+		consume(checksum);
+		return (double) elapsed / removals;
+	}
+
+	// THE NEW PATTERN: REMOVE THE JOB THROUGH THE NODE HANDLE THE MATCHER KEEPS
+	private double jobQueueRemovals(int size, int removals) {
+		Random random = new Random(42);
+		JobQueue queue = new JobQueue();
+		JobQueue.Node[] handles = new JobQueue.Node[size];
+		for (int i = 0; i < size; i++) {
+			handles[i] = new JobQueue.Node(newJob(i));
+			queue.add(handles[i]);
+		}
+		long checksum = 0;
+		long start = System.nanoTime();
+		for (int r = 0; r < removals; r++) {
+			int i = random.nextInt(size);
+			JobQueue.Node node = handles[i];
+			queue.remove(node);
+			checksum += node.getJob().jobName.length();
+			handles[i] = new JobQueue.Node(newJob(size + r));
+			queue.add(handles[i]);
+		}
+		long elapsed = System.nanoTime() - start;
+		consume(checksum);
+		return (double) elapsed / removals;
+	}
+
+	// PARKED LOGIN LOAD TEST
+	// --------------------------------------------------------------------------------------------------------------------------
+	// LAUNCHES `servers` COMPUTESERVERS (ON VIRTUAL THREADS WHEN AVAILABLE), WAITS
+	// UNTIL EVERY ONE OF THEM IS PARKED IN serverLogin, THEN RELEASES THEM ALL WITH A
+	// BATCH OF JOBS NEEDING 1000 SERVERS EACH.
+	// CHECKS THAT EVERY SERVER IS RELEASED EXACTLY ONCE AND THAT THE HIGHEST IDS GO TO
+	// THE EARLIEST JOBS, AND REPORTS THE HEAP USED PER PARKED SERVER.
+	public void parkedLoginLoadTest(int servers) {
+		int perJob = Math.min(1_000, servers);
+		int jobs = servers / perJob;
+		JobManager manager = new JobManager();
+		ServerLauncher launcher = new ServerLauncher(manager);
+		String[] releasedWith = new String[servers];
+		AtomicInteger released = new AtomicInteger();
+
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		for (int id = 0; id < servers; id++) {
+			launcher.launch("ComputeServer", id, (ID, job) -> {
+				releasedWith[ID] = job;
+				released.incrementAndGet();
+			});
+		}
+		while (manager.getIdleServerCount("ComputeServer") < servers) {
+			pause();
+		}
+		long parkedNanos = System.nanoTime() - start;
+		long heapParked = usedHeap();
+
+		ArrayList<JobRequest> batch = new ArrayList<>();
+		for (int j = 0; j < jobs; j++) {
+			JobRequest job = new JobRequest("job" + j);
+			job.put("ComputeServer", perJob);
+			batch.add(job);
+		}
+		start = System.nanoTime();
+		manager.specifyJobs(batch);
+		while (released.get() < jobs * perJob) {
+			pause();
+		}
+		long releaseNanos = System.nanoTime() - start;
+
+		// JOB j MUST HAVE TAKEN THE j-TH BLOCK OF IDS COUNTING DOWN FROM THE HIGHEST
+		int wrong = 0;
+		for (int id = 0; id < servers; id++) {
+			int block = (servers - 1 - id) / perJob;
+			String expected = block < jobs ? "job" + block : null;
+			if (!Objects.equals(expected, releasedWith[id])) {
+				wrong++;
+			}
+		}
+
+		System.out.println("threads:              " + (launcher.isVirtual() ? "virtual" : "platform"));
+		System.out.printf("all parked after:     %d ms%n", parkedNanos / 1_000_000);
+		System.out.printf("heap per parked login: %d bytes%n", (heapParked - heapBefore) / servers);
+		System.out.printf("all released after:   %d ms%n", releaseNanos / 1_000_000);
+		System.out.println("released:             " + released.get() + " (" + wrong + " with the wrong job)");
+	}
+
+	// SHARD SCALING TEST
+	// --------------------------------------------------------------------------------------------------------------------------
+	// RUNS THE SAME LOAD ON A ShardedJobManager WITH 1, 2, 4 AND 8 SHARDS.
+	// 8 SUBMITTER THREADS EACH SPECIFY `jobsPerThread` JOBS NEEDING 1 OR 2
+	// COMPUTESERVERS. 512 ASYNCHRONOUS SERVERS SERVE THEM: A SERVER HANDED A JOB GOES ON
+	// A FREE LIST, AND THE SUBMITTERS LOG THE FREE SERVERS IN AGAIN BETWEEN JOBS (NOT
+	// FROM INSIDE THE CALLBACK, WHICH WOULD RECURSE THROUGH THE MANAGER). ONE JOB IN A HUNDRED NEEDS MORE SERVERS THAN ONE SHARD HAS
+	// (WHEN THERE IS MORE THAN ONE SHARD), SO THE CROSS-SHARD RESERVE/COMMIT PATH RUNS TOO.
+	// THEN AGAIN JOBS-FIRST: A HUNDREDTH AS MANY JOBS, NONE OF THEM BIG, ARE ALL SPECIFIED
+	// BEFORE ANY SERVER LOGS IN, SO THEY ALL WAIT WITH THE ROUTER AT FIRST. HERE THE
+	// CROSS-SHARD COLUMN IS HOW MANY ARE STILL THERE ONCE EVERY SERVER HAS LOGGED IN, WHICH
+	// SHOULD BE NONE: EACH JOB MOVES TO ITS HOME SHARD AS SOON AS THAT SHARD HAS THE SERVERS.
+	// REPORTS JOBS RELEASED PER SECOND.
+	public void shardScalingTest(int jobsPerThread) {
+		shardScalingTest(jobsPerThread, false);
+		shardScalingTest(jobsPerThread / 100, true);
+	}
+
+	private void shardScalingTest(int jobsPerThread, boolean jobsFirst) {
+		int threads = 8;
+		int servers = 512;
+		System.out.printf("%12s %10s %14s %14s%n", "order", "shards", "jobs/s", "cross-shard");
+		for (int shards : new int[] { 1, 2, 4, 8 }) {
+			ShardedJobManager manager = new ShardedJobManager(shards);
+			AtomicLong needed = new AtomicLong();
+			AtomicLong assigned = new AtomicLong();
+			AtomicInteger crossShard = new AtomicInteger();
+			ConcurrentLinkedQueue<Integer> free = new ConcurrentLinkedQueue<>();
+			Consumer<Integer> login = id -> manager.serverLoginAsync("ComputeServer", id, job -> {
+				assigned.incrementAndGet();
+				free.add(id);
+			});
+			if (!jobsFirst) {
+				for (int id = 0; id < servers; id++) {
+					login.accept(id);
+				}
+			}
+
+			int bigJob = servers / shards + 1;
+			Thread[] submitters = new Thread[threads];
+			long start = System.nanoTime();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				submitters[t] = new Thread(() -> {
+					Random random = new Random(thread);
+					for (int j = 0; j < jobsPerThread; j++) {
+						JobRequest job = new JobRequest("t" + thread + "-job" + j);
+						boolean big = !jobsFirst && shards > 1 && j % 100 == 99;
+						int count = big ? bigJob : 1 + random.nextInt(2);
+						job.put("ComputeServer", count);
+						needed.addAndGet(count);
+						if (big) {
+							crossShard.incrementAndGet();
+						}
+						manager.specifyJob(job);
+						for (Integer id = free.poll(); id != null; id = free.poll()) {
+							login.accept(id);
+						}
+					}
+				});
+				submitters[t].start();
+			}
+			for (Thread submitter : submitters) {
+				try {
+					submitter.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if (jobsFirst) {
+				for (int id = 0; id < servers; id++) {
+					login.accept(id);
+				}
+				crossShard.set(manager.getCrossShardJobCount());
+			}
+			// LOGS THE FREE SERVERS IN AGAIN UNTIL EVERY JOB HAS ALL ITS SERVERS, PARKING
+			// BRIEFLY WHEN NONE IS FREE, AND GIVES UP IF NOTHING IS ASSIGNED FOR STALL_NANOS
+			long lastAssigned = assigned.get();
+			long lastProgress = System.nanoTime();
+			while (assigned.get() < needed.get()) {
+				Integer id = free.poll();
+				if (id != null) {
+					login.accept(id);
+				} else if (assigned.get() != lastAssigned) {
+					lastAssigned = assigned.get();
+					lastProgress = System.nanoTime();
+				} else if (System.nanoTime() - lastProgress >= STALL_NANOS) {
+					break;
+				} else {
+					LockSupport.parkNanos(20_000);
+				}
+			}
+			if (assigned.get() < needed.get()) {
+				System.out.printf("%12s %10d %14s %14d   stalled with %d of %d servers assigned%n",
+						jobsFirst ? "jobs-first" : "servers-first", shards, "-", crossShard.get(), assigned.get(),
+						needed.get());
+				continue;
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%12s %10d %14.0f %14d%n", jobsFirst ? "jobs-first" : "servers-first", shards,
+					threads * jobsPerThread / seconds, crossShard.get());
+		}
+	}
+
+	// JOURNAL BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// specifyJob THROUGHPUT WITH THE JOURNAL OFF, ON WITH ASYNC FLUSHING, AND ON WITH
+	// GROUP COMMIT, FROM 1 AND FROM 8 SUBMITTING THREADS, THEN THE TIME TO RECOVER THE
+	// QUEUE FROM THE LAST RUN'S JOURNAL. NO SERVERS LOG IN, SO EVERY JOB STAYS QUEUED
+	// (AND IS IN THE SNAPSHOTS AND REPLAY).
+	public void journalBenchmark(int jobsPerThread) {
+		System.out.printf("%10s %10s %14s%n", "journal", "threads", "jobs/s");
+		Path directory = null;
+		for (JobJournal.Durability durability : new JobJournal.Durability[] { null, JobJournal.Durability.ASYNC,
+				JobJournal.Durability.GROUP }) {
+			for (int threads : new int[] { 1, 8 }) {
+				try {
+					if (directory != null) {
+						deleteDirectory(directory);
+					}
+					directory = Files.createTempDirectory("journal");
+					JobJournal journal = durability == null ? null : JobJournal.open(directory, durability);
+					JobManager manager = new JobManager(false, journal);
+					double seconds = submitFromThreads(manager, threads, jobsPerThread);
+					if (journal != null) {
+						journal.close();
+					}
+					System.out.printf("%10s %10d %14.0f%n", durability == null ? "off" : durability, threads,
+							threads * jobsPerThread / seconds);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		// THE LAST RUN (GROUP COMMIT, 8 THREADS) LEFT ITS WHOLE QUEUE IN THE JOURNAL
+		try {
+			long start = System.nanoTime();
+			JobJournal journal = JobJournal.open(directory, JobJournal.Durability.ASYNC);
+			JobManager recovered = new JobManager(false, journal);
+			long elapsed = System.nanoTime() - start;
+			System.out.printf("recovered %d queued jobs in %d ms%n", journal.getRecoveredJobs().size(),
+					elapsed / 1_000_000);
+			journal.close();
+			consume(recovered.hashCode());
+			deleteDirectory(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	// SPECIFIES `jobsPerThread` JOBS FROM EACH OF `threads` THREADS AND RETURNS THE SECONDS TAKEN
+	private double submitFromThreads(Manager manager, int threads, int jobsPerThread) {
+		Thread[] submitters = new Thread[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			submitters[t] = new Thread(() -> {
+				for (int j = 0; j < jobsPerThread; j++) {
+					JobRequest job = new JobRequest("t" + thread + "-job" + j);
+					job.put("ComputeServer", 1 + j % 4);
+					job.put("StorageServer", 1);
+					manager.specifyJob(job);
+				}
+			});
+			submitters[t].start();
+		}
+		for (Thread submitter : submitters) {
+			try {
+				submitter.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	// JOB SPEC BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// SUBMITS `jobs` TWO-TYPE JOBS ONE AT A TIME AS JobRequests AND AS JobSpecs. THE
+	// SERVERS ARE ALREADY IDLE, SO EACH JOB IS RELEASED AT ONCE AND THEN COMPLETED, WHICH
+	// HANDS ITS SERVERS BACK FOR THE NEXT JOB.
+	// REPORTS THE TIME AND THE BYTES ALLOCATED BY THE SUBMITTING THREAD PER JOB (THE JOB
+	// NAMES ARE MADE BEFOREHAND AND NOT COUNTED). THE MANAGER'S OWN PER-JOB RECORDS ARE
+	// IN BOTH, ONLY THE DESCRIPTOR DIFFERS.
+	public void jobSpecBenchmark(int jobs) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		String[] names = new String[jobs];
+		for (int j = 0; j < jobs; j++) {
+			names[j] = "job" + j;
+		}
+		System.out.printf("%16s %10s %12s%n", "descriptor", "ns/job", "bytes/job");
+		for (String variant : new String[] { "JobRequest", "JobSpec" }) {
+			// THE FIRST ROUND IS A WARM-UP
+			for (int round = 0; round < 2; round++) {
+				JobManager manager = new JobManager();
+				Consumer<String> ignore = job -> {
+				};
+				for (int id = 0; id < 4; id++) {
+					manager.serverLoginAsync("ComputeServer", id, ignore);
+				}
+				manager.serverLoginAsync("StorageServer", 4, ignore);
+				JobSpec.Builder builder = new JobSpec.Builder(manager.getTypeRegistry());
+
+				long allocated = threads.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				for (int j = 0; j < jobs; j++) {
+					if (variant.equals("JobRequest")) {
+						JobRequest job = new JobRequest(names[j]);
+						job.put("ComputeServer", 1 + j % 4);
+						job.put("StorageServer", 1);
+						manager.specifyJob(job);
+					} else {
+						manager.specifyJob(builder.start(names[j]).require("ComputeServer", 1 + j % 4)
+								.require("StorageServer", 1).build());
+					}
+					manager.completeJob(names[j]);
+				}
+				long elapsed = System.nanoTime() - start;
+				allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+				if (round == 1) {
+					System.out.printf("%16s %10d %12d%n", variant, elapsed / jobs, allocated / jobs);
+				}
+			}
+		}
+	}
+
+	// TRACE REPLAY BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// RECORDS A TRACE OF `jobs` RANDOM JOBS ARRIVING AS A POISSON PROCESS (MEAN GAP 50us)
+	// AT A JobManager WITH 16 SERVERS OF EACH OF THREE TYPES, WHICH LOG IN AGAIN AS SOON
+	// AS THEY ARE RELEASED. A LAST JOB PER TYPE NEEDING ALL OF ITS SERVERS STOPS THEM.
+	// THE TRACE IS THEN REPLAYED INTO EACH MANAGER AT THE ORIGINAL PACE AND AT FULL SPEED.
+	public void traceReplayBenchmark(int jobs) {
+		String[] types = { "ComputeServer", "StorageServer", "NetworkServer" };
+		int serversPerType = 16;
+		Path trace = null;
+		try {
+			trace = Files.createTempFile("jobmanager", ".trace");
+			TraceRecorder recorder = TraceRecorder.open(trace);
+			Manager manager = recorder.wrap(new JobManager());
+			ArrayList<Thread> servers = new ArrayList<>();
+			for (int t = 0; t < types.length; t++) {
+				String type = types[t];
+				for (int i = 0; i < serversPerType; i++) {
+					int id = t * 100 + i;
+					Thread server = new Thread(() -> {
+						while (!manager.serverLogin(type, id).equals("stop-" + type)) {
+							consume(id);
+						}
+					});
+					server.start();
+					servers.add(server);
+				}
+			}
+			Random random = new Random(18);
+			for (int j = 0; j < jobs; j++) {
+				JobRequest job = new JobRequest("job" + j);
+				for (int t = 0; t < types.length; t++) {
+					if (t == j % types.length || random.nextInt(3) == 0) {
+						job.put(types[t], 1 + random.nextInt(4));
+					}
+				}
+				manager.specifyJob(job);
+				LockSupport.parkNanos((long) (-Math.log(1 - random.nextDouble()) * 50_000));
+			}
+			for (String type : types) {
+				JobRequest stop = new JobRequest("stop-" + type);
+				stop.put(type, serversPerType);
+				manager.specifyJob(stop);
+			}
+			for (Thread server : servers) {
+				server.join();
+			}
+			recorder.close();
+			System.out.println("recorded " + recorder.getRecordedCount() + " events (" + recorder.getDroppedCount()
+					+ " dropped), " + Files.size(trace) / 1024 + " KiB");
+
+			TraceReplay replay = new TraceReplay(TraceRecorder.read(trace));
+			for (double speed : new double[] { 1, 0 }) {
+				System.out.println(speed > 0 ? "original pace:" : "full speed:");
+				TraceReplay.printHeader();
+				if (speed > 0) {
+					replay.printRecorded();
+				}
+				for (String name : new String[] { "JobManager", "JobManager:COMBINING", "StripedJobManager", "ShardedJobManager" }) {
+					replay.replay(name, TraceReplay.managerFactory(name), speed).print();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (trace != null) {
+				try {
+					Files.deleteIfExists(trace);
+				} catch (IOException e) {
+					// ONLY A TEMPORARY FILE
+				}
+			}
+		}
+	}
+
+	// RELEASE LATENCY BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// N BLOCKING COMPUTESERVERS (N = 1, 10, 100, 1000) WAIT IN serverLogin; ONCE ALL
+	// ARE IDLE, ONE JOB NEEDING ALL N IS SPECIFIED, AND EACH SERVER NOTES WHEN ITS
+	// serverLogin RETURNED BEFORE LOGGING IN AGAIN. RUN WITH THE SERVERS WOKEN ON THE
+	// MANAGER'S LOCK AND WITH WAKE-UP HANDOFF.
+	// REPORTS THE TIME FROM specifyJob TO THE LAST SERVER RETURNING (p50 AND p99 OVER
+	// THE ROUNDS) AND THE MEAN TIME TO A SERVER RETURNING.
+	public void releaseLatencyBenchmark() {
+		System.out.printf("%8s %10s %14s %14s %14s%n", "servers", "handoff", "last p50(us)", "last p99(us)",
+				"mean(us)");
+		for (int servers : new int[] { 1, 10, 100, 1_000 }) {
+			for (boolean handoff : new boolean[] { false, true }) {
+				long[] result = releaseLatency(servers, handoff, servers < 1_000 ? 200 : 40);
+				System.out.printf("%8d %10s %14.1f %14.1f %14.1f%n", servers, handoff ? "on" : "off",
+						result[0] / 1e3, result[1] / 1e3, result[2] / 1e3);
+			}
+		}
+	}
+
+	// ONE RUN OF THE RELEASE LATENCY BENCHMARK; RETURNS { p50, p99, mean } IN NANOSECONDS
+	private long[] releaseLatency(int servers, boolean handoff, int rounds) {
+		JobManager manager = new JobManager();
+		manager.setWakeupHandoff(handoff);
+		long[][] returned = new long[rounds][servers];
+		AtomicInteger releases = new AtomicInteger();
+		ArrayList<Thread> threads = new ArrayList<>();
+		for (int id = 0; id < servers; id++) {
+			int server = id;
+			Thread thread = new Thread(() -> {
+				for (int round = 0; round < rounds; round++) {
+					manager.serverLogin("ComputeServer", server);
+					returned[round][server] = System.nanoTime();
+					releases.incrementAndGet();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		long[] last = new long[rounds];
+		long total = 0;
+		for (int round = 0; round < rounds; round++) {
+			while (manager.getIdleServerCount("ComputeServer") < servers) {
+				LockSupport.parkNanos(20_000);
+			}
+			JobRequest job = new JobRequest("job" + round);
+			job.put("ComputeServer", servers);
+			long start = System.nanoTime();
+			manager.specifyJob(job);
+			while (releases.get() < (round + 1) * servers) {
+				LockSupport.parkNanos(20_000);
+			}
+			for (long at : returned[round]) {
+				last[round] = Math.max(last[round], at - start);
+				total += at - start;
+			}
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Arrays.sort(last);
+		return new long[] { last[rounds / 2], last[rounds * 99 / 100], total / ((long) rounds * servers) };
+	}
+
+	// LOCK CONTENTION BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// A LOGIN STORM AGAINST A JobManager IN EACH LockMode: 64 SERVER THREADS LOG IN
+	// ASYNCHRONOUSLY, WAIT FOR THEIR JOB AND LOG STRAIGHT IN AGAIN, WHILE 4 SUBMITTERS
+	// SPECIFY `jobsPerSubmitter` JOBS EACH NEEDING 1 TO 4 SERVERS. THE QUEUE IS HELD TO
+	// 64 JOBS WITH AdmissionPolicy.BLOCK SO THE SUBMITTERS CANNOT RUN AWAY FROM THE
+	// SERVERS.
+	// REPORTS JOBS PER SECOND AND THE p50/p99/p99.9 OF LOGIN REGISTRATION (THE TIME
+	// serverLoginAsync TAKES TO PUT THE SERVER IN THE POOL) AND OF JOB RELEASE (FROM
+	// specifyJob BEING CALLED TO A SERVER BEING HANDED THE JOB).
+	public void lockContentionBenchmark(int jobsPerSubmitter) {
+		System.out.printf("%10s %10s   %-30s %-30s%n", "lock", "jobs/s", "registration p50/p99/p99.9 us",
+				"release p50/p99/p99.9 us");
+		for (LockMode mode : LockMode.values()) {
+			lockContention(mode.toString(), new JobManager(mode), jobsPerSubmitter);
+		}
+	}
+
+	private void lockContention(String name, JobManager manager, int jobsPerSubmitter) {
+		int servers = 64;
+		int submitters = 4;
+		manager.setQueueLimit(64);
+		manager.setAdmissionPolicy(AdmissionPolicy.BLOCK, TimeUnit.MINUTES.toNanos(1));
+		long[] submitted = new long[submitters * jobsPerSubmitter];
+		AtomicReferenceArray<String> given = new AtomicReferenceArray<>(servers);
+		long[] givenAt = new long[servers];
+		LatencyHistogram[] registration = new LatencyHistogram[servers];
+		LatencyHistogram[] release = new LatencyHistogram[servers];
+		ArrayList<Thread> threads = new ArrayList<>();
+		for (int id = 0; id < servers; id++) {
+			int server = id;
+			registration[id] = new LatencyHistogram();
+			release[id] = new LatencyHistogram();
+			Thread thread = new Thread(() -> {
+				Thread self = Thread.currentThread();
+				Consumer<String> onAssigned = job -> {
+					givenAt[server] = System.nanoTime();
+					given.set(server, job);
+					LockSupport.unpark(self);
+				};
+				while (true) {
+					long start = System.nanoTime();
+					manager.serverLoginAsync("ComputeServer", server, onAssigned);
+					registration[server].record(System.nanoTime() - start);
+					String job;
+					while ((job = given.get(server)) == null) {
+						LockSupport.park(this);
+					}
+					given.set(server, null);
+					if (job.equals("stop")) {
+						return;
+					}
+					release[server].record(givenAt[server] - submitted[Integer.parseInt(job)]);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		long start = System.nanoTime();
+		ArrayList<Thread> submitterThreads = new ArrayList<>();
+		for (int t = 0; t < submitters; t++) {
+			int first = t * jobsPerSubmitter;
+			Thread submitter = new Thread(() -> {
+				for (int j = first; j < first + jobsPerSubmitter; j++) {
+					JobRequest job = new JobRequest(Integer.toString(j));
+					job.put("ComputeServer", 1 + j % 4);
+					submitted[j] = System.nanoTime();
+					manager.specifyJob(job);
+				}
+			});
+			submitter.start();
+			submitterThreads.add(submitter);
+		}
+		try {
+			for (Thread submitter : submitterThreads) {
+				submitter.join();
+			}
+			JobRequest stop = new JobRequest("stop");
+			stop.put("ComputeServer", servers);
+			manager.specifyJob(stop);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		LatencyHistogram registered = new LatencyHistogram();
+		LatencyHistogram released = new LatencyHistogram();
+		for (int id = 0; id < servers; id++) {
+			registered.add(registration[id]);
+			released.add(release[id]);
+		}
+		System.out.printf("%10s %10.0f   %-30s %-30s%n", name, submitted.length / seconds, percentiles(registered),
+				percentiles(released));
+	}
+
+	private static String percentiles(LatencyHistogram histogram) {
+		return String.format("%.1f/%.1f/%.1f", histogram.getValueAtPercentile(50) / 1e3,
+				histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3);
+	}
+
+	// CAPACITY PACKING BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// `servers` SERVERS OF ONE TYPE LOG IN ASYNCHRONOUSLY TO A CapacityJobManager WITH A
+	// CAPACITY OF 4 TO 64 CORES AND 2, 4 OR 8GB OF MEMORY PER CORE. `jobs` JOBS ASKING FOR
+	// 1 TO 128 CORES AND 1 TO 8GB PER CORE BETWEEN THEM ARE THEN SPECIFIED ONE AFTER
+	// ANOTHER; THE LAST 100 STAY RUNNING AND THE SERVERS OF OLDER ONES LOG IN AGAIN, SO
+	// ALMOST ALL OF THE SERVERS ARE IDLE WHEN EACH JOB ARRIVES.
+	// REPORTS, PER PACKING, THE CAPACITY ASKED FOR AS A SHARE OF THE CAPACITY HANDED OUT
+	// AND THE TIME TAKEN BY specifyJob (WHICH INCLUDES CHOOSING THE SERVERS).
+	public void capacityPackingBenchmark(int servers, int jobs) {
+		int running = 100;
+		int[][] capacities = new int[servers][];
+		Random random = new Random(19);
+		for (int id = 0; id < servers; id++) {
+			int cores = 4 << random.nextInt(5);
+			capacities[id] = new int[] { cores, cores * (2 << random.nextInt(3)) };
+		}
+		System.out.printf("%12s %10s %10s %10s %10s %10s%n", "packing", "cores%", "memory%", "servers/job", "p50(ns)",
+				"p99(ns)");
+		for (CapacityJobManager.Packing packing : CapacityJobManager.Packing.values()) {
+			for (int round = 0; round < 2; round++) {
+				CapacityJobManager manager = new CapacityJobManager(packing, "cores", "memoryGB");
+				ArrayList<Integer> given = new ArrayList<>();
+				ArrayDeque<int[]> runningJobs = new ArrayDeque<>();
+				for (int id = 0; id < servers; id++) {
+					int server = id;
+					manager.serverLoginAsync("ComputeServer", id, capacities[id], jobName -> given.add(server));
+				}
+				Random jobRandom = new Random(190);
+				long[] latencies = new long[jobs];
+				long serversGiven = 0;
+				for (int j = 0; j < jobs; j++) {
+					int cores = 1 + jobRandom.nextInt(128);
+					CapacityRequest job = new CapacityRequest("job" + j).require("ComputeServer", cores,
+							cores * (1 + jobRandom.nextInt(8)));
+					given.clear();
+					long start = System.nanoTime();
+					manager.specifyJob(job);
+					latencies[j] = System.nanoTime() - start;
+					serversGiven += given.size();
+					runningJobs.add(given.stream().mapToInt(Integer::intValue).toArray());
+					if (runningJobs.size() > running) {
+						for (int id : runningJobs.poll()) {
+							int server = id;
+							manager.serverLoginAsync("ComputeServer", id, capacities[id], jobName -> given.add(server));
+						}
+					}
+				}
+				if (round == 1) {
+					double[] efficiency = manager.getPackingEfficiency();
+					Arrays.sort(latencies);
+					System.out.printf("%12s %10.1f %10.1f %10.2f %10d %10d%n", packing, efficiency[0] * 100,
+							efficiency[1] * 100, (double) serversGiven / jobs, latencies[jobs / 2],
+							latencies[jobs * 99 / 100]);
+				}
+			}
+		}
+	}
+
+	// SERVER SELECTION BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// RACKS OF 50 COMPUTESERVERS AND 50 STORAGESERVERS, NUMBERED RACK BY RACK (RACK r
+	// HOLDS IDS r*100 TO r*100+99), LOG IN ASYNCHRONOUSLY TO A JobManager WITH EACH
+	// SERVER SELECTION POLICY. `jobs` JOBS NEEDING 1 TO 8 COMPUTESERVERS AND 0 TO 4
+	// STORAGESERVERS ARE SPECIFIED ONE AFTER ANOTHER; THE LAST servers/20 KEEP RUNNING
+	// (ABOUT HALF THE COMPUTESERVERS) AND THE SERVERS OF OLDER ONES LOG IN AGAIN. RUN WITH 1k AND 10k SERVERS TO SHOW THE
+	// SELECTION COST DOES NOT GROW WITH THE IDLE POOL.
+	// REPORTS THE SHARE OF JOBS ON A SINGLE RACK, RACKS PER JOB AND THE MEAN TIME
+	// specifyJob TAKES TO RELEASE A JOB.
+	public void serverSelectionBenchmark(int jobs) {
+		System.out.printf("%8s %12s %12s %12s %14s%n", "servers", "selection", "one rack%", "racks/job",
+				"specify(ns)");
+		for (int servers : new int[] { 1_000, 10_000 }) {
+			ServerSelectionPolicy[] policies = { ServerSelectionPolicy.HIGHEST_ID,
+					ServerSelectionPolicy.rackAffinity(100) };
+			for (ServerSelectionPolicy policy : policies) {
+				double[] result = null;
+				// THE FIRST ROUNDS WARM UP THE JIT
+				for (int round = 0; round < 5; round++) {
+					result = serverSelection(servers, policy, jobs);
+				}
+				System.out.printf("%8d %12s %12.1f %12.2f %14.0f%n", servers,
+						policy == ServerSelectionPolicy.HIGHEST_ID ? "HIGHEST_ID" : "rack", result[0] * 100,
+						result[1], result[2]);
+			}
+		}
+	}
+
+	// ONE RUN OF THE SERVER SELECTION BENCHMARK; RETURNS { ONE-RACK SHARE, RACKS PER JOB, NS PER JOB }
+	private double[] serverSelection(int servers, ServerSelectionPolicy policy, int jobs) {
+		int running = servers / 20;
+		JobManager manager = new JobManager();
+		manager.setServerSelectionPolicy(policy);
+		// THE (TYPE, ID) PAIRS THE LAST JOB WAS GIVEN, TYPE 0 FOR COMPUTE AND 1 FOR STORAGE
+		ArrayList<int[]> given = new ArrayList<>();
+		String[] typeNames = { "ComputeServer", "StorageServer" };
+		for (int rack = 0; rack < servers / 100; rack++) {
+			for (int slot = 0; slot < 50; slot++) {
+				for (int type = 0; type < 2; type++) {
+					int[] server = { type, rack * 100 + slot + type * 50 };
+					manager.serverLoginAsync(typeNames[type], server[1], jobName -> given.add(server));
+				}
+			}
+		}
+		Random random = new Random(24);
+		ArrayDeque<int[][]> runningJobs = new ArrayDeque<>();
+		long oneRack = 0;
+		long racks = 0;
+		long elapsed = 0;
+		for (int j = 0; j < jobs; j++) {
+			JobRequest job = new JobRequest("job" + j);
+			job.put("ComputeServer", 1 + random.nextInt(8));
+			int storage = random.nextInt(5);
+			if (storage > 0) {
+				job.put("StorageServer", storage);
+			}
+			given.clear();
+			long start = System.nanoTime();
+			manager.specifyJob(job);
+			elapsed += System.nanoTime() - start;
+			long jobRacks = given.stream().mapToInt(server -> server[1] / 100).distinct().count();
+			racks += jobRacks;
+			oneRack += jobRacks == 1 ? 1 : 0;
+			runningJobs.add(given.toArray(new int[0][]));
+			if (runningJobs.size() > running) {
+				for (int[] server : runningJobs.poll()) {
+					manager.serverLoginAsync(typeNames[server[0]], server[1], jobName -> given.add(server));
+				}
+			}
+		}
+		return new double[] { (double) oneRack / jobs, (double) racks / jobs, (double) elapsed / jobs };
+	}
+
+	// GANG RESERVATION BENCHMARK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// 60 COMPUTESERVERS AND 12 STORAGESERVERS LOG IN ASYNCHRONOUSLY. AT EACH STEP THE
+	// OLDEST RUNNING JOB FINISHES (ITS SERVERS LOG IN AGAIN) AND A SMALL JOB NEEDING 2
+	// COMPUTESERVERS AND 1 STORAGESERVER IS SPECIFIED; EVERY 500 STEPS A BIG JOB NEEDING
+	// 50 COMPUTESERVERS AND 10 STORAGESERVERS JOINS THE QUEUE. WITHOUT GANG RESERVATIONS
+	// THE SMALL JOBS KEEP TAKING THE SERVERS THE BIG ONES WAIT FOR.
+	// RUN WITHOUT GANGS, WITH FULL GANGS, WITH GANGS HOLDING HALF OF THE NEED, AND WITH A
+	// TIMEOUT TOO SHORT TO ASSEMBLE.
+	// REPORTS THE BIG JOBS RELEASED, THEIR MEAN WAIT IN STEPS, THE SMALL JOBS RELEASED,
+	// THE GANGS ASSEMBLED AND EXPIRED, THE p99 GANG HOLD TIME, AND THE SHARE OF ALL SERVER
+	// TIME SPENT HELD IDLE FOR GANGS.
+	public void gangReservationBenchmark(int steps) {
+		System.out.printf("%-18s %10s %12s %10s %10s %10s %14s %8s%n", "gangs", "big", "big wait", "small",
+				"assembled", "expired", "hold p99(us)", "held%");
+		gangReservation("off", manager -> { }, steps);
+		gangReservation("full, 1ms", manager -> manager.setGangReservation(TimeUnit.MILLISECONDS.toNanos(1)), steps);
+		gangReservation("half, 1ms",
+				manager -> manager.setGangReservation(TimeUnit.MILLISECONDS.toNanos(1), 0.5), steps);
+		gangReservation("full, 20us",
+				manager -> manager.setGangReservation(TimeUnit.MICROSECONDS.toNanos(20)), steps);
+	}
+
+	// ONE RUN OF THE GANG RESERVATION BENCHMARK
+	private void gangReservation(String name, Consumer<JobManager> setup, int steps) {
+		JobManager manager = new JobManager(true, null);
+		setup.accept(manager);
+		// THE SERVERS OF EACH RUNNING JOB IN THE ORDER THE JOBS STARTED, AS { TYPE, ID }
+		// PAIRS, TYPE 0 FOR COMPUTE AND 1 FOR STORAGE
+		LinkedHashMap<String, ArrayList<int[]>> running = new LinkedHashMap<>();
+		String[] typeNames = { "ComputeServer", "StorageServer" };
+		HashMap<String, Integer> bigSubmitted = new HashMap<>();
+		long[] bigWaits = new long[2];
+		int[] step = { 0 };
+		Consumer<int[]> login = server -> manager.serverLoginAsync(typeNames[server[0]], server[1], jobName -> {
+			running.computeIfAbsent(jobName, j -> new ArrayList<>()).add(server);
+			Integer submitted = bigSubmitted.remove(jobName);
+			if (submitted != null) {
+				bigWaits[0]++;
+				bigWaits[1] += step[0] - submitted;
+			}
+		});
+		for (int id = 0; id < 60; id++) {
+			login.accept(new int[] { 0, id });
+		}
+		for (int id = 0; id < 12; id++) {
+			login.accept(new int[] { 1, id });
+		}
+		long start = System.nanoTime();
+		for (step[0] = 0; step[0] < steps; step[0]++) {
+			if (step[0] % 500 == 0) {
+				JobRequest big = new JobRequest("big" + step[0]);
+				big.put("ComputeServer", 50);
+				big.put("StorageServer", 10);
+				bigSubmitted.put("big" + step[0], step[0]);
+				manager.specifyJob(big);
+			}
+			Iterator<ArrayList<int[]>> oldest = running.values().iterator();
+			if (oldest.hasNext()) {
+				ArrayList<int[]> servers = oldest.next();
+				oldest.remove();
+				for (int[] server : servers) {
+					login.accept(server);
+				}
+			}
+			JobRequest job = new JobRequest("small" + step[0]);
+			job.put("ComputeServer", 2);
+			job.put("StorageServer", 1);
+			manager.specifyJob(job);
+		}
+		long elapsed = System.nanoTime() - start;
+		JobManagerMetrics.Snapshot metrics = manager.getMetrics();
+		long small = metrics.getJobsAssigned() - bigWaits[0];
+		System.out.printf("%-18s %10s %12.0f %10d %10d %10d %14.1f %8.1f%n", name,
+				bigWaits[0] + "/" + (steps / 500), bigWaits[0] == 0 ? Double.NaN : (double) bigWaits[1] / bigWaits[0],
+				small, metrics.getGangsAssembled(), metrics.getGangsExpired(),
+				metrics.getGangHold().getValueAtPercentile(99) / 1e3,
+				100.0 * metrics.getGangHeldServerNanos() / (72.0 * elapsed));
+	}
+
+	// SCHEDULING POLICY SIMULATION
+	// --------------------------------------------------------------------------------------------------------------------------
+	// A SINGLE-THREADED DISCRETE-EVENT SIMULATION ON A VIRTUAL CLOCK (TICKS), RUN ONCE
+	// PER SchedulingPolicy WITH THE SAME WORKLOAD.
+	// 64 COMPUTESERVERS AND 16 STORAGESERVERS LOG IN ASYNCHRONOUSLY. JOBS ARRIVE AS A
+	// POISSON PROCESS; MOST ARE SMALL, ONE IN TEN IS LARGE, ONE IN FIVE IS HIGH
+	// PRIORITY, AND EACH RUNS FOR AN EXPONENTIALLY DISTRIBUTED TIME. WHEN A JOB FINISHES,
+	// ITS SERVERS LOG IN AGAIN.
+	// REPORTS SERVER UTILIZATION AND THE DISTRIBUTION OF JOB WAITS (IN TICKS).
+	public void schedulingPolicySimulation() {
+		System.out.printf("%16s %8s %8s %8s %8s %8s %8s %10s %10s%n", "policy", "util%", "mean", "p50", "p90",
+				"p99", "max", "mean(hi)", "mean(lo)");
+		for (SchedulingPolicy policy : SchedulingPolicy.values()) {
+			new PolicySimulation(policy).run();
+		}
+	}
+
+	private static class PolicySimulation {
+		private static final int COMPUTE = 64;
+		private static final int STORAGE = 16;
+		private static final int JOBS = 2_000;
+		private static final double MEAN_ARRIVAL = 3.0;
+		private static final double MEAN_DURATION = 25.0;
+
+		private final SchedulingPolicy policy;
+		private final JobManager manager = new JobManager();
+
+		// JOBS THAT HAVE STARTED, WAITING FOR THEIR SERVERS TO BE RUNNING FOR THE JOB'S DURATION
+		private final HashMap<String, Running> running = new HashMap<>();
+
+		// FINISH EVENTS IN TIME ORDER
+		private final PriorityQueue<Running> finishing = new PriorityQueue<>(Comparator.comparingLong(r -> r.finishAt));
+
+		private final HashMap<String, Long> submittedAt = new HashMap<>();
+		private final HashMap<String, Long> durations = new HashMap<>();
+		private final HashSet<String> highPriority = new HashSet<>();
+		private final LatencyHistogram waits = new LatencyHistogram();
+		private long waitHigh, countHigh, waitLow, countLow;
+		private long busyServerTicks;
+		private long now = 0;
+
+		PolicySimulation(SchedulingPolicy policy) {
+			this.policy = policy;
+		}
+
+		void run() {
+			manager.setSchedulingPolicy(policy);
+			for (int id = 0; id < COMPUTE; id++) {
+				login("ComputeServer", id);
+			}
+			for (int id = 0; id < STORAGE; id++) {
+				login("StorageServer", id);
+			}
+
+			// THE SAME SEED FOR EVERY POLICY GIVES EVERY POLICY THE SAME JOBS
+			Random random = new Random(7);
+			long nextArrival = 0;
+			int submitted = 0;
+			while (submitted < JOBS || !finishing.isEmpty()) {
+				boolean arrivalNext = submitted < JOBS
+						&& (finishing.isEmpty() || nextArrival <= finishing.peek().finishAt);
+				if (arrivalNext) {
+					now = nextArrival;
+					submit(random, "job" + submitted++);
+					nextArrival = now + 1 + (long) exponential(random, MEAN_ARRIVAL);
+				} else {
+					Running done = finishing.poll();
+					now = done.finishAt;
+					for (Map.Entry<String, Integer> server : done.servers) {
+						login(server.getKey(), server.getValue());
+					}
+				}
+			}
+
+			double utilization = 100.0 * busyServerTicks / ((COMPUTE + STORAGE) * (double) now);
+			System.out.printf("%16s %8.1f %8.1f %8d %8d %8d %8d %10.1f %10.1f%n", policy, utilization, waits.getMean(),
+					waits.getValueAtPercentile(50), waits.getValueAtPercentile(90), waits.getValueAtPercentile(99),
+					waits.getMax(), (double) waitHigh / Math.max(1, countHigh), (double) waitLow / Math.max(1, countLow));
+		}
+
+		private void submit(Random random, String name) {
+			boolean large = random.nextInt(10) == 0;
+			boolean high = random.nextInt(5) == 0;
+			JobRequest job = new JobRequest(name, high ? 1 : 0);
+			if (large) {
+				job.put("ComputeServer", 32 + random.nextInt(33));
+				job.put("StorageServer", 4 + random.nextInt(9));
+			} else {
+				job.put("ComputeServer", 1 + random.nextInt(4));
+				if (random.nextBoolean()) {
+					job.put("StorageServer", 1);
+				}
+			}
+			submittedAt.put(name, now);
+			durations.put(name, 1 + (long) exponential(random, MEAN_DURATION));
+			if (high) {
+				highPriority.add(name);
+			}
+			manager.specifyJob(job);
+		}
+
+		private void login(String type, int ID) {
+			manager.serverLoginAsync(type, ID, job -> started(job, type, ID));
+		}
+
+		// CALLED ONCE FOR EACH SERVER THE JOB TAKES, ALL IN THE SAME MATCHING PASS
+		private void started(String job, String type, int ID) {
+			Running run = running.get(job);
+			if (run == null) {
+				run = new Running(now + durations.get(job));
+				running.put(job, run);
+				finishing.add(run);
+				long wait = now - submittedAt.get(job);
+				waits.record(wait);
+				if (highPriority.contains(job)) {
+					waitHigh += wait;
+					countHigh++;
+				} else {
+					waitLow += wait;
+					countLow++;
+				}
+			}
+			run.servers.add(new AbstractMap.SimpleEntry<>(type, ID));
+			busyServerTicks += run.finishAt - now;
+		}
+
+		private static double exponential(Random random, double mean) {
+			return -mean * Math.log(1 - random.nextDouble());
+		}
+
+		private static class Running {
+			final long finishAt;
+			final ArrayList<Map.Entry<String, Integer>> servers = new ArrayList<>();
+
+			Running(long finishAt) {
+				this.finishAt = finishAt;
+			}
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(10);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private JobRequest newJob(int n) {
+		JobRequest job = new JobRequest("job" + n);
+		job.put("ComputeServer", 1);
+		return job;
+	}
+
+	// KEEPS THE JIT FROM THROWING AWAY THE WORK BEING TIMED
+	private long sink;
+
+	private void consume(long value) {
+		sink += value;
+	}
+}
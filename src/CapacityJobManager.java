@@ -0,0 +1,479 @@
+// A Manager that matches jobs to servers by capacity rather than by count.
+//
+// Servers log in with a capacity vector over the manager's dimensions (for example cores and
+// memory), and a job (a CapacityRequest) asks, for each server type, for a total capacity. The
+// job is given whole servers of the type whose capacities add up to at least what it asked for
+// in every dimension. A job can run as soon as the idle servers of each of its types add up to
+// enough, since taking all of them would cover it; the jobs are released in FIFO order.
+//
+// With Packing.BEST_FIT (the default) the servers are chosen to waste as little as possible:
+// the smallest idle server that covers everything the job still needs, or if none does, the
+// largest one in the dimension the job is shortest of, and so on until the job is covered. Each
+// type keeps its idle servers sorted by each dimension, so a choice is a few O(log n) lookups
+// and a short scan rather than a pass over every idle server.
+//
+// The count-based semantics are the special case where every capacity is 1: a plain
+// serverLogin logs in a server with capacity 1 in every dimension, and a plain JobRequest asking
+// for N servers of a type asks for N in every dimension, so it is given exactly N servers, highest
+// IDs first (equal servers are always taken highest ID first).
+//
+// Like JobManager, the only thread-safe classes used are ReentrantLock and its Condition variables,
+// signalAll() is not used and no thread ever sleeps or spins.
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.*;
+
+public class CapacityJobManager implements AsyncManager {
+
+	// HOW THE SERVERS FOR A JOB ARE CHOSEN
+    public enum Packing {
+    	// THE SMALLEST SERVER THAT COVERS WHAT THE JOB STILL NEEDS, OR ELSE THE LARGEST IN
+    	// ITS MOST NEEDED DIMENSION, REPEATED UNTIL THE JOB IS COVERED
+        BEST_FIT,
+        // HIGHEST IDS FIRST UNTIL THE JOB IS COVERED, AS THE COUNT-BASED MANAGERS DO
+        HIGHEST_ID
+    }
+
+	// HOW MANY SERVERS A BEST-FIT LOOKUP EXAMINES PAST THE FIRST ONE BIG ENOUGH IN ITS
+	// DIMENSION BEFORE FALLING BACK TO THE LARGEST
+    private static final int BEST_FIT_SCAN = 64;
+
+	// LOCKING FOR EVERYTHING BELOW
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final String[] dimensions;
+    private final Packing packing;
+
+	// IDLE SERVERS BY TYPE, CREATED ON FIRST USE
+    private final HashMap<String, TypeState> types = new HashMap<>();
+
+	// JOBS WAITING FOR SERVERS, OLDEST FIRST
+    private final JobQueue pendingJobs = new JobQueue();
+
+	// CALLBACKS OF ASYNCHRONOUS SERVERS ASSIGNED UNDER THE LOCK, RUN ONCE IT IS RELEASED
+    private ArrayList<Runnable> assignedCallbacks = new ArrayList<>();
+
+	// BREAKS TIES BETWEEN SERVERS WITH THE SAME CAPACITY AND ID IN THE INDEXES
+    private long nextSerial = 0;
+
+	// CAPACITY AND ALLOCATION TOTALS (UPDATED UNDER THE LOCK)
+    private final long[] requested;
+    private final long[] allocated;
+
+    public CapacityJobManager(String... dimensions) {
+        this(Packing.BEST_FIT, dimensions);
+    }
+
+    public CapacityJobManager(Packing packing, String... dimensions) {
+        if (dimensions.length == 0) {
+            throw new IllegalArgumentException("a capacity needs at least one dimension");
+        }
+        this.packing = packing;
+        this.dimensions = dimensions.clone();
+        this.requested = new long[dimensions.length];
+        this.allocated = new long[dimensions.length];
+    }
+
+	// A COUNT-BASED JOB: N SERVERS OF A TYPE IS N IN EVERY DIMENSION
+    @Override
+    public void specifyJob(JobRequest job) {
+        CapacityRequest request = new CapacityRequest(job.jobName);
+        for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+            int[] capacity = new int[dimensions.length];
+            Arrays.fill(capacity, requirement.getValue());
+            request.put(requirement.getKey(), capacity);
+        }
+        specifyJob(request);
+    }
+
+    public void specifyJob(CapacityRequest job) {
+        CapacityJob pending = new CapacityJob(job.jobName);
+        for (Map.Entry<String, int[]> requirement : job.entrySet()) {
+            int[] capacity = checkCapacity(requirement.getValue());
+            boolean needed = false;
+            for (int value : capacity) {
+                needed |= value > 0;
+            }
+            if (needed) {
+                pending.types.add(requirement.getKey());
+                pending.capacities.add(capacity);
+            }
+        }
+        ArrayList<Runnable> callbacks;
+        lock.lock();
+        try {
+            pendingJobs.add(pending);
+            processJobs();
+            callbacks = takeCallbacks();
+        } finally {
+            lock.unlock();
+        }
+        runCallbacks(callbacks);
+    }
+
+	// A COUNT-BASED LOGIN: CAPACITY 1 IN EVERY DIMENSION
+    @Override
+    public String serverLogin(String type, int ID) {
+        return serverLogin(type, ID, unitCapacity());
+    }
+
+	// SERVER LOGIN WITH A CAPACITY
+	// THE SERVER IS ADDED TO THE IDLE POOL AND A MATCHING PASS RUN, THEN THE CALLER
+	// WAITS (UNINTERRUPTIBLY, AS THE Manager INTERFACE HAS NO WAY TO RETURN WITHOUT A
+	// JOB) UNTIL THE SERVER IS GIVEN A JOB.
+    public String serverLogin(String type, int ID, int... capacity) {
+        Server server = new Server(type, ID, checkCapacity(capacity));
+        ArrayList<Runnable> callbacks;
+        lock.lock();
+        try {
+            server.condition = lock.newCondition();
+            addServer(server);
+            processJobs();
+            callbacks = takeCallbacks();
+        } finally {
+            lock.unlock();
+        }
+        runCallbacks(callbacks);
+
+        lock.lock();
+        try {
+        	// WAITING FOR AN JOB TO BE AVAILABLE
+            while (!server.assigned) {
+                server.condition.awaitUninterruptibly();
+            }
+            return server.assignedJob;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned) {
+        serverLoginAsync(type, ID, unitCapacity(), onAssigned);
+    }
+
+    public void serverLoginAsync(String type, int ID, int[] capacity, Consumer<String> onAssigned) {
+        Server server = new Server(type, ID, checkCapacity(capacity));
+        server.callback = onAssigned;
+        ArrayList<Runnable> callbacks;
+        lock.lock();
+        try {
+            addServer(server);
+            processJobs();
+            callbacks = takeCallbacks();
+        } finally {
+            lock.unlock();
+        }
+        runCallbacks(callbacks);
+    }
+
+    public String[] getDimensions() {
+        return dimensions.clone();
+    }
+
+	// TOTAL IDLE CAPACITY OF THE TYPE, ONE VALUE PER DIMENSION
+    public long[] getIdleCapacity(String type) {
+        lock.lock();
+        try {
+            TypeState state = types.get(type);
+            return state == null ? new long[dimensions.length] : state.idleCapacity.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleServerCount(String type) {
+        lock.lock();
+        try {
+            TypeState state = types.get(type);
+            return state == null ? 0 : state.byId.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+	// PACKING EFFICIENCY
+	// THE CAPACITY THE RELEASED JOBS ASKED FOR AS A FRACTION OF THE CAPACITY OF THE
+	// SERVERS THEY WERE GIVEN, ONE VALUE PER DIMENSION (1.0 IS A PERFECT FIT)
+    public double[] getPackingEfficiency() {
+        lock.lock();
+        try {
+            double[] efficiency = new double[dimensions.length];
+            for (int d = 0; d < dimensions.length; d++) {
+                efficiency[d] = allocated[d] == 0 ? 1.0 : (double) requested[d] / allocated[d];
+            }
+            return efficiency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+    private int[] unitCapacity() {
+        int[] capacity = new int[dimensions.length];
+        Arrays.fill(capacity, 1);
+        return capacity;
+    }
+
+    private int[] checkCapacity(int[] capacity) {
+        if (capacity.length != dimensions.length) {
+            throw new IllegalArgumentException("expected a capacity for each of " + Arrays.toString(dimensions)
+                    + " but got " + Arrays.toString(capacity));
+        }
+        for (int value : capacity) {
+            if (value < 0) {
+                throw new IllegalArgumentException("negative capacity " + Arrays.toString(capacity));
+            }
+        }
+        return capacity.clone();
+    }
+
+	// PROCESSING THE JOBS
+	// RELEASES, OLDEST FIRST, EVERY PENDING JOB WHOSE TYPES ALL HAVE ENOUGH IDLE
+	// CAPACITY. TAKING SERVERS ONLY LOWERS THE IDLE CAPACITY, SO A JOB THAT COULD NOT
+	// RUN CANNOT BECOME RUNNABLE LATER IN THE SAME PASS AND ONE PASS IS ENOUGH.
+    private void processJobs() {
+        for (JobQueue.Node node : pendingJobs) {
+            CapacityJob pending = (CapacityJob) node;
+            if (canSatisfyJob(pending)) {
+                pendingJobs.remove(pending);
+                assignJob(pending);
+            }
+        }
+    }
+
+	// CAN SATISFY THE JOBS
+	// THE IDLE SERVERS OF A TYPE CAN COVER THE JOB EXACTLY WHEN THEIR TOTAL CAPACITY
+	// DOES, AS IT IS ENOUGH TO TAKE THEM ALL
+    private boolean canSatisfyJob(CapacityJob pending) {
+        for (int t = 0; t < pending.types.size(); t++) {
+            TypeState state = types.get(pending.types.get(t));
+            if (state == null) {
+                return false;
+            }
+            int[] capacity = pending.capacities.get(t);
+            for (int d = 0; d < dimensions.length; d++) {
+                if (state.idleCapacity[d] < capacity[d]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+	// ASSIGNING THE JOBS
+	// CHOOSES THE SERVERS OF EACH TYPE UNTIL THE JOB'S CAPACITY IS COVERED, TAKES THEM
+	// OUT OF THE IDLE POOL AND HANDS THEM THE JOB
+    private void assignJob(CapacityJob pending) {
+        for (int t = 0; t < pending.types.size(); t++) {
+            TypeState state = types.get(pending.types.get(t));
+            int[] capacity = pending.capacities.get(t);
+            long[] remaining = new long[dimensions.length];
+            for (int d = 0; d < dimensions.length; d++) {
+                remaining[d] = capacity[d];
+                requested[d] += capacity[d];
+            }
+            while (needsMore(remaining)) {
+                Server server = packing == Packing.BEST_FIT ? bestFit(state, remaining) : state.byId.first();
+                state.remove(server);
+                for (int d = 0; d < dimensions.length; d++) {
+                    remaining[d] -= server.capacity[d];
+                    allocated[d] += server.capacity[d];
+                }
+                server.assignJob(pending.jobName);
+            }
+        }
+    }
+
+    private static boolean needsMore(long[] remaining) {
+        for (long value : remaining) {
+            if (value > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+	// BEST FIT
+	// LOOKS IN THE INDEX OF THE DIMENSION THE JOB IS SHORTEST OF (THE MOST STILL NEEDED
+	// RELATIVE TO WHAT IS IDLE) FOR THE SMALLEST SERVER BIG ENOUGH IN IT THAT ALSO COVERS
+	// EVERY OTHER DIMENSION. IF NONE DOES, THE LARGEST SERVER IN THAT DIMENSION IS TAKEN
+	// AND THE REST OF THE JOB IS MATCHED AGAIN.
+	// SERVERS EQUAL IN THE DIMENSION ARE INDEXED HIGHEST ID FIRST.
+    private Server bestFit(TypeState state, long[] remaining) {
+        int k = 0;
+        double shortest = -1;
+        for (int d = 0; d < dimensions.length; d++) {
+            if (remaining[d] > 0) {
+                double share = (double) remaining[d] / state.idleCapacity[d];
+                if (share > shortest) {
+                    shortest = share;
+                    k = d;
+                }
+            }
+        }
+        TreeSet<Server> index = state.byDimension.get(k);
+        if (remaining[k] <= Integer.MAX_VALUE) {
+            int scanned = 0;
+            for (Server server : index.tailSet(probe(k, (int) remaining[k]), true)) {
+                if (covers(server, remaining)) {
+                    return server;
+                }
+                if (++scanned == BEST_FIT_SCAN) {
+                    break;
+                }
+            }
+        }
+        return index.ceiling(probe(k, index.last().capacity[k]));
+    }
+
+    private boolean covers(Server server, long[] remaining) {
+        for (int d = 0; d < dimensions.length; d++) {
+            if (server.capacity[d] < remaining[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+	// A SEARCH KEY THAT SORTS BEFORE EVERY SERVER WITH `value` IN DIMENSION k
+    private Server probe(int k, int value) {
+        int[] capacity = new int[dimensions.length];
+        capacity[k] = value;
+        return new Server(null, Integer.MAX_VALUE, capacity, -1);
+    }
+
+    private void addServer(Server server) {
+        server.serial = nextSerial++;
+        types.computeIfAbsent(server.type, t -> new TypeState()).add(server);
+    }
+
+    private ArrayList<Runnable> takeCallbacks() {
+        if (assignedCallbacks.isEmpty()) {
+            return null;
+        }
+        ArrayList<Runnable> callbacks = assignedCallbacks;
+        assignedCallbacks = new ArrayList<>();
+        return callbacks;
+    }
+
+	// RUNS THE ASYNCHRONOUS SERVERS' CALLBACKS AFTER THE LOCK HAS BEEN RELEASED
+    private static void runCallbacks(ArrayList<Runnable> callbacks) {
+        if (callbacks == null) {
+            return;
+        }
+        RuntimeException failure = null;
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+	// ORDER OF THE INDEX FOR DIMENSION k: BY CAPACITY IN k, THEN HIGHEST ID FIRST
+    private static Comparator<Server> byDimension(int k) {
+        return (a, b) -> {
+            if (a.capacity[k] != b.capacity[k]) {
+                return Integer.compare(a.capacity[k], b.capacity[k]);
+            }
+            if (a.id != b.id) {
+                return Integer.compare(b.id, a.id);
+            }
+            return Long.compare(a.serial, b.serial);
+        };
+    }
+
+    private static final Comparator<Server> HIGHEST_ID_FIRST = (a, b) -> a.id != b.id ? Integer.compare(b.id, a.id)
+            : Long.compare(a.serial, b.serial);
+
+	// TYPE STATE
+	// THE IDLE SERVERS OF ONE TYPE, INDEXED BY ID AND BY EACH DIMENSION, AND THEIR
+	// TOTAL CAPACITY
+    private class TypeState {
+        private final TreeSet<Server> byId = new TreeSet<>(HIGHEST_ID_FIRST);
+        private final ArrayList<TreeSet<Server>> byDimension = new ArrayList<>();
+        private final long[] idleCapacity = new long[dimensions.length];
+
+        public TypeState() {
+            for (int d = 0; d < dimensions.length; d++) {
+                byDimension.add(new TreeSet<>(byDimension(d)));
+            }
+        }
+
+        public void add(Server server) {
+            byId.add(server);
+            for (int d = 0; d < dimensions.length; d++) {
+                byDimension.get(d).add(server);
+                idleCapacity[d] += server.capacity[d];
+            }
+        }
+
+        public void remove(Server server) {
+            byId.remove(server);
+            for (int d = 0; d < dimensions.length; d++) {
+                byDimension.get(d).remove(server);
+                idleCapacity[d] -= server.capacity[d];
+            }
+        }
+    }
+
+	// CAPACITY JOB
+	// A QUEUED JOB WITH THE TYPES IT NEEDS AND THE CAPACITY IT WANTS OF EACH
+    private static class CapacityJob extends JobQueue.Node {
+        private final String jobName;
+        private final ArrayList<String> types = new ArrayList<>();
+        private final ArrayList<int[]> capacities = new ArrayList<>();
+
+        public CapacityJob(String jobName) {
+            super(null);
+            this.jobName = jobName;
+        }
+    }
+
+	// SERVER
+	// ONE LOGIN OF A SERVER. A BLOCKING LOGIN WAITS ON ITS CONDITION; AN ASYNCHRONOUS
+	// LOGIN IS HANDED ITS JOB THROUGH ITS CALLBACK INSTEAD.
+    private class Server {
+        private final String type;
+        private final int id;
+        private final int[] capacity;
+        private long serial;
+        private Condition condition;
+        private Consumer<String> callback;
+        private String assignedJob = "";
+        private boolean assigned = false;
+
+        public Server(String type, int id, int[] capacity) {
+            this(type, id, capacity, -1);
+        }
+
+        public Server(String type, int id, int[] capacity, long serial) {
+            this.type = type;
+            this.id = id;
+            this.capacity = capacity;
+            this.serial = serial;
+        }
+
+        public void assignJob(String jobName) {
+            this.assignedJob = jobName;
+            this.assigned = true;
+            if (callback != null) {
+                Consumer<String> onAssigned = callback;
+                assignedCallbacks.add(() -> onAssigned.accept(jobName));
+            } else {
+                condition.signal();
+            }
+        }
+    }
+}
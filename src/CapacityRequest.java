@@ -0,0 +1,44 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// A job for a CapacityJobManager: for each server type it needs, the total capacity it wants
+// from servers of that type, one number per dimension of the manager (e.g. cores and memory).
+// e.g.
+//	CapacityRequest job01 = new CapacityRequest("job01");
+//	job01.require("ComputeServer", 24, 96);
+//
+// asks for ComputeServers with at least 24 cores and 96GB of memory between them, on a
+// manager created with new CapacityJobManager("cores", "memoryGB").
+public class CapacityRequest extends HashMap<String, int[]> {
+
+	private static final long serialVersionUID = 1L;
+
+	String jobName = "";
+
+	public CapacityRequest(String jobName) {
+		super();
+		this.jobName = jobName;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	// REPLACES ANY EARLIER REQUIREMENT FOR THE TYPE; THE VECTOR IS COPIED
+	public CapacityRequest require(String type, int... capacity) {
+		put(type, capacity.clone());
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("jobName=").append(jobName).append(", job={");
+		String separator = "";
+		for (Map.Entry<String, int[]> requirement : entrySet()) {
+			text.append(separator).append(requirement.getKey()).append('=').append(Arrays.toString(requirement.getValue()));
+			separator = ", ";
+		}
+		return text.append('}').toString();
+	}
+}
@@ -0,0 +1,704 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// JOB JOURNAL
+// WRITE-AHEAD LOG AND SNAPSHOTS THAT LET A JobManager'S QUEUED JOBS SURVIVE A RESTART.
+//
+// THE LOG IS A SERIES OF MEMORY-MAPPED SEGMENT FILES (segment-<n>.log). EVERY SUBMITTED
+// JOB AND EVERY JOB RELEASED FROM THE QUEUE IS APPENDED AS A SMALL BINARY RECORD:
+//
+//	int length | int crc32 | byte kind | payload
+//
+//	TYPE    int typeId, utf name			(ONCE PER TYPE PER SEGMENT, BEFORE ITS FIRST USE)
+//	SUBMIT  long seq, int priority, utf jobName, short n, n x (int typeId, int count)
+//	RELEASE long seq
+//
+// APPENDING IS A COPY INTO THE MAPPED BUFFER, SO THE SUBMISSION PATH NEVER CALLS fsync.
+// A BACKGROUND FLUSHER FORCES THE BUFFER TO DISK; WITH Durability.GROUP A SUBMITTER WAITS
+// (OUTSIDE THE MANAGER'S LOCK) UNTIL ITS RECORD IS FORCED, AND ONE force() COVERS EVERY
+// RECORD APPENDED BEFORE IT, SO CONCURRENT SUBMITTERS SHARE THE COST (GROUP COMMIT).
+//
+// A FULL SEGMENT IS HANDED TO THE FLUSHER TO BE FORCED, SO STARTING A NEW ONE DOES NOT WAIT
+// FOR THE DISK EITHER.
+//
+// A CHECKPOINT STARTS A NEW SEGMENT AND WRITES snapshot.bin WITH THE QUEUED JOBS AND IDLE
+// SERVER COUNTS AT THAT MOMENT; THE SEGMENTS BEFORE IT ARE THEN DELETED. THE SNAPSHOT FILE
+// IS WRITTEN AND FORCED WITHOUT THE JOURNAL'S LOCK, SO APPENDS CARRY ON MEANWHILE. RECOVERY READS THE
+// SNAPSHOT AND REPLAYS THE SEGMENTS AFTER IT, STOPPING AT THE FIRST TORN RECORD.
+//
+// LIKE JobManager, ONLY ReentrantLock AND ITS CONDITIONS ARE USED, AND signalAll() IS NOT:
+// EACH WAITING SUBMITTER HAS ITS OWN CONDITION.
+public class JobJournal implements AutoCloseable {
+
+	// WHETHER specifyJob WAITS FOR ITS RECORD TO REACH THE DISK
+	public enum Durability {
+		// RETURN AS SOON AS THE RECORD IS IN THE MAPPED BUFFER; THE FLUSHER FORCES IT SHORTLY
+		// AFTER (A CRASH OF THE MACHINE, NOT JUST THE PROCESS, CAN LOSE THE LAST FEW MILLISECONDS)
+		ASYNC,
+		// RETURN ONLY ONCE THE RECORD HAS BEEN FORCED TO DISK, SHARING EACH force() WITH
+		// EVERY OTHER SUBMITTER WAITING AT THE TIME
+		GROUP
+	}
+
+	private static final byte TYPE = 1;
+	private static final byte SUBMIT = 2;
+	private static final byte RELEASE = 3;
+
+	private static final int SNAPSHOT_MAGIC = 0x4A4D534E;	// "JMSN"
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final String SNAPSHOT = "snapshot.bin";
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	public static final int DEFAULT_CHECKPOINT_EVERY = 100_000;
+	private static final long FLUSH_INTERVAL_NANOS = 10_000_000L;
+
+	private final Path directory;
+	private final Durability durability;
+	private final int segmentSize;
+	private final int checkpointEvery;
+
+	// GUARDS EVERYTHING BELOW; ALWAYS TAKEN AFTER (NEVER BEFORE) THE MANAGER'S LOCK
+	private final ReentrantLock lock = new ReentrantLock();
+	// THE FLUSHER WAITS HERE FOR A SUBMITTER THAT NEEDS ITS RECORD FORCED
+	private final Condition flushNeeded = lock.newCondition();
+
+	private long segmentNumber;
+	private MappedByteBuffer segment;
+	// FULL SEGMENTS THE FLUSHER HAS YET TO FORCE, OLDEST FIRST
+	private final ArrayDeque<Retired> retired = new ArrayDeque<>();
+	// TYPE IDS WITH A TYPE RECORD IN THE CURRENT SEGMENT
+	private boolean[] typeWritten = new boolean[8];
+
+	// LOG SEQUENCE NUMBERS: BYTES APPENDED, AND BYTES KNOWN TO BE ON DISK, OVER ALL SEGMENTS
+	private long appended = 0;
+	private long forced = 0;
+	// WHERE THE CURRENT SEGMENT'S UNFORCED BYTES START
+	private int forcedOffset = 0;
+
+	// SUBMITTERS WAITING FOR THEIR RECORD TO BE FORCED, LOWEST POSITION FIRST
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(Waiter::getPosition));
+
+	private int recordsSinceCheckpoint = 0;
+	private long lastSnapshotSegment = -1;
+	private boolean closed = false;
+	private Thread flusher;
+
+	// REUSED TO BUILD EACH RECORD BEFORE IT IS COPIED INTO THE SEGMENT
+	private ByteBuffer scratch = ByteBuffer.allocate(256);
+	private final CRC32 crc = new CRC32();
+
+	// WHAT WAS READ BACK BY recover()
+	private final ArrayList<RecoveredJob> recoveredJobs = new ArrayList<>();
+	private final TreeMap<String, Integer> recoveredIdleServers = new TreeMap<>();
+
+	// OPENS (OR CREATES) THE JOURNAL IN THE DIRECTORY AND READS BACK WHAT IT HOLDS.
+	// NOTHING IS WRITTEN UNTIL THE OWNING JobManager TAKES ITS FIRST CHECKPOINT.
+	public static JobJournal open(Path directory, Durability durability) throws IOException {
+		return open(directory, durability, DEFAULT_SEGMENT_SIZE, DEFAULT_CHECKPOINT_EVERY);
+	}
+
+	public static JobJournal open(Path directory, Durability durability, int segmentSize, int checkpointEvery)
+			throws IOException {
+		Files.createDirectories(directory);
+		JobJournal journal = new JobJournal(directory, durability, segmentSize, checkpointEvery);
+		journal.recover();
+		return journal;
+	}
+
+	private JobJournal(Path directory, Durability durability, int segmentSize, int checkpointEvery) {
+		if (segmentSize < 4096) {
+			throw new IllegalArgumentException("segmentSize must be at least 4096: " + segmentSize);
+		}
+		this.directory = directory;
+		this.durability = durability;
+		this.segmentSize = segmentSize;
+		this.checkpointEvery = checkpointEvery;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	// THE JOBS THAT WERE STILL QUEUED WHEN THE JOURNAL WAS LAST WRITTEN, IN FIFO ORDER
+	public List<RecoveredJob> getRecoveredJobs() {
+		return Collections.unmodifiableList(recoveredJobs);
+	}
+
+	// THE IDLE SERVER COUNTS IN THE LAST SNAPSHOT (THOSE SERVERS MUST LOG IN AGAIN)
+	public Map<String, Integer> getRecoveredIdleServers() {
+		return Collections.unmodifiableMap(recoveredIdleServers);
+	}
+
+	// ==================================== CALLED BY JobManager, UNDER ITS LOCK
+	// ===============================================
+
+	// APPENDS A SUBMITTED JOB, PRECEDED BY A TYPE RECORD FOR ANY TYPE NEW TO THE SEGMENT.
+	// THE TYPE RECORDS AND THE SUBMIT RECORD ALWAYS GO INTO THE SAME SEGMENT: IF THEY DO NOT
+	// ALL FIT IN THIS ONE, A NEW SEGMENT IS STARTED BEFORE ANY OF THEM IS WRITTEN (AND THEN
+	// EVERY TYPE OF THE JOB IS NEW TO IT), AS REPLAY ONLY KNOWS THE TYPES OF ITS OWN SEGMENT.
+	void appendSubmit(long seq, JobSpec spec) {
+		int[] typeIds = spec.typeIds();
+		int[] counts = spec.counts();
+		int n = spec.size();
+		byte[] name = spec.getName().getBytes(StandardCharsets.UTF_8);
+		int submitSize = 1 + 8 + 4 + 2 + name.length + 2 + 8 * n;
+		lock.lock();
+		try {
+			if (segment.remaining() < groupSize(spec, submitSize) + 4) {
+				openSegment(segmentNumber + 1);
+				if (groupSize(spec, submitSize) + 4 > segmentSize) {
+					throw new IllegalArgumentException("journal records for job " + spec.getName()
+							+ " do not fit in a segment");
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				int typeId = typeIds[i];
+				if (!isTypeWritten(typeId)) {
+					byte[] typeName = spec.getRegistry().nameOf(typeId).getBytes(StandardCharsets.UTF_8);
+					record(TYPE, 4 + 2 + typeName.length).putInt(typeId).putShort((short) typeName.length).put(typeName);
+					append();
+					typeWritten[typeId] = true;
+				}
+			}
+			ByteBuffer body = record(SUBMIT, submitSize - 1);
+			body.putLong(seq).putInt(spec.getPriority()).putShort((short) name.length).put(name);
+			body.putShort((short) n);
+			for (int i = 0; i < n; i++) {
+				body.putInt(typeIds[i]).putInt(counts[i]);
+			}
+			append();
+			recordsSinceCheckpoint++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// APPENDS THE RELEASE OF A QUEUED JOB (IT WILL NOT BE RECOVERED)
+	void appendRelease(long seq) {
+		lock.lock();
+		try {
+			record(RELEASE, 8).putLong(seq);
+			append();
+			recordsSinceCheckpoint++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// THE LOG POSITION JUST AFTER THE LAST RECORD APPENDED
+	long position() {
+		lock.lock();
+		try {
+			return appended;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean isCheckpointDue() {
+		lock.lock();
+		try {
+			return recordsSinceCheckpoint >= checkpointEvery;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// STARTS A NEW SEGMENT (THE FLUSHER FORCES THE OLD ONE) AND RETURNS ITS NUMBER. EVERYTHING AFTER THIS
+	// POINT GOES INTO THE NEW SEGMENT, SO A SNAPSHOT OF THE MANAGER TAKEN UNDER THE SAME LOCK
+	// HOLD IS EXACTLY THE STATE THAT THE NEW SEGMENT STARTS FROM.
+	long startSegment() {
+		lock.lock();
+		try {
+			openSegment(segment == null ? segmentNumber : segmentNumber + 1);
+			recordsSinceCheckpoint = 0;
+			if (flusher == null) {
+				flusher = new Thread(this::flushLoop, "JobJournal flusher");
+				flusher.setDaemon(true);
+				flusher.start();
+			}
+			return segmentNumber;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// ENCODES A SNAPSHOT: THE FIRST SEGMENT TO REPLAY AFTER IT, THE IDLE SERVER COUNTS AND THE
+	// QUEUED JOBS WITH THEIR SEQUENCE NUMBERS (SO LATER RELEASE RECORDS CAN REFER TO THEM)
+	static Snapshot encodeSnapshot(long firstSegment, Map<String, Integer> idleServers, long[] seqs, JobSpec[] jobs) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + jobs.length * 48);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(firstSegment);
+			out.writeInt(idleServers.size());
+			for (Map.Entry<String, Integer> idle : idleServers.entrySet()) {
+				out.writeUTF(idle.getKey());
+				out.writeInt(idle.getValue());
+			}
+			out.writeInt(jobs.length);
+			for (int j = 0; j < jobs.length; j++) {
+				out.writeLong(seqs[j]);
+				out.writeUTF(jobs[j].getName());
+				out.writeInt(jobs[j].getPriority());
+				out.writeInt(jobs[j].size());
+				for (int i = 0; i < jobs[j].size(); i++) {
+					out.writeUTF(jobs[j].getType(i));
+					out.writeInt(jobs[j].getCount(i));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new Snapshot(firstSegment, bytes.toByteArray());
+	}
+
+	// ==================================== CALLED BY JobManager, WITHOUT ITS LOCK
+	// ===============================================
+
+	// WAITS UNTIL EVERYTHING UP TO THE POSITION IS ON DISK (ONLY WITH Durability.GROUP)
+	void awaitDurable(long position) {
+		if (durability != Durability.GROUP) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (forced >= position || closed) {
+				return;
+			}
+			Waiter waiter = new Waiter(position, lock.newCondition());
+			waiters.add(waiter);
+			flushNeeded.signal();
+			while (!waiter.done) {
+				waiter.condition.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// WRITES A SNAPSHOT MADE BY encodeSnapshot, THEN DELETES THE SEGMENTS IT MAKES REDUNDANT.
+	// A SNAPSHOT OLDER THAN ONE ALREADY WRITTEN IS DROPPED.
+	// THE FILE IS WRITTEN AND FORCED UNDER A NAME OF ITS OWN WITHOUT THE LOCK; THE LOCK IS
+	// ONLY TAKEN TO RENAME IT INTO PLACE AND PUBLISH lastSnapshotSegment, SO A SLOWER WRITER
+	// OF AN OLDER SNAPSHOT CANNOT REPLACE A NEWER ONE.
+	void writeSnapshot(Snapshot snapshot) {
+		long firstSegment = snapshot.firstSegment;
+		if (isSnapshotStale(firstSegment)) {
+			return;
+		}
+		Path temp = directory.resolve(SNAPSHOT + "." + firstSegment + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.wrap(snapshot.bytes);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			boolean published = false;
+			lock.lock();
+			try {
+				if (firstSegment > lastSnapshotSegment) {
+					Files.move(temp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+							StandardCopyOption.REPLACE_EXISTING);
+					lastSnapshotSegment = firstSegment;
+					published = true;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (!published) {
+				Files.deleteIfExists(temp);
+				return;
+			}
+			for (long number : segmentNumbers()) {
+				if (number < firstSegment) {
+					Files.deleteIfExists(segmentPath(number));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean isSnapshotStale(long firstSegment) {
+		lock.lock();
+		try {
+			return firstSegment <= lastSnapshotSegment;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// FORCES EVERYTHING APPENDED, STOPS THE FLUSHER AND RELEASES ANY WAITING SUBMITTERS
+	@Override
+	public void close() {
+		Thread stopping;
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for (Retired full = retired.poll(); full != null; full = retired.poll()) {
+				full.force();
+			}
+			if (segment != null) {
+				segment.force();
+				forced = appended;
+			}
+			wakeWaiters();
+			flushNeeded.signal();
+			stopping = flusher;
+		} finally {
+			lock.unlock();
+		}
+		if (stopping != null) {
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+	// FLUSHER
+	// FORCES EACH FULL SEGMENT AS SOON AS IT IS RETIRED, AND THE CURRENT SEGMENT WHENEVER A
+	// SUBMITTER IS WAITING, AND OTHERWISE EVERY FLUSH INTERVAL. THE LOCK IS NOT HELD DURING
+	// force(), SO APPENDS CARRY ON, AND EVERY RECORD APPENDED BEFORE THE force() STARTED IS
+	// COVERED BY IT. FULL SEGMENTS ARE FORCED OLDEST FIRST AND BEFORE THE CURRENT ONE, SO
+	// forced ONLY EVER MOVES PAST RECORDS THAT ARE ON DISK.
+	private void flushLoop() {
+		lock.lock();
+		try {
+			while (!closed) {
+				if (retired.isEmpty() && (waiters.isEmpty() || forced >= appended)) {
+					try {
+						flushNeeded.awaitNanos(FLUSH_INTERVAL_NANOS);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					continue;
+				}
+				if (!retired.isEmpty()) {
+					Retired full = retired.peek();
+					lock.unlock();
+					try {
+						full.force();
+					} finally {
+						lock.lock();
+					}
+					// close() MAY HAVE FORCED AND DROPPED IT MEANWHILE
+					if (retired.peek() == full) {
+						retired.poll();
+					}
+					forced = Math.max(forced, full.end);
+					wakeWaiters();
+					continue;
+				}
+				if (forced >= appended) {
+					continue;
+				}
+				MappedByteBuffer buffer = segment;
+				long number = segmentNumber;
+				int from = forcedOffset;
+				int to = buffer.position();
+				long target = appended;
+				lock.unlock();
+				try {
+					buffer.force(from, to - from);
+				} finally {
+					lock.lock();
+				}
+				// A SEGMENT RETIRED MEANWHILE IS FORCED IN FULL FROM WHERE THIS ONE STARTED
+				if (number == segmentNumber) {
+					forcedOffset = Math.max(forcedOffset, to);
+				}
+				forced = Math.max(forced, target);
+				wakeWaiters();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// SIGNALS, ONE BY ONE, EVERY WAITER WHOSE RECORD IS NOW ON DISK
+	private void wakeWaiters() {
+		while (!waiters.isEmpty() && (closed || waiters.peek().position <= forced)) {
+			Waiter waiter = waiters.poll();
+			waiter.done = true;
+			waiter.condition.signal();
+		}
+	}
+
+	// THE BYTES appendSubmit WRITES FOR THE JOB INTO THE CURRENT SEGMENT: A TYPE RECORD FOR
+	// EACH OF ITS TYPES NOT YET IN THE SEGMENT, THEN THE SUBMIT RECORD (`submitSize` BYTES
+	// WITH THE KIND BYTE), EACH WITH ITS 8-BYTE HEADER
+	private int groupSize(JobSpec spec, int submitSize) {
+		int size = 8 + submitSize;
+		for (int i = 0; i < spec.size(); i++) {
+			int typeId = spec.typeIds()[i];
+			if (!isTypeWritten(typeId)) {
+				size += 8 + 1 + 4 + 2 + spec.getRegistry().nameOf(typeId).getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		return size;
+	}
+
+	private boolean isTypeWritten(int typeId) {
+		if (typeId >= typeWritten.length) {
+			typeWritten = Arrays.copyOf(typeWritten, Math.max(typeId + 1, typeWritten.length * 2));
+		}
+		return typeWritten[typeId];
+	}
+
+	// STARTS BUILDING A RECORD OF THE KIND WITH A BODY OF `size` BYTES AFTER THE KIND BYTE
+	private ByteBuffer record(byte kind, int size) {
+		if (scratch.capacity() < size + 1) {
+			scratch = ByteBuffer.allocate(Math.max(size + 1, scratch.capacity() * 2));
+		}
+		scratch.clear();
+		scratch.put(kind);
+		return scratch;
+	}
+
+	// COPIES THE RECORD IN scratch INTO THE SEGMENT, STARTING A NEW SEGMENT IF IT IS FULL
+	private void append() {
+		int length = scratch.position();
+		if (8 + length + 4 > segmentSize) {
+			throw new IllegalArgumentException("journal record of " + length + " bytes does not fit in a segment");
+		}
+		if (segment.remaining() < 8 + length + 4) {
+			openSegment(segmentNumber + 1);
+		}
+		crc.reset();
+		crc.update(scratch.array(), 0, length);
+		segment.putInt(length);
+		segment.putInt((int) crc.getValue());
+		segment.put(scratch.array(), 0, length);
+		appended += 8 + length;
+	}
+
+	// LEAVES THE CURRENT SEGMENT TO THE FLUSHER TO FORCE AND MAPS A FRESH ONE
+	private void openSegment(long number) {
+		try {
+			if (segment != null) {
+				retired.add(new Retired(segment, forcedOffset, segment.position(), appended));
+				flushNeeded.signal();
+			}
+			try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			}
+			segmentNumber = number;
+			forcedOffset = 0;
+			Arrays.fill(typeWritten, false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// RECOVERY
+	// LOADS THE SNAPSHOT (IF ANY), THEN REPLAYS EVERY SEGMENT FROM THE ONE IT NAMES.
+	// A SNAPSHOT THAT WAS NEVER RENAMED INTO PLACE IS LEFT OVER FROM A CRASH AND DELETED.
+	private void recover() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT + ".*.tmp")) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		TreeMap<Long, RecoveredJob> queued = new TreeMap<>();
+		long firstSegment = 0;
+		Path snapshot = directory.resolve(SNAPSHOT);
+		if (Files.exists(snapshot)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+				if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+					throw new IOException("not a JobJournal snapshot: " + snapshot);
+				}
+				firstSegment = in.readLong();
+				int idleTypes = in.readInt();
+				for (int i = 0; i < idleTypes; i++) {
+					recoveredIdleServers.put(in.readUTF(), in.readInt());
+				}
+				int jobs = in.readInt();
+				for (int j = 0; j < jobs; j++) {
+					long seq = in.readLong();
+					JobRequest job = new JobRequest(in.readUTF(), in.readInt());
+					int n = in.readInt();
+					for (int i = 0; i < n; i++) {
+						job.put(in.readUTF(), in.readInt());
+					}
+					queued.put(seq, new RecoveredJob(seq, job));
+				}
+			}
+		}
+
+		long last = firstSegment - 1;
+		for (long number : segmentNumbers()) {
+			if (number >= firstSegment) {
+				replaySegment(number, queued);
+				last = number;
+			}
+		}
+		recoveredJobs.addAll(queued.values());
+		segmentNumber = last + 1;
+		lastSnapshotSegment = firstSegment - 1;
+	}
+
+	// APPLIES THE RECORDS OF ONE SEGMENT, STOPPING AT ITS END OR AT A TORN RECORD
+	private void replaySegment(long number, TreeMap<Long, RecoveredJob> queued) throws IOException {
+		HashMap<Integer, String> typeNames = new HashMap<>();
+		ByteBuffer log;
+		try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+			log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		byte[] body = new byte[256];
+		while (log.remaining() >= 8) {
+			int length = log.getInt();
+			int checksum = log.getInt();
+			if (length <= 0 || length > log.remaining()) {
+				return;
+			}
+			if (body.length < length) {
+				body = new byte[Math.max(length, body.length * 2)];
+			}
+			log.get(body, 0, length);
+			crc.reset();
+			crc.update(body, 0, length);
+			if ((int) crc.getValue() != checksum) {
+				return;
+			}
+			ByteBuffer record = ByteBuffer.wrap(body, 0, length);
+			byte kind = record.get();
+			if (kind == TYPE) {
+				typeNames.put(record.getInt(), readName(record));
+			} else if (kind == SUBMIT) {
+				long seq = record.getLong();
+				int priority = record.getInt();
+				JobRequest job = new JobRequest(readName(record), priority);
+				int n = record.getShort();
+				for (int i = 0; i < n; i++) {
+					job.put(typeNames.get(record.getInt()), record.getInt());
+				}
+				queued.put(seq, new RecoveredJob(seq, job));
+			} else if (kind == RELEASE) {
+				queued.remove(record.getLong());
+			} else {
+				return;
+			}
+		}
+	}
+
+	private static String readName(ByteBuffer record) {
+		byte[] name = new byte[record.getShort()];
+		record.get(name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	private Path segmentPath(long number) {
+		return directory.resolve("segment-" + number + ".log");
+	}
+
+	private ArrayList<Long> segmentNumbers() throws IOException {
+		ArrayList<Long> numbers = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				numbers.add(Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length())));
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	// RECOVERED JOB
+	// A JOB READ BACK FROM THE JOURNAL, WITH THE SEQUENCE NUMBER IT HAD WHEN IT WAS QUEUED
+	public static class RecoveredJob {
+		private final long seq;
+		private final JobRequest job;
+
+		RecoveredJob(long seq, JobRequest job) {
+			this.seq = seq;
+			this.job = job;
+		}
+
+		public long getSeq() {
+			return seq;
+		}
+
+		public JobRequest getJob() {
+			return job;
+		}
+	}
+
+	// AN ENCODED SNAPSHOT AND THE FIRST SEGMENT TO REPLAY AFTER IT
+	static class Snapshot {
+		private final long firstSegment;
+		private final byte[] bytes;
+
+		Snapshot(long firstSegment, byte[] bytes) {
+			this.firstSegment = firstSegment;
+			this.bytes = bytes;
+		}
+	}
+
+	// RETIRED SEGMENT
+	// A FULL SEGMENT, THE PART OF IT NOT YET FORCED, AND THE LOG POSITION OF ITS END
+	private static class Retired {
+		private final MappedByteBuffer buffer;
+		private final int from;
+		private final int to;
+		private final long end;
+
+		Retired(MappedByteBuffer buffer, int from, int to, long end) {
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.end = end;
+		}
+
+		void force() {
+			buffer.force(from, to - from);
+		}
+	}
+
+	// A SUBMITTER WAITING FOR THE FLUSHER TO FORCE ITS RECORD
+	private static class Waiter {
+		private final long position;
+		private final Condition condition;
+		private boolean done = false;
+
+		Waiter(long position, Condition condition) {
+			this.position = position;
+			this.condition = condition;
+		}
+
+		long getPosition() {
+			return position;
+		}
+	}
+}
@@ -18,131 +18,2232 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.*; // USED FOR QUEUE, LINKED LIST, HASHMAP & PRIORITYQUEUE 
 import java.util.Map;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.function.Consumer;
 
-public class JobManager implements Manager { 
+public class JobManager implements BatchManager, AsyncManager { 
 	
-	// LOCKING FOR SYNCHRONIZING ACCESS
-    private final ReentrantLock lock = new ReentrantLock();
+	// LOCKING FOR SYNCHRONIZING ACCESS, NON-FAIR UNLESS A LockMode SAYS OTHERWISE
+    private final ReentrantLock lock;
 
 	// QUEUE FOR HOLDING THE JOB REQUEST IN A FIFO ORDER
-    private final LinkedList<JobRequest> pendingJobs = new LinkedList<>();
+    private final JobQueue pendingJobs = new JobQueue();
     
-	// STORING THE AVAILABLE SERVERS BY THE TYPE   
-    private final HashMap<String, ArrayList<ServerThread>> availableServers = new HashMap<>();
+	// DENSE int IDS FOR THE SERVER TYPE NAMES
+    private final ServerTypeRegistry registry = new ServerTypeRegistry();
 
+	// THE IDLE SERVERS AND WAITING JOBS OF EACH SERVER TYPE, INDEXED BY TYPE ID
+    private TypeState[] types = new TypeState[8];
+
+	// ORDERS IN WHICH THE SCHEDULING POLICIES CONSIDER JOBS
+    private static final Comparator<PendingJob> FIFO_ORDER = Comparator.comparingLong(PendingJob::getSeq);
+    private static final Comparator<PendingJob> PRIORITY_ORDER =
+            Comparator.comparingInt(PendingJob::getPriority).reversed().thenComparingLong(PendingJob::getSeq);
+
+	// HOW PENDING JOBS ARE CHOSEN, FIFO UNLESS CHANGED
+    private SchedulingPolicy policy = SchedulingPolicy.FIFO;
+
+	// PENDING JOBS WHOSE REQUIREMENTS ARE ALL MET, IN THE POLICY'S ORDER
+    private TreeSet<PendingJob> readyJobs = new TreeSet<>(FIFO_ORDER);
+
+	// EVERY PENDING JOB IN THE POLICY'S ORDER, KEPT ONLY UNDER HEAD_RESERVATION OR WITH GANG
+	// RESERVATIONS ON (TO FIND THE HEAD JOB)
+    private TreeSet<PendingJob> queuedJobs = null;
+
+	// SUBMISSION SEQUENCE NUMBER, GIVES EACH JOB ITS PLACE IN THE FIFO ORDER
+    private long nextSeq = 0;
+
+	// JOBS WHOSE SERVERS HAVE BEEN ASSIGNED AND NOT YET RETURNED BY completeJob, BY NAME
+    private final HashMap<String, RunningJob> runningJobs = new HashMap<>();
+
+	// CALLBACKS OF ASYNCHRONOUS SERVERS THAT HAVE BEEN ASSIGNED A JOB, RUN ONCE THE LOCK IS RELEASED
+    private ArrayList<Runnable> assignedCallbacks = new ArrayList<>();
+
+	// COUNTERS AND LATENCY HISTOGRAMS, OR NULL WHEN METRICS ARE OFF (ALL UPDATED UNDER THE LOCK)
+    private final JobManagerMetrics metrics;
+
+	// WRITE-AHEAD LOG OF SUBMITTED AND RELEASED JOBS, OR NULL WHEN THE QUEUE IS NOT DURABLE
+    private final JobJournal journal;
+
+	// WHICH IDLE SERVERS A RELEASED JOB IS GIVEN, AND THE VIEW OF THE GROUP INDEXES IT CHOOSES THROUGH
+    private ServerSelectionPolicy selection = ServerSelectionPolicy.HIGHEST_ID;
+    private final IdleGroupsView idleGroups = new IdleGroupsView();
+
+	// WHETHER BLOCKING LOGINS WAIT FOR A HANDOFF RATHER THAN ON THE MANAGER'S LOCK (OFF UNLESS SET)
+    private boolean handoff = false;
+
+	// ADMISSION CONTROL: WHAT HAPPENS TO A JOB WHEN THE QUEUE IS AT A LIMIT, THE LIMIT ON
+	// ALL PENDING JOBS (THE PER-TYPE LIMITS ARE KEPT IN TypeState), HOW LONG A BLOCKED
+	// SUBMISSION WAITS, AND WHETHER JOBS NEEDING MORE SERVERS THAN ARE KNOWN ARE TURNED AWAY
+    private AdmissionPolicy admission = AdmissionPolicy.REJECT;
+    private int maxPendingJobs = Integer.MAX_VALUE;
+    private long admissionTimeoutNanos = 0;
+    private boolean rejectUnsatisfiable = false;
+
+	// GANG RESERVATIONS: HOW LONG THE HEAD JOB MAY HOLD SERVERS FOR (0 TURNS THEM OFF),
+	// THE SHARE OF ITS NEED IT MAY HOLD, THE GANG BEING GATHERED (OR NULL), AND WHEN THE
+	// LAST GANG EXPIRED (NO NEW ONE FORMS FOR ANOTHER TIMEOUT AFTER THAT)
+    private long gangTimeoutNanos = 0;
+    private double gangHoldFraction = 1.0;
+    private Gang gang = null;
+    private boolean gangCooling = false;
+    private long gangExpiredAt = 0;
+
+	// SUBMISSIONS BLOCKED UNDER AdmissionPolicy.BLOCK, OLDEST FIRST
+    private final ArrayDeque<BlockedJob> blockedJobs = new ArrayDeque<>();
+
+	// FLAT COMBINING (LockMode.COMBINING ONLY, EXPERIMENTAL): CALLERS PUBLISH THEIR
+	// specifyJob AND serverLogin CALLS HERE, UNDER combineLock, AND ONE OF THEM AT A
+	// TIME (THE COMBINER) APPLIES EVERY PUBLISHED CALL UNDER THE MAIN LOCK AS ONE BATCH
+    private final LockMode lockMode;
+    private final ReentrantLock combineLock = new ReentrantLock();
+    private ArrayList<Operation> publishedOps = new ArrayList<>();
+    private ArrayList<Operation> spareOps = new ArrayList<>();
+    private boolean combinerActive = false;
+    private final ThreadLocal<Operation> operationSlots = ThreadLocal.withInitial(() -> new Operation(combineLock.newCondition()));
+
+	// HOW MANY BATCHES A COMBINER APPLIES BEFORE HANDING THE JOB ON, SO THAT NO CALLER
+	// IS KEPT COMBINING FOR OTHERS INDEFINITELY
+    private static final int MAX_COMBINING_ROUNDS = 4;
+
+	// WHICH LIMIT A NEW JOB WOULD GO OVER, BESIDES A TYPE ID (SEE limitReachedBy)
+    private static final int GLOBAL_LIMIT = -1;
+    private static final int NO_LIMIT_REACHED = -2;
+
+    public JobManager() {
+        this(false);
+    }
+
+	// WITH `collectMetrics` SET, THE MANAGER TIMES THE LOCK, MATCHING PASSES AND
+	// WAITS AND COUNTS JOBS AND SERVERS; READ THEM WITH getMetrics()
+    public JobManager(boolean collectMetrics) {
+        this(collectMetrics, null);
+    }
+
+	// DURABLE JOB MANAGER
+	// RE-QUEUES THE JOBS RECOVERED FROM THE JOURNAL (IN THEIR ORIGINAL ORDER), TAKES A
+	// CHECKPOINT, AND FROM THEN ON LOGS EVERY SUBMITTED AND RELEASED JOB TO IT.
+	// THE CALLER KEEPS OWNERSHIP OF THE JOURNAL AND CLOSES IT.
+    public JobManager(boolean collectMetrics, JobJournal journal) {
+        this(collectMetrics, journal, LockMode.NON_FAIR);
+    }
+
+	// WITH A LOCK MODE (SEE LockMode)
+    public JobManager(LockMode lockMode) {
+        this(false, null, lockMode);
+    }
+
+    public JobManager(boolean collectMetrics, JobJournal journal, LockMode lockMode) {
+        this.lock = new ReentrantLock(lockMode == LockMode.FAIR);
+        this.lockMode = lockMode;
+        this.metrics = collectMetrics ? new JobManagerMetrics() : null;
+        if (journal != null) {
+            for (JobJournal.RecoveredJob recovered : journal.getRecoveredJobs()) {
+                enqueueJob(recovered.getJob());
+            }
+        }
+        // SET ONLY NOW, SO THE RECOVERED JOBS ARE NOT LOGGED A SECOND TIME
+        this.journal = journal;
+        if (journal != null) {
+            checkpoint();
+        }
+    }
+
+	// SPECIFYING A JOB
+	// WITH A JOURNAL, THE JOB'S RECORD IS APPENDED UNDER THE LOCK, AND THE CALL THEN
+	// WAITS (WITHOUT THE LOCK) FOR IT TO REACH THE DISK IF THE JOURNAL ASKS FOR THAT.
     @Override
     public void specifyJob(JobRequest job) {
-        lock.lock();
+        Operation op = claimOperation();
+        if (op != null) {
+            op.kind = Operation.SPECIFY;
+            op.job = job;
+            combine(op);
+            long logged = op.logged;
+            boolean deferred = op.deferred;
+            releaseOperation(op);
+            if (!deferred) {
+                if (journal != null) {
+                    journal.awaitDurable(logged);
+                }
+                return;
+            }
+        }
+        long logged = 0;
+        JobJournal.Snapshot snapshot = null;
+        acquireLock();
         try {
         	// ADDING JOB INTO THE FIFO QUEUE
-            pendingJobs.add(job);
+            JobSpec spec = JobSpec.of(job, registry);
+            admitJob(spec);
+            enqueueSpec(spec);
             // ALLOCATING THE SERVERS TO JOBS
             processJobs();
+            if (journal != null) {
+                logged = journal.position();
+                snapshot = journal.isCheckpointDue() ? takeSnapshot() : null;
+            }
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+        if (journal != null) {
+            syncJournal(logged, snapshot);
+        }
+    }
+
+	// SPECIFYING A JOB FROM A JobSpec
+	// THE SAME AS specifyJob(JobRequest), BUT THE SPEC'S ARRAYS ARE USED AS THEY ARE.
+	// THE SPEC MUST HAVE BEEN BUILT WITH THIS MANAGER'S getTypeRegistry().
+    public void specifyJob(JobSpec spec) {
+        if (spec.getRegistry() != registry) {
+            throw new IllegalArgumentException("job " + spec.getName() + " was built with another manager's type registry");
+        }
+        long logged = 0;
+        JobJournal.Snapshot snapshot = null;
+        acquireLock();
+        try {
+            admitJob(spec);
+            enqueueSpec(spec);
+            processJobs();
+            if (journal != null) {
+                logged = journal.position();
+                snapshot = journal.isCheckpointDue() ? takeSnapshot() : null;
+            }
+            runAssignedCallbacks();
         } finally {
-            lock.unlock();
+            releaseLock();
+        }
+        if (journal != null) {
+            syncJournal(logged, snapshot);
+        }
+    }
+
+	// THE REGISTRY THAT JobSpecs FOR THIS MANAGER MUST BE BUILT WITH
+    public ServerTypeRegistry getTypeRegistry() {
+        return registry;
+    }
+
+	// SPECIFYING A BATCH OF JOBS
+	// QUEUES THE WHOLE BATCH UNDER ONE LOCK ACQUISITION AND THEN RUNS A SINGLE
+	// ALLOCATION PASS. THE PASS RELEASES READY JOBS EARLIEST FIRST, SO THE SERVERS
+	// GO OUT IN THE SAME ORDER AS CALLING specifyJob ON EACH JOB IN TURN.
+	// IF ADMISSION CONTROL REJECTS A JOB, THE JOBS BEFORE IT STAY QUEUED, THE REST OF
+	// THE BATCH IS DROPPED, AND THE JobRejectedException IS THROWN AT THE END.
+    @Override
+    public void specifyJobs(Collection<JobRequest> jobs) {
+        long logged = 0;
+        JobJournal.Snapshot snapshot = null;
+        JobRejectedException rejected = null;
+        acquireLock();
+        try {
+            try {
+                for (JobRequest job : jobs) {
+                    JobSpec spec = JobSpec.of(job, registry);
+                    admitJob(spec);
+                    enqueueSpec(spec);
+                }
+            } catch (JobRejectedException e) {
+                rejected = e;
+            }
+            processJobs();
+            if (journal != null) {
+                logged = journal.position();
+                snapshot = journal.isCheckpointDue() ? takeSnapshot() : null;
+            }
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+        if (journal != null) {
+            syncJournal(logged, snapshot);
+        }
+        if (rejected != null) {
+            throw rejected;
+        }
+    }
+
+	// SERVER LOGIN
+	// A SERVER LOGGING IN AGAIN REUSES ITS ServerThread AND CONDITION. IF completeJob
+	// HAS ALREADY PUT IT BACK IN THE POOL, IT JUST WAITS THERE, OR RETURNS AT ONCE IF
+	// IT WAS GIVEN A NEW JOB IN THE MEANTIME.
+	// THE Manager INTERFACE GIVES NO WAY TO RETURN WITHOUT A JOB, SO THIS WAITS
+	// UNINTERRUPTIBLY (AN INTERRUPT STAYS SET FOR THE CALLER TO SEE AFTERWARDS).
+    @Override
+    public String serverLogin(String type, int ID) {
+        try {
+            Operation op = claimOperation();
+            if (op != null) {
+                op.kind = Operation.LOGIN;
+                op.type = type;
+                op.id = ID;
+                combine(op);
+                String jobName = op.result;
+                ServerThread server = op.server;
+                releaseOperation(op);
+                return server == null ? jobName : server.awaitHandoff(false, -1);
+            }
+            return login(type, ID, false, -1);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e); // NEVER THROWN BY AN UNINTERRUPTIBLE LOGIN
+        }
+    }
+
+	// INTERRUPTIBLE SERVER LOGIN
+	// AS serverLogin, BUT IF THE THREAD IS INTERRUPTED BEFORE A JOB ARRIVES, THE
+	// SERVER IS TAKEN BACK OUT OF THE IDLE POOL AND InterruptedException IS THROWN.
+    public String serverLoginInterruptibly(String type, int ID) throws InterruptedException {
+        return login(type, ID, true, -1);
+    }
+
+	// TIMED SERVER LOGIN
+	// AS serverLoginInterruptibly, BUT GIVES UP AFTER `timeoutNanos` (IN NANOSECONDS, AS
+	// Condition.awaitNanos): THE SERVER IS TAKEN BACK OUT OF THE IDLE POOL AND NULL IS
+	// RETURNED. A JOB ASSIGNED BEFORE THE DEADLINE IS ALWAYS RETURNED, EVEN IF THE
+	// THREAD WAS INTERRUPTED AS WELL.
+    public String serverLogin(String type, int ID, long timeoutNanos) throws InterruptedException {
+        return login(type, ID, true, Math.max(0, timeoutNanos));
+    }
+    
+	// ASYNCHRONOUS SERVER LOGIN
+	// ADDS THE SERVER TO THE SAME IDLE POOL AS THE BLOCKING LOGINS, BUT WITH A
+	// CALLBACK INSTEAD OF A CONDITION, SO NO THREAD WAITS FOR IT.
+    @Override
+    public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned) {
+        Operation op = claimOperation();
+        if (op != null) {
+            op.kind = Operation.LOGIN_ASYNC;
+            op.type = type;
+            op.id = ID;
+            op.callback = onAssigned;
+            combine(op);
+            releaseOperation(op);
+            return;
+        }
+        acquireLock();
+        try {
+            ServerThread server = serverRecord(type, ID, onAssigned);
+            if (server.isAssigned()) {
+                String jobName = server.takeAssignedJob();
+                assignedCallbacks.add(() -> onAssigned.accept(jobName));
+            } else if (!server.isIdle()) {
+                loginServer(server);
+                processJobs();
+            }
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// CANCELLING A JOB
+	// TAKES THE QUEUED JOB OFF EVERY QUEUE AND INDEX WITHOUT ASSIGNING IT, LOGS ITS
+	// REMOVAL TO THE JOURNAL (SO IT IS NOT RECOVERED), AND RUNS A MATCHING PASS IN
+	// CASE IT WAS HOLDING OTHERS BACK (THE HEAD JOB UNDER HEAD_RESERVATION).
+	// IF SEVERAL QUEUED JOBS SHARE THE NAME, ALL OF THEM ARE CANCELLED. A JOB THAT
+	// HAS ALREADY BEEN RELEASED IS NOT AFFECTED (USE completeJob).
+	// RETURNS FALSE IF NO JOB OF THAT NAME IS QUEUED.
+    public boolean cancelJob(String jobName) {
+        long logged = 0;
+        boolean cancelled = false;
+        acquireLock();
+        try {
+            for (JobQueue.Node node : pendingJobs) {
+                PendingJob pending = (PendingJob) node;
+                if (pending.spec.getName().equals(jobName)) {
+                    dequeueJob(pending);
+                    if (metrics != null) {
+                        metrics.jobsCancelled++;
+                    }
+                    cancelled = true;
+                }
+            }
+            if (cancelled) {
+                processJobs();
+                if (journal != null) {
+                    logged = journal.position();
+                }
+                runAssignedCallbacks();
+            }
+        } finally {
+            releaseLock();
+        }
+        if (cancelled && journal != null) {
+            journal.awaitDurable(logged);
+        }
+        return cancelled;
+    }
+
+	// COMPLETING A JOB
+	// PUTS EVERY SERVER STILL RUNNING THE JOB BACK IN THE IDLE POOL, REUSING ITS
+	// ServerThread (AND CONDITION), AND RUNS ONE MATCHING PASS SO WAITING JOBS CAN
+	// TAKE THE RETURNED SERVERS STRAIGHT AWAY.
+	// AN ASYNCHRONOUS SERVER IS HANDED ITS NEXT JOB THROUGH ITS CALLBACK AS BEFORE. A
+	// BLOCKING SERVER COLLECTS ITS NEXT JOB BY CALLING serverLogin AGAIN, WHICH
+	// RETURNS AT ONCE IF THE SERVER HAS ALREADY BEEN ASSIGNED ONE.
+	// IF SEVERAL RUNNING JOBS SHARE THE NAME, ALL OF THEIR SERVERS ARE RETURNED.
+	// RETURNS FALSE IF NO JOB OF THAT NAME IS RUNNING.
+    public boolean completeJob(String jobName) {
+        acquireLock();
+        try {
+            RunningJob running = runningJobs.remove(jobName);
+            if (running == null) {
+                return false;
+            }
+            for (ServerThread server : running.servers) {
+                // A SERVER THAT HAS SINCE LOGGED IN AGAIN HAS ALREADY LEFT THE JOB
+                if (server.running == running) {
+                    server.running = null;
+                    server.assigned = false;
+                    addServer(server);
+                    if (metrics != null) {
+                        metrics.serversReturned++;
+                    }
+                }
+            }
+            if (metrics != null) {
+                metrics.jobsCompleted++;
+            }
+            processJobs();
+            runAssignedCallbacks();
+            return true;
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// RESERVING SERVERS
+	// TAKES UP TO THE WANTED NUMBER OF IDLE SERVERS OF EACH TYPE (HIGHEST IDS FIRST)
+	// OUT OF THE POOL WITHOUT ASSIGNING THEM, FOR A CALLER GATHERING ONE JOB'S SERVERS
+	// FROM SEVERAL MANAGERS. THE RESERVATION MAY HOLD FEWER SERVERS THAN WANTED, AND
+	// MUST THEN BE EITHER COMMITTED TO A JOB OR CANCELLED.
+    public Reservation reserve(Map<String, Integer> wanted) {
+        acquireLock();
+        try {
+            Reservation reservation = new Reservation();
+            for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+                int typeId = registry.find(entry.getKey());
+                int take = Math.min(entry.getValue(), idleCount(typeId < 0 ? 0 : typeId));
+                if (typeId < 0 || take <= 0) {
+                    continue;
+                }
+                ServerHeap servers = types[typeId].availableServers;
+                int oldCount = servers.size();
+                for (int i = 0; i < take; i++) {
+                    reservation.servers.add(servers.poll());
+                }
+                reservation.granted.merge(entry.getKey(), take, Integer::sum);
+                serversRemoved(typeId, oldCount, servers.size());
+            }
+            return reservation;
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// COMMITTING A RESERVATION
+	// ASSIGNS EVERY RESERVED SERVER TO THE JOB, JUST AS IF THE JOB HAD BEEN RELEASED HERE
+    public void commitReservation(Reservation reservation, String jobName) {
+        acquireLock();
+        try {
+            reservation.close();
+            long now = clock();
+            RunningJob running = null;
+            for (ServerThread server : reservation.servers) {
+                running = assignServer(server, jobName, running, now);
+            }
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// CANCELLING A RESERVATION
+	// PUTS THE RESERVED SERVERS BACK IN THE IDLE POOL AND RUNS A MATCHING PASS
+    public void cancelReservation(Reservation reservation) {
+        acquireLock();
+        try {
+            reservation.close();
+            for (ServerThread server : reservation.servers) {
+                addServer(server);
+            }
+            processJobs();
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// KNOWN SERVER COUNT
+	// NUMBER OF DIFFERENT SERVERS OF THE TYPE THAT HAVE EVER LOGGED IN, IDLE OR NOT
+    public int getKnownServerCount(String type) {
+        acquireLock();
+        try {
+            int typeId = registry.find(type);
+            return typeId < 0 || typeId >= types.length || types[typeId] == null ? 0 : types[typeId].servers.size();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// NUMBER OF JOBS THAT STILL HAVE SERVERS WHICH HAVE NOT BEEN RETURNED
+    public int getRunningJobCount() {
+        acquireLock();
+        try {
+            return runningJobs.size();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// SCHEDULING POLICY
+	// SWITCHES HOW PENDING JOBS ARE CHOSEN (SEE SchedulingPolicy). THE JOBS ALREADY
+	// QUEUED ARE RE-ORDERED, AND ANY THE NEW POLICY LETS RUN ARE RELEASED AT ONCE.
+    public void setSchedulingPolicy(SchedulingPolicy policy) {
+        acquireLock();
+        try {
+            this.policy = policy;
+            TreeSet<PendingJob> ready = new TreeSet<>(policy == SchedulingPolicy.FIFO ? FIFO_ORDER : PRIORITY_ORDER);
+            ready.addAll(readyJobs);
+            readyJobs = ready;
+            orderQueuedJobs();
+            processJobs();
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public LockMode getLockMode() {
+        return lockMode;
+    }
+
+	// WAKE-UP HANDOFF
+	// WITH HANDOFF ON, A BLOCKING LOGIN WAITS ON A LOCK AND CONDITION OF ITS OWN AND IS
+	// HANDED ITS JOB NAME UNDER THEM, SO A RELEASED SERVER RETURNS WITHOUT TAKING THE
+	// MANAGER'S LOCK AGAIN (SEE awaitHandoff). IT ONLY CHANGES LOGINS THAT START WAITING
+	// AFTER THE CALL; SERVERS ALREADY WAITING ARE WOKEN AS BEFORE.
+    public void setWakeupHandoff(boolean handoff) {
+        acquireLock();
+        try {
+            this.handoff = handoff;
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public boolean isWakeupHandoff() {
+        acquireLock();
+        try {
+            return handoff;
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// ADMISSION POLICY
+	// WHAT specifyJob DOES WITH A JOB WHEN THE QUEUE IS AT A LIMIT (SEE AdmissionPolicy).
+	// `timeoutNanos` IS HOW LONG A SUBMISSION WAITS FOR ROOM UNDER BLOCK BEFORE IT IS
+	// REJECTED.
+    public void setAdmissionPolicy(AdmissionPolicy policy, long timeoutNanos) {
+        acquireLock();
+        try {
+            this.admission = policy;
+            this.admissionTimeoutNanos = Math.max(0, timeoutNanos);
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public void setAdmissionPolicy(AdmissionPolicy policy) {
+        setAdmissionPolicy(policy, 0);
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        acquireLock();
+        try {
+            return admission;
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// QUEUE LIMITS
+	// THE MOST JOBS THAT MAY BE PENDING AT ONCE, IN ALL (NO LIMIT UNLESS SET) OR NEEDING
+	// SERVERS OF ONE TYPE. A LIMIT ONLY APPLIES TO JOBS SPECIFIED AFTER IT IS SET; JOBS
+	// ALREADY QUEUED ARE KEPT EVEN IF THERE ARE MORE OF THEM. Integer.MAX_VALUE REMOVES IT.
+    public void setQueueLimit(int maxPendingJobs) {
+        acquireLock();
+        try {
+            this.maxPendingJobs = checkLimit(maxPendingJobs);
+            admitBlocked();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public void setQueueLimit(String type, int maxPendingJobs) {
+        acquireLock();
+        try {
+            typeState(registry.idOf(type)).pendingLimit = checkLimit(maxPendingJobs);
+            admitBlocked();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// GANG RESERVATIONS
+	// WITHOUT THEM, A JOB NEEDING MANY SERVERS OF SEVERAL TYPES ONLY RUNS IF THEY ARE
+	// ALL IDLE AT THE SAME MOMENT, WHICH SMALLER JOBS TAKING SERVERS AS THEY LOG IN CAN
+	// PUT OFF FOR EVER. WITH THEM, THE HEAD JOB (FIRST IN THE POLICY'S ORDER) THAT IS
+	// SHORT OF SERVERS HOLDS EACH SERVER IT NEEDS AS IT BECOMES IDLE, UP TO
+	// `holdFraction` OF ITS NEED OF EACH TYPE, AND IS RELEASED, WITH THE SERVERS IT HOLDS,
+	// AS SOON AS THE REST OF ITS NEED IS IDLE.
+	// HELD SERVERS RUN NOTHING, SO A GANG THAT HAS NOT ASSEMBLED AFTER `timeoutNanos`
+	// GIVES ITS SERVERS BACK AND NO NEW GANG FORMS FOR AS LONG AGAIN. THE TIMEOUT IS NOTICED ON
+	// THE NEXT CALL THAT RUNS A MATCHING PASS. A TIMEOUT OF 0 TURNS GANG RESERVATIONS OFF.
+    public void setGangReservation(long timeoutNanos, double holdFraction) {
+        if (!(holdFraction > 0 && holdFraction <= 1)) {
+            throw new IllegalArgumentException("hold fraction must be above 0 and at most 1: " + holdFraction);
+        }
+        acquireLock();
+        try {
+            if (gang != null) {
+                expireGang(System.nanoTime());
+            }
+            this.gangTimeoutNanos = Math.max(0, timeoutNanos);
+            this.gangHoldFraction = holdFraction;
+            this.gangCooling = false;
+            orderQueuedJobs();
+            processJobs();
+            runAssignedCallbacks();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public void setGangReservation(long timeoutNanos) {
+        setGangReservation(timeoutNanos, 1.0);
+    }
+
+	// IDLE SERVERS OF THE TYPE HELD FOR THE HEAD JOB'S GANG (NOT COUNTED AS IDLE SERVERS)
+    public int getHeldServerCount(String type) {
+        acquireLock();
+        try {
+            int typeId = registry.find(type);
+            return gang == null || typeId < 0 ? 0 : gang.heldOf(typeId);
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// UNSATISFIABLE JOBS
+	// WITH THIS SET, A JOB NEEDING MORE SERVERS OF A TYPE THAN HAVE EVER LOGGED IN AS
+	// THAT TYPE (NONE, FOR A TYPE NO SERVER HAS USED) IS REJECTED AT ONCE INSTEAD OF
+	// WAITING IN THE QUEUE. ONLY FOR A FLEET WHOSE SERVERS HAVE ALL LOGGED IN BEFORE
+	// JOBS ARRIVE, SINCE A JOB SPECIFIED AHEAD OF ITS SERVERS IS REJECTED TOO.
+    public void setRejectUnsatisfiable(boolean rejectUnsatisfiable) {
+        acquireLock();
+        try {
+            this.rejectUnsatisfiable = rejectUnsatisfiable;
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public int getPendingJobCount() {
+        acquireLock();
+        try {
+            return pendingJobs.size();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// SERVER SELECTION POLICY
+	// SWITCHES WHICH IDLE SERVERS A RELEASED JOB IS GIVEN (SEE ServerSelectionPolicy).
+	// EVERY KNOWN SERVER IS PUT IN ITS GROUP AGAIN AND THE IDLE POOLS RE-INDEXED, SO
+	// THIS IS MEANT FOR SETTING UP THE MANAGER RATHER THAN FOR EVERY JOB.
+    public void setServerSelectionPolicy(ServerSelectionPolicy selection) {
+        acquireLock();
+        try {
+            this.selection = selection;
+            boolean grouped = selection != ServerSelectionPolicy.HIGHEST_ID;
+            for (int typeId = 0; typeId < types.length; typeId++) {
+                TypeState state = types[typeId];
+                if (state == null) {
+                    continue;
+                }
+                String type = registry.nameOf(typeId);
+                for (ServerThread server : state.servers.values()) {
+                    server.group = selection.groupOf(type, server.getID());
+                }
+                // IDLE SERVERS THAT ARE NOT KEPT FOR REUSE ARE ONLY IN THE HEAP
+                state.availableServers.regroup(grouped, server -> server.group = selection.groupOf(type, server.getID()));
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public ServerSelectionPolicy getServerSelectionPolicy() {
+        acquireLock();
+        try {
+            return selection;
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public SchedulingPolicy getSchedulingPolicy() {
+        acquireLock();
+        try {
+            return policy;
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// CHECKPOINT
+	// SNAPSHOTS THE QUEUED JOBS AND IDLE SERVER COUNTS INTO THE JOURNAL AND DROPS THE
+	// LOG SEGMENTS BEFORE IT, SO RECOVERY ONLY REPLAYS WHAT CAME AFTER. ALSO TAKEN
+	// AUTOMATICALLY ONCE THE JOURNAL HAS LOGGED ENOUGH RECORDS SINCE THE LAST ONE.
+    public void checkpoint() {
+        if (journal == null) {
+            throw new IllegalStateException("this JobManager has no journal");
+        }
+        JobJournal.Snapshot snapshot;
+        acquireLock();
+        try {
+            snapshot = takeSnapshot();
+        } finally {
+            releaseLock();
+        }
+        journal.writeSnapshot(snapshot);
+    }
+
+	// IDLE SERVER COUNT
+	// NUMBER OF SERVERS OF THE TYPE THAT HAVE LOGGED IN AND ARE WAITING FOR A JOB
+    public int getIdleServerCount(String type) {
+        acquireLock();
+        try {
+            int typeId = registry.find(type);
+            return typeId < 0 ? 0 : idleCount(typeId);
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// METRICS
+	// A CONSISTENT SNAPSHOT OF THE COUNTERS, HISTOGRAMS, QUEUE DEPTH AND IDLE
+	// SERVERS BY TYPE, OR NULL IF THIS MANAGER WAS CREATED WITHOUT METRICS.
+	// THE IDLE TIME OF SERVERS HELD FOR A GANG IS COUNTED UP TO THE SNAPSHOT.
+    public JobManagerMetrics.Snapshot getMetrics() {
+        if (metrics == null) {
+            return null;
+        }
+        acquireLock();
+        try {
+            accrueHeldTime();
+            return new JobManagerMetrics.Snapshot(metrics, pendingJobs.size(), idleServersByType());
+        } finally {
+            releaseLock();
+        }
+    }
+
+    public void resetMetrics() {
+        if (metrics == null) {
+            return;
+        }
+        acquireLock();
+        try {
+            accrueHeldTime();
+            metrics.reset();
+        } finally {
+            releaseLock();
+        }
+    }
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+	// IDLE SERVER COUNTS BY TYPE NAME
+    private HashMap<String, Integer> idleServersByType() {
+        HashMap<String, Integer> idle = new HashMap<>();
+        for (int typeId = 0; typeId < types.length; typeId++) {
+            if (types[typeId] != null) {
+                idle.put(registry.nameOf(typeId), types[typeId].availableServers.size());
+            }
+        }
+        return idle;
+    }
+
+	// TAKING A SNAPSHOT
+	// STARTS A NEW JOURNAL SEGMENT AND ENCODES THE QUEUE AS IT STANDS AT THAT POINT.
+	// CALLED WITH THE LOCK HELD; THE SNAPSHOT IS WRITTEN OUT AFTER IT IS RELEASED.
+    private JobJournal.Snapshot takeSnapshot() {
+        long firstSegment = journal.startSegment();
+        long[] seqs = new long[pendingJobs.size()];
+        JobSpec[] jobs = new JobSpec[pendingJobs.size()];
+        int j = 0;
+        for (JobQueue.Node node : pendingJobs) {
+            seqs[j] = ((PendingJob) node).seq;
+            jobs[j++] = ((PendingJob) node).spec;
+        }
+        return JobJournal.encodeSnapshot(firstSegment, idleServersByType(), seqs, jobs);
+    }
+
+	// AFTER THE LOCK IS RELEASED: WRITES ANY SNAPSHOT THAT WAS TAKEN, THEN WAITS FOR
+	// THE LOGGED RECORDS TO BE DURABLE (A NO-OP UNLESS THE JOURNAL USES GROUP COMMIT)
+    private void syncJournal(long logged, JobJournal.Snapshot snapshot) {
+        if (snapshot != null) {
+            journal.writeSnapshot(snapshot);
+        }
+        journal.awaitDurable(logged);
+    }
+
+	// FLAT COMBINING
+	// A CALLER'S OPERATION IS ITS THREAD'S OWN SLOT, REUSED FROM CALL TO CALL. THERE IS
+	// NO SLOT (AND THE CALL TAKES THE MAIN LOCK ITSELF) WHEN THE LOCK MODE IS NOT
+	// COMBINING, OR WHEN THE THREAD'S SLOT IS ALREADY IN USE: A CALLBACK RUN BY A
+	// COMBINER THAT CALLS BACK INTO THE MANAGER MUST NOT WAIT FOR ITSELF.
+    private Operation claimOperation() {
+        if (lockMode != LockMode.COMBINING) {
+            return null;
+        }
+        Operation op = operationSlots.get();
+        if (op.inUse) {
+            return null;
+        }
+        op.inUse = true;
+        return op;
+    }
+
+    private void releaseOperation(Operation op) {
+        op.clear();
+        op.inUse = false;
+    }
+
+	// PUBLISHES THE OPERATION AND WAITS (ON ITS OWN CONDITION OF combineLock) UNTIL A
+	// COMBINER HAS APPLIED IT, OR UNTIL THERE IS NO COMBINER, IN WHICH CASE THIS CALLER
+	// BECOMES THE COMBINER. THROWS WHATEVER APPLYING THE OPERATION THREW.
+    private void combine(Operation op) {
+        boolean combining = false;
+        combineLock.lock();
+        try {
+            publishedOps.add(op);
+            while (!op.complete) {
+                if (!combinerActive) {
+                    combinerActive = true;
+                    combining = true;
+                    break;
+                }
+                op.done.awaitUninterruptibly();
+            }
+        } finally {
+            combineLock.unlock();
+        }
+        RuntimeException failure = combining ? runCombiner() : null;
+        if (op.failure != null) {
+            throw op.failure;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+	// COMBINER
+	// TAKES EVERYTHING PUBLISHED SO FAR, APPLIES IT AS ONE BATCH, MARKS THE BATCH'S
+	// OPERATIONS COMPLETE AND WAKES THEIR CALLERS, AND GOES ROUND AGAIN WHILE MORE HAVE
+	// BEEN PUBLISHED, UP TO MAX_COMBINING_ROUNDS. IT THEN STEPS DOWN AND WAKES THE
+	// OLDEST CALLER STILL WAITING, WHICH TAKES OVER.
+	// THE COMBINER'S OWN OPERATION WAS PUBLISHED BEFORE IT TOOK THE ROLE, SO IT IS IN
+	// THE FIRST BATCH. RETURNS THE FIRST FAILURE OF AN ASYNCHRONOUS SERVER'S CALLBACK.
+    private RuntimeException runCombiner() {
+        RuntimeException failure = null;
+        for (int round = 0; ; round++) {
+            ArrayList<Operation> batch;
+            combineLock.lock();
+            try {
+                if (publishedOps.isEmpty() || round == MAX_COMBINING_ROUNDS) {
+                    combinerActive = false;
+                    if (!publishedOps.isEmpty()) {
+                        publishedOps.get(0).done.signal();
+                    }
+                    return failure;
+                }
+                batch = publishedOps;
+                publishedOps = spareOps;
+            } finally {
+                combineLock.unlock();
+            }
+            RuntimeException batchFailure;
+            try {
+                batchFailure = applyBatch(batch);
+            } catch (RuntimeException e) {
+                batchFailure = e;
+            }
+            if (failure == null) {
+                failure = batchFailure;
+            }
+            combineLock.lock();
+            try {
+                for (Operation op : batch) {
+                    op.complete = true;
+                    op.done.signal();
+                }
+                batch.clear();
+                spareOps = batch;
+            } finally {
+                combineLock.unlock();
+            }
+        }
+    }
+
+	// APPLYING A BATCH
+	// EVERY OPERATION IS APPLIED UNDER ONE ACQUISITION OF THE MAIN LOCK AND THEN ONE
+	// MATCHING PASS RUNS FOR ALL OF THEM. THE OPERATIONS ARE CONCURRENT CALLS, SO ANY
+	// ORDER OF THEM IS A VALID ONE; APPLYING THEM BEFORE MATCHING SIMPLY MEANS EACH JOB
+	// SEES EVERY SERVER THAT LOGGED IN IN THE SAME BATCH.
+	// A BLOCKING LOGIN IS PARKED BEFORE THE MATCHING PASS, SO ITS JOB IS HANDED OFF AND
+	// ITS CALLER NEVER TAKES THE MAIN LOCK AT ALL.
+	// A JOB THAT WOULD HAVE TO WAIT FOR ROOM UNDER AdmissionPolicy.BLOCK IS DEFERRED: ITS
+	// CALLER WAITS ON THE ORDINARY PATH, NOT THE COMBINER (WHICH WOULD HOLD UP THE
+	// LOGINS THAT MAKE THE ROOM).
+	// RETURNS THE FIRST FAILURE OF AN ASYNCHRONOUS SERVER'S CALLBACK, IF ANY.
+    private RuntimeException applyBatch(ArrayList<Operation> batch) {
+        JobJournal.Snapshot snapshot = null;
+        RuntimeException failure = null;
+        acquireLock();
+        try {
+            for (Operation op : batch) {
+                try {
+                    applyOperation(op);
+                } catch (RuntimeException e) {
+                    op.failure = e;
+                }
+            }
+            processJobs();
+            if (journal != null) {
+                long logged = journal.position();
+                snapshot = journal.isCheckpointDue() ? takeSnapshot() : null;
+                for (Operation op : batch) {
+                    op.logged = logged;
+                }
+            }
+            try {
+                runAssignedCallbacks();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        } finally {
+            releaseLock();
+        }
+        // THE CHECKPOINT IS WRITTEN OUT BY THE COMBINER, WITHOUT THE LOCK
+        if (snapshot != null) {
+            journal.writeSnapshot(snapshot);
+        }
+        return failure;
+    }
+
+    private void applyOperation(Operation op) {
+        switch (op.kind) {
+        case Operation.SPECIFY:
+            JobSpec spec = JobSpec.of(op.job, registry);
+            if (admission == AdmissionPolicy.BLOCK && !hasRoomFor(spec)) {
+                op.deferred = true;
+                return;
+            }
+            admitJob(spec);
+            enqueueSpec(spec);
+            break;
+        case Operation.LOGIN:
+            ServerThread server = serverRecord(op.type, op.id, null);
+            if (server.isAssigned()) {
+                op.result = server.takeAssignedJob();
+                return;
+            }
+            server.waiting = true;
+            if (!server.isIdle()) {
+                loginServer(server);
+            }
+            server.park();
+            op.server = server;
+            break;
+        default:
+            ServerThread asyncServer = serverRecord(op.type, op.id, op.callback);
+            if (asyncServer.isAssigned()) {
+                String jobName = asyncServer.takeAssignedJob();
+                Consumer<String> onAssigned = op.callback;
+                assignedCallbacks.add(() -> onAssigned.accept(jobName));
+            } else if (!asyncServer.isIdle()) {
+                loginServer(asyncServer);
+            }
+            break;
+        }
+    }
+
+	// ACQUIRING AND RELEASING THE LOCK
+	// WITH METRICS ON, THESE TIME HOW LONG THE CALLER WAITED FOR THE LOCK AND HOW
+	// LONG IT HELD IT. ALL OF THE METRICS UPDATES HAPPEN WHILE THE LOCK IS HELD.
+    private void acquireLock() {
+        if (metrics == null) {
+            lock.lock();
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        long now = System.nanoTime();
+        metrics.lockAcquisitions++;
+        metrics.lockWait.record(now - start);
+        metrics.lockHeldSince = now;
+    }
+
+    private void releaseLock() {
+        if (metrics != null) {
+            metrics.lockHold.record(System.nanoTime() - metrics.lockHeldSince);
+        }
+        lock.unlock();
+    }
+
+    private long clock() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+    
+	// LOGGING IN AND WAITING FOR A JOB
+	// WAITS UNTIL THE SERVER IS ASSIGNED A JOB, AT MOST `timeoutNanos` IF THAT IS NOT
+	// NEGATIVE, AND ONLY STOPPING FOR AN INTERRUPT IF `interruptible` IS SET.
+	// A SERVER THAT STOPS WAITING WITHOUT A JOB IS WITHDRAWN FROM THE IDLE POOL, SO NO
+	// JOB CAN BE ASSIGNED TO A SERVER THAT IS NO LONGER THERE TO RUN IT.
+	// WITH WAKE-UP HANDOFF ON, THE SERVER WAITS FOR ITS JOB AFTER GIVING UP THE LOCK
+	// (SEE awaitHandoff).
+    private String login(String type, int ID, boolean interruptible, long timeoutNanos) throws InterruptedException {
+        ServerThread server;
+        acquireLock();
+        try {
+            server = serverRecord(type, ID, null);
+            if (server.isAssigned()) {
+                return server.takeAssignedJob();
+            }
+            boolean parked = false;
+            server.waiting = true;
+            try {
+                if (!server.isIdle()) {
+                    loginServer(server);
+                    
+                    // WAITING FOR AN JOB TO BE AVAILABLE
+                    processJobs();
+                    runAssignedCallbacks();
+                }
+                
+                if (handoff && !server.isAssigned()) {
+                    server.park();
+                    parked = true;
+                } else {
+                    long remaining = timeoutNanos;
+                    while (!server.isAssigned()) {
+                        if (timeoutNanos >= 0 && remaining <= 0) {
+                            withdrawServer(server);
+                            return null;
+                        }
+                        remaining = server.waitForAssignment(interruptible, remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!server.isAssigned()) {
+                    withdrawServer(server);
+                    throw e;
+                }
+                // THE JOB ARRIVED AS WELL, SO IT IS RETURNED AND THE INTERRUPT KEPT
+                Thread.currentThread().interrupt();
+            } finally {
+            	// A PARKED SERVER STAYS WAITING UNTIL ITS JOB IS HANDED OVER
+                if (!parked) {
+                    server.waiting = false;
+                }
+            }
+            
+            if (!parked) {
+                return server.takeAssignedJob();
+            }
+        } finally {
+            releaseLock();
+        }
+        return awaitHandoff(server, interruptible, timeoutNanos);
+    }
+
+	// WAITING FOR A HANDED-OFF JOB
+	// A PARKED SERVER WAITS ON ITS OWN LOCK AND CONDITION, NOT THE MANAGER'S. THE
+	// ASSIGNING THREAD HANDS THE JOB NAME OVER UNDER THAT LOCK, SO THE WOKEN SERVER
+	// RETURNS WITHOUT TAKING THE MANAGER'S LOCK AGAIN, AND A JOB FOR HUNDREDS OF
+	// SERVERS NO LONGER WAKES HUNDREDS OF THREADS THAT THEN QUEUE FOR ONE LOCK.
+	// A SERVER THAT GIVES UP (TIMEOUT OR INTERRUPT) DOES TAKE THE MANAGER'S LOCK, TO
+	// SETTLE WHETHER IT IS WITHDRAWN OR WAS ASSIGNED A JOB IN THE MEANTIME.
+	// LOCK ORDER: THE MANAGER'S LOCK, THEN A SERVER'S, NEVER THE OTHER WAY ROUND.
+    private String awaitHandoff(ServerThread server, boolean interruptible, long timeoutNanos) throws InterruptedException {
+        InterruptedException interrupted = null;
+        try {
+            String jobName = server.awaitHandoff(interruptible, timeoutNanos);
+            if (jobName != null) {
+                return jobName;
+            }
+        } catch (InterruptedException e) {
+            interrupted = e;
+        }
+        acquireLock();
+        try {
+            if (server.parked) {
+                server.parked = false;
+                server.waiting = false;
+                withdrawServer(server);
+                if (interrupted != null) {
+                    throw interrupted;
+                }
+                return null;
+            }
+        } finally {
+            releaseLock();
+        }
+        // THE JOB ARRIVED AS WELL, SO IT IS RETURNED (AND ANY INTERRUPT KEPT)
+        if (interrupted != null) {
+            Thread.currentThread().interrupt();
+        }
+        return server.awaitHandoff(false, -1);
+    }
+
+	// WITHDRAWING A SERVER
+	// TAKES AN IDLE SERVER BACK OUT OF ITS TYPE'S POOL, UPDATING THE DEFICITS OF THE
+	// JOBS THAT WERE COUNTING ON IT. ITS RECORD IS KEPT FOR ITS NEXT LOGIN.
+	// A SERVER HELD IN A RESERVATION IS NOT IN THE POOL AND IS LEFT ALONE; IF THE
+	// RESERVATION IS COMMITTED, ITS NEXT LOGIN COLLECTS THE JOB. ONE HELD FOR A GANG
+	// IS DROPPED FROM THE GANG, WHICH THEN GATHERS ANOTHER IN ITS PLACE.
+    private void withdrawServer(ServerThread server) {
+        if (server.held) {
+            unholdServer(server);
+            return;
+        }
+        ServerHeap servers = types[server.typeId].availableServers;
+        int oldCount = servers.size();
+        if (servers.remove(server)) {
+            serversRemoved(server.typeId, oldCount, servers.size());
+            if (metrics != null) {
+                metrics.serversWithdrawn++;
+            }
+        }
+    }
+
+	// THE RECORD FOR A LOGGING-IN SERVER
+	// A SERVER THAT HAS LOGGED IN BEFORE GETS ITS OLD ServerThread BACK, AND LEAVES
+	// ANY JOB IT WAS STILL RUNNING (LOGGING IN MEANS IT HAS FINISHED WITH IT). ONLY
+	// WHEN ANOTHER THREAD IS ALREADY WAITING AS THE SAME SERVER (OR HAS YET TO TAKE A
+	// HANDED-OFF JOB) IS A SEPARATE RECORD MADE, AND THAT ONE IS NOT KEPT FOR REUSE.
+	// A BLOCKING LOGIN NEEDS A CONDITION, WHICH IS MADE ONCE AND THEN KEPT.
+    private ServerThread serverRecord(String type, int ID, Consumer<String> callback) {
+        int typeId = registry.idOf(type);
+        TypeState state = typeState(typeId);
+        ServerThread server = state.servers.get(ID);
+        if (server == null) {
+            server = new ServerThread(type, typeId, ID);
+            server.group = selection.groupOf(type, ID);
+            state.servers.put(ID, server);
+        } else if (server.waiting || server.hasHandoff()) {
+            server = new ServerThread(type, typeId, ID);
+            server.group = selection.groupOf(type, ID);
+        } else if (!server.isAssigned()) {
+            leaveRunningJob(server);
+        }
+        server.callback = callback;
+        if (callback == null && server.condition == null) {
+            server.condition = lock.newCondition();
+        }
+        return server;
+    }
+
+	// TAKES THE SERVER OUT OF ITS RUNNING JOB, DROPPING THE JOB ONCE NONE ARE LEFT
+    private void leaveRunningJob(ServerThread server) {
+        RunningJob running = server.running;
+        if (running == null) {
+            return;
+        }
+        server.running = null;
+        if (--running.live == 0 && runningJobs.get(running.name) == running) {
+            runningJobs.remove(running.name);
+        }
+    }
+
+	// LOGGING THE SERVER IN
+    private void loginServer(ServerThread server) {
+        addServer(server);
+        if (metrics != null) {
+            metrics.serversLoggedIn++;
+        }
+    }
+
+	// ADDING THE SERVER TO THE IDLE POOL OF ITS TYPE
+    private void addServer(ServerThread server) {
+        ServerHeap servers = typeState(server.typeId).availableServers;
+        servers.add(server);
+        serversAdded(server.typeId, servers.size());
+        if (metrics != null) {
+            server.idleSince = System.nanoTime();
+        }
+    }
+
+	// RUNNING THE CALLBACKS OF THE ASYNCHRONOUS SERVERS
+	// CALLED WITH THE LOCK HELD AFTER AN ALLOCATION PASS. THE LOCK IS RELEASED WHILE
+	// THE CALLBACKS RUN, SO A CALLBACK CAN CALL BACK INTO THE MANAGER (E.G. TO LOG IN
+	// AGAIN) WITHOUT HOLDING UP EVERY OTHER THREAD, AND IS TAKEN AGAIN AFTERWARDS.
+    private void runAssignedCallbacks() {
+        if (assignedCallbacks.isEmpty()) {
+            return;
+        }
+        ArrayList<Runnable> callbacks = assignedCallbacks;
+        assignedCallbacks = new ArrayList<>();
+        releaseLock();
+        try {
+            RuntimeException failure = null;
+            for (Runnable callback : callbacks) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            acquireLock();
+        }
+    }
+
+	// ENQUEUING THE JOBS
+	// A JobRequest IS FIRST COMPILED INTO A JobSpec (THE ONLY TIME ITS HashMap IS READ).
+    private void enqueueJob(JobRequest job) {
+        enqueueSpec(JobSpec.of(job, registry));
+    }
+
+	// GIVES THE JOB ITS SEQUENCE NUMBER AND COUNTS HOW MANY OF ITS SERVER TYPES ARE
+	// CURRENTLY SHORT OF IDLE SERVERS (ITS DEFICIT).
+	// THE JOB IS INDEXED UNDER EVERY TYPE IT NEEDS, AND IS READY STRAIGHT AWAY IF
+	// IT HAS NO DEFICIT.
+    private void enqueueSpec(JobSpec spec) {
+        PendingJob pending = new PendingJob(spec, nextSeq++);
+        if (journal != null) {
+            journal.appendSubmit(pending.seq, spec);
+        }
+        if (metrics != null) {
+            metrics.jobsSubmitted++;
+            pending.submittedAt = System.nanoTime();
+        }
+        for (int i = 0; i < pending.size; i++) {
+            typeState(pending.typeIds[i]).pendingCount++;
+        }
+        pendingJobs.add(pending);
+        if (queuedJobs != null) {
+            queuedJobs.add(pending);
+        }
+        indexJob(pending);
+    }
+
+	// INDEXING THE JOB
+	// FILES THE JOB UNDER THE COUNT IT NEEDS OF EACH TYPE, WORKS OUT ITS DEFICIT FROM
+	// THE IDLE POOLS AS THEY ARE NOW, AND MAKES IT READY IF IT HAS NONE.
+    private void indexJob(PendingJob pending) {
+        pending.deficit = 0;
+        for (int i = 0; i < pending.size; i++) {
+            TypeState type = types[pending.typeIds[i]];
+            type.jobsByCount.computeIfAbsent(pending.counts[i], c -> new HashSet<>()).add(pending);
+            if (type.availableServers.size() < pending.counts[i]) {
+                pending.deficit++;
+            }
+        }
+        if (pending.deficit == 0) {
+            readyJobs.add(pending);
+        }
+    }
+
+	// ADMITTING THE JOBS
+	// CALLED UNDER THE LOCK BEFORE A NEW JOB IS QUEUED. RETURNS ONCE THE JOB MAY BE
+	// QUEUED, SHEDDING OLDER JOBS OR WAITING FOR ROOM AS THE POLICY SAYS, OR THROWS
+	// JobRejectedException. IF THE QUEUE HOLDS JOBS THAT CAN RUN (EARLIER JOBS OF A
+	// BATCH, SAY) THEY ARE RELEASED FIRST, SO ONLY JOBS THAT REALLY HAVE TO WAIT COUNT.
+    private void admitJob(JobSpec spec) {
+        if (rejectUnsatisfiable) {
+            for (int i = 0; i < spec.size(); i++) {
+                int typeId = spec.typeIds()[i];
+                int known = typeId < types.length && types[typeId] != null ? types[typeId].servers.size() : 0;
+                if (known < spec.counts()[i]) {
+                    rejectJob(spec, "it needs " + spec.counts()[i] + " servers of type " + registry.nameOf(typeId)
+                            + " but only " + known + " have logged in");
+                }
+            }
+        }
+        if (hasRoomFor(spec)) {
+            return;
+        }
+        if (!readyJobs.isEmpty()) {
+            processJobs();
+            runAssignedCallbacks();
+            if (hasRoomFor(spec)) {
+                return;
+            }
+        }
+        switch (admission) {
+        case REJECT:
+            rejectJob(spec, "the job queue is full");
+            break;
+        case SHED_OLDEST:
+            shedFor(spec);
+            break;
+        case BLOCK:
+            awaitRoom(spec);
+            break;
+        }
+    }
+
+	// WHETHER THE JOB IS WITHIN THE GLOBAL LIMIT AND THE LIMIT OF EACH OF ITS TYPES
+    private boolean hasRoomFor(JobSpec spec) {
+        return limitReachedBy(spec) == NO_LIMIT_REACHED;
+    }
+
+	// THE LIMIT THE JOB WOULD GO OVER: GLOBAL_LIMIT, THE ID OF A TYPE AT ITS LIMIT, OR
+	// NO_LIMIT_REACHED
+    private int limitReachedBy(JobSpec spec) {
+        if (pendingJobs.size() >= maxPendingJobs) {
+            return GLOBAL_LIMIT;
+        }
+        for (int i = 0; i < spec.size(); i++) {
+            int typeId = spec.typeIds()[i];
+            TypeState state = typeId < types.length ? types[typeId] : null;
+            if (state != null && state.pendingCount >= state.pendingLimit) {
+                return typeId;
+            }
+        }
+        return NO_LIMIT_REACHED;
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("negative queue limit " + limit);
+        }
+        return limit;
+    }
+
+    private void rejectJob(JobSpec spec, String reason) {
+        if (metrics != null) {
+            metrics.jobsRejected++;
         }
+        throw new JobRejectedException(spec.getName(), reason);
     }
 
-    @Override
-    public String serverLogin(String type, int ID) {
-        lock.lock();
-        try {
-            ServerThread server = new ServerThread(type, ID);
-            
-            if (!availableServers.containsKey(type)) {
-                availableServers.put(type, new ArrayList<>());
+	// SHEDDING THE OLDEST JOBS
+	// DROPS THE OLDEST PENDING JOB COUNTING AGAINST EACH LIMIT THE NEW JOB WOULD GO
+	// OVER, UNTIL IT FITS. A JOB THAT CANNOT BE MADE TO FIT (A GLOBAL OR TYPE LIMIT OF
+	// 0) IS REJECTED. RELEASES NOTHING ITSELF; THE NEW JOB'S MATCHING PASS DOES THAT.
+    private void shedFor(JobSpec spec) {
+        for (int limit = limitReachedBy(spec); limit != NO_LIMIT_REACHED; limit = limitReachedBy(spec)) {
+            PendingJob oldest = null;
+            for (JobQueue.Node node : pendingJobs) {
+                PendingJob pending = (PendingJob) node;
+                if (limit == GLOBAL_LIMIT || pending.countOf(limit) > 0) {
+                    oldest = pending;
+                    break;
+                }
             }
-            availableServers.get(type).add(server);
-            
-            // WAITING FOR AN JOB TO BE AVAILABLE
-            processJobs();
-            
-            while (!server.isAssigned()) {
-                server.waitForAssignment();
+            if (oldest == null) {
+                rejectJob(spec, limit == GLOBAL_LIMIT ? "the job queue limit is 0"
+                        : "the queue limit for " + registry.nameOf(limit) + " is 0");
             }
-            
-            return server.getAssignedJob();
+            dequeueJob(oldest);
+            if (metrics != null) {
+                metrics.jobsShed++;
+            }
+        }
+    }
+
+	// WAITING FOR ROOM
+	// A BLOCKED SUBMISSION WAITS ON A CONDITION OF ITS OWN, AND A JOB LEAVING THE QUEUE
+	// WAKES ONLY THE OLDEST BLOCKED SUBMISSION THAT NOW FITS (admitBlocked), SO THERE IS
+	// NO signalAll AND NO HERD OF SUBMITTERS RACING FOR ONE FREE PLACE. A WOKEN
+	// SUBMISSION THAT IS ADMITTED PASSES THE WAKE-UP ON IN CASE THERE IS ROOM FOR MORE.
+	// GIVES UP WITH A JobRejectedException ON TIMEOUT OR INTERRUPT (THE INTERRUPT IS
+	// KEPT SET).
+    private void awaitRoom(JobSpec spec) {
+        BlockedJob blocked = new BlockedJob(spec, lock.newCondition());
+        blockedJobs.addLast(blocked);
+        long remaining = admissionTimeoutNanos;
+        boolean admitted = false;
+        try {
+            while (!hasRoomFor(spec)) {
+                if (remaining <= 0) {
+                    rejectJob(spec, "the job queue stayed full for " + admissionTimeoutNanos / 1_000_000 + "ms");
+                }
+                if (metrics != null) {
+                    metrics.lockHold.record(System.nanoTime() - metrics.lockHeldSince);
+                }
+                try {
+                    remaining = blocked.room.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejectJob(spec, "interrupted while waiting for room in the job queue");
+                } finally {
+                    if (metrics != null) {
+                        metrics.lockHeldSince = System.nanoTime();
+                    }
+                    blocked.woken = false;
+                }
+            }
+            admitted = true;
         } finally {
-            lock.unlock();
+            blockedJobs.remove(blocked);
+            // A REJECTED SUBMISSION MAY HAVE BEEN WOKEN FOR ROOM IT WILL NOT USE
+            if (!admitted) {
+                admitBlocked();
+            }
         }
     }
-    
-	// ==================================== PRIVATE METHODS & CLASSES
-	// ===============================================
-    
+
+	// WAKES THE OLDEST BLOCKED SUBMISSION THAT FITS NOW AND IS NOT ALREADY WOKEN
+    private void admitBlocked() {
+        for (BlockedJob blocked : blockedJobs) {
+            if (!blocked.woken && hasRoomFor(blocked.spec)) {
+                blocked.woken = true;
+                blocked.room.signal();
+                return;
+            }
+        }
+    }
+
 	// PROCESSING THE JOBS
-	// CHECKS THE JOB QUEUE (FIFO ORDER) AND TRIES TO ALLOCATE AVAILABLE SERVERS TO
-	// JOBS.
-	// IF A JOB'S REQUIRED SERVERS ARE AVAILABLE, IT ASSIGNS THE JOB AND REMOVES IT
-	// FROM THE QUEUE.
-	// OTHERWISE, IT KEEPS WAITING UNTIL ENOUGH SERVERS LOG IN.
+	// RELEASES THE READY JOBS (THOSE WITH NO DEFICIT) IN THE POLICY'S ORDER. WITH GANG
+	// RESERVATIONS ON, THE GANG TAKES ITS PICK OF THE IDLE SERVERS FIRST, AND THE HEAD
+	// JOB STARTS GATHERING ONE AFTERWARDS IF IT IS STILL SHORT.
+	// ASSIGNING A JOB TAKES SERVERS AWAY, WHICH MAY MAKE LATER READY JOBS SHORT
+	// AGAIN, SO THE FIRST READY JOB IS TAKEN AFRESH EACH TIME ROUND.
+	// UNDER FIFO THIS RELEASES JOBS IN EXACTLY THE ORDER A FULL RESCAN FROM THE HEAD
+	// OF THE QUEUE WOULD, WITHOUT LOOKING AT JOBS THAT CANNOT RUN.
     private void processJobs() {
-        for (int i = 0; i < pendingJobs.size(); i++) {
-            JobRequest job = pendingJobs.get(i);
-            if (canSatisfyJob(job)) {
-                assignJob(job);
-                pendingJobs.remove(i);
-                i = -1; // Restart processing after modification
-            }
-        }
-    }
-
-	// CAN SATISFY THE JOBS
-	// CHECKS IF A GIVEN JOB CAN BE FULLY SATISFIED WITH THE CURRENTLY AVAILABLE
-	// SERVERS.
-	// ITERATES THROUGH THE JOB'S REQUIRED SERVERS.
-	// RETURNS `TRUE` IF ENOUGH SERVERS OF EACH TYPE ARE AVAILABLE.
-	// RETURNS `FALSE` OTHERWISE.
-    private boolean canSatisfyJob(JobRequest job) {
-        for (Map.Entry<String, Integer> requirement : job.entrySet()) {
-            String serverType = requirement.getKey();
-            int requiredCount = requirement.getValue();
-            
-            if (!availableServers.containsKey(serverType) || 
-                availableServers.get(serverType).size() < requiredCount) {
+        long start = clock();
+        if (gang != null) {
+            gatherGang();
+        }
+        if (policy == SchedulingPolicy.HEAD_RESERVATION) {
+            reserveForHeadJob(start);
+        } else {
+            while (!readyJobs.isEmpty()) {
+                releaseJob(readyJobs.first(), start);
+            }
+        }
+        if (gangTimeoutNanos > 0 && gang == null && !queuedJobs.isEmpty()) {
+            formGang();
+        }
+        if (metrics != null) {
+            metrics.matchPasses++;
+            metrics.matchPass.record(System.nanoTime() - start);
+        }
+    }
+
+	// RESERVING FOR THE HEAD JOB
+	// THE HEAD JOB (FIRST IN PRIORITY ORDER) RUNS AS SOON AS IT CAN. WHILE IT IS
+	// SHORT, IT RESERVES THE IDLE SERVERS OF EACH TYPE IT NEEDS (UP TO ITS NEED),
+	// AND READY JOBS BEHIND IT ARE RELEASED, IN ORDER, ONLY IF THEY FIT IN WHAT IS
+	// LEFT OVER. TAKING LEFT-OVER SERVERS CANNOT MAKE THE HEAD JOB READY, AND A
+	// JOB THAT DID NOT FIT WILL NOT FIT LATER IN THE SAME PASS, SO ONE SCAN IS ENOUGH.
+    private void reserveForHeadJob(long now) {
+        while (!queuedJobs.isEmpty()) {
+            PendingJob head = queuedJobs.first();
+            if (!head.holding && head.deficit == 0) {
+                releaseJob(head, now);
+                continue;
+            }
+            for (PendingJob candidate : readyJobs.toArray(new PendingJob[0])) {
+                if (candidate.deficit == 0 && fitsAround(candidate, head)) {
+                    releaseJob(candidate, now);
+                }
+            }
+            return;
+        }
+    }
+
+	// FITS AROUND THE HEAD JOB
+	// TRUE IF THE JOB CAN TAKE ITS SERVERS WITHOUT DIPPING INTO THE ONES RESERVED
+	// FOR THE HEAD JOB, I.E. FOR EVERY TYPE IT NEEDS:
+	//     idle - need >= min(idle, head's need - what its gang already holds)
+    private boolean fitsAround(PendingJob job, PendingJob head) {
+        for (int i = 0; i < job.size; i++) {
+            int idle = types[job.typeIds[i]].availableServers.size();
+            int held = head.holding ? gang.heldOf(job.typeIds[i]) : 0;
+            int reserved = Math.min(idle, head.countOf(job.typeIds[i]) - held);
+            if (idle - job.counts[i] < reserved) {
                 return false;
             }
         }
         return true;
     }
 
+	// KEEPS queuedJobs (EVERY PENDING JOB IN THE POLICY'S ORDER) WHEN HEAD_RESERVATION OR A GANG
+	// RESERVATION NEEDS TO FIND THE HEAD JOB, AND DROPS IT OTHERWISE
+    private void orderQueuedJobs() {
+        queuedJobs = null;
+        if (policy == SchedulingPolicy.HEAD_RESERVATION || gangTimeoutNanos > 0) {
+            queuedJobs = new TreeSet<>(readyJobs.comparator());
+            for (JobQueue.Node node : pendingJobs) {
+                queuedJobs.add((PendingJob) node);
+            }
+        }
+    }
+
+	// FORMING A GANG
+	// THE HEAD JOB, IF IT IS SHORT, LEAVES THE COUNT INDEX (THE SERVERS IT HOLDS ARE NO
+	// LONGER IN THE POOL, SO ITS DEFICIT WOULD MEAN NOTHING) AND TAKES THE IDLE SERVERS
+	// IT MAY HOLD.
+    private void formGang() {
+        long now = System.nanoTime();
+        if (gangCooling) {
+            if (now - gangExpiredAt < gangTimeoutNanos) {
+                return;
+            }
+            gangCooling = false;
+        }
+        PendingJob head = queuedJobs.first();
+        if (head.deficit == 0) {
+            return;
+        }
+        readyJobs.remove(head);
+        unbucketJob(head);
+        head.holding = true;
+        gang = new Gang(head, now, gangHoldFraction);
+        gatherGang();
+    }
+
+	// GATHERING THE GANG
+	// RELEASES THE JOB ONCE WHAT IT HOLDS AND WHAT IS IDLE COVER ITS NEED, GIVES UP
+	// ONCE THE TIMEOUT HAS PASSED, AND OTHERWISE HOLDS ANY IDLE SERVERS IT MAY.
+    private void gatherGang() {
+        Gang gathering = gang;
+        PendingJob job = gathering.job;
+        boolean assembled = true;
+        for (int t = 0; t < job.size && assembled; t++) {
+            assembled = gathering.held[t] + types[job.typeIds[t]].availableServers.size() >= job.counts[t];
+        }
+        long now = System.nanoTime();
+        if (assembled) {
+            releaseGang(now);
+        } else if (now - gathering.since >= gangTimeoutNanos) {
+            expireGang(now);
+            gangCooling = true;
+            gangExpiredAt = now;
+        } else {
+            for (int t = 0; t < job.size; t++) {
+                holdServers(t, gathering.limit[t] - gathering.held[t], now);
+            }
+        }
+    }
+
+	// MOVES UP TO `wanted` IDLE SERVERS OF THE GANG JOB'S t'TH TYPE (HIGHEST IDS FIRST) INTO THE GANG
+    private void holdServers(int t, int wanted, long now) {
+        int typeId = gang.job.typeIds[t];
+        ServerHeap servers = types[typeId].availableServers;
+        int take = Math.min(wanted, servers.size());
+        if (take <= 0) {
+            return;
+        }
+        int oldCount = servers.size();
+        for (int i = 0; i < take; i++) {
+            ServerThread server = servers.poll();
+            server.held = true;
+            server.heldSince = now;
+            gang.servers.add(server);
+        }
+        gang.held[t] += take;
+        serversRemoved(typeId, oldCount, servers.size());
+    }
+
+	// RELEASING THE GANG
+	// TAKES WHATEVER THE JOB STILL NEEDS FROM THE POOL AND ASSIGNS IT ALL AT ONCE
+    private void releaseGang(long now) {
+        Gang gathering = gang;
+        PendingJob job = gathering.job;
+        for (int t = 0; t < job.size; t++) {
+            holdServers(t, job.counts[t] - gathering.held[t], now);
+        }
+        gang = null;
+        dequeueJob(job);
+        long assignedAt = clock();
+        if (metrics != null) {
+            metrics.jobsAssigned++;
+            metrics.jobWait.record(assignedAt - job.submittedAt);
+            metrics.gangsAssembled++;
+        }
+        recordGang(gathering, now);
+        RunningJob running = null;
+        for (ServerThread server : gathering.servers) {
+            server.held = false;
+            running = assignServer(server, job.spec.getName(), running, assignedAt);
+        }
+    }
+
+	// EXPIRING THE GANG
+	// PUTS THE JOB BACK IN THE COUNT INDEX AND ITS SERVERS BACK IN THE POOL
+    private void expireGang(long now) {
+        PendingJob job = gang.job;
+        job.holding = false;
+        indexJob(job);
+        if (metrics != null) {
+            metrics.gangsExpired++;
+        }
+        returnGang(now);
+    }
+
+	// PUTS THE GANG'S SERVERS BACK IN THE IDLE POOL AND FORGETS THE GANG
+    private void returnGang(long now) {
+        Gang gathering = gang;
+        gang = null;
+        recordGang(gathering, now);
+        for (ServerThread server : gathering.servers) {
+            server.held = false;
+            addServer(server);
+        }
+    }
+
+	// LETS GO OF A HELD SERVER THAT HAS STOPPED WAITING (SEE withdrawServer)
+    private void unholdServer(ServerThread server) {
+        gang.servers.remove(server);
+        gang.held[gang.indexOf(server.typeId)]--;
+        server.held = false;
+        if (metrics != null) {
+            metrics.gangHeldServerNanos += System.nanoTime() - server.heldSince;
+            metrics.serversWithdrawn++;
+        }
+    }
+
+	// ADDS THE IDLE TIME OF THE SERVERS THE GANG HOLDS SO FAR TO THE METRICS, AND
+	// COUNTS THEIR IDLE TIME FROM NOW ON
+    private void accrueHeldTime() {
+        if (gang == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (ServerThread server : gang.servers) {
+            metrics.gangHeldServerNanos += now - server.heldSince;
+            server.heldSince = now;
+        }
+    }
+
+	// HOW LONG THE GANG WAS GATHERED FOR, AND FOR HOW MANY SERVER-NANOSECONDS ITS
+	// SERVERS SAT IDLE WHILE HELD
+    private void recordGang(Gang gathering, long now) {
+        if (metrics == null) {
+            return;
+        }
+        metrics.gangHold.record(now - gathering.since);
+        for (ServerThread server : gathering.servers) {
+            metrics.gangHeldServerNanos += now - server.heldSince;
+        }
+    }
+
+	// RELEASING THE JOB
+	// TAKES THE JOB OFF EVERY QUEUE AND INDEX AND ASSIGNS ITS SERVERS
+    private void releaseJob(PendingJob pending, long now) {
+        dequeueJob(pending);
+        if (metrics != null) {
+            metrics.jobsAssigned++;
+            metrics.jobWait.record(now - pending.submittedAt);
+        }
+        assignJob(pending, now);
+    }
+
+	// DEQUEUING THE JOB
+	// TAKES THE JOB OFF EVERY QUEUE AND INDEX AND LOGS THAT IT HAS LEFT THE QUEUE
+	// (A RELEASE RECORD, WHICH RECOVERY TREATS THE SAME FOR A CANCELLED JOB)
+    private void dequeueJob(PendingJob pending) {
+        readyJobs.remove(pending);
+        if (queuedJobs != null) {
+            queuedJobs.remove(pending);
+        }
+        unindexJob(pending);
+        if (pending.holding) {
+            pending.holding = false;
+            // CANCELLED OR SHED WHILE GATHERING ITS GANG (A RELEASED GANG IS CLEARED FIRST)
+            if (gang != null && gang.job == pending) {
+                returnGang(System.nanoTime());
+            }
+        }
+        pendingJobs.remove(pending);
+        if (journal != null) {
+            journal.appendRelease(pending.seq);
+        }
+        if (!blockedJobs.isEmpty()) {
+            admitBlocked();
+        }
+    }
+
+	// REMOVING THE JOB FROM THE INDEX
+	// DONE BEFORE ITS SERVERS ARE TAKEN SO ITS OWN DEFICIT IS NOT UPDATED.
+    private void unindexJob(PendingJob pending) {
+        for (int i = 0; i < pending.size; i++) {
+            types[pending.typeIds[i]].pendingCount--;
+        }
+        // A JOB GATHERING A GANG IS ALREADY OUT OF THE COUNT INDEX
+        if (!pending.holding) {
+            unbucketJob(pending);
+        }
+    }
+
+	// TAKES THE JOB OUT OF THE COUNT INDEX, SO ITS DEFICIT IS NO LONGER KEPT UP TO DATE
+    private void unbucketJob(PendingJob pending) {
+        for (int i = 0; i < pending.size; i++) {
+            TreeMap<Integer, HashSet<PendingJob>> byCount = types[pending.typeIds[i]].jobsByCount;
+            HashSet<PendingJob> bucket = byCount.get(pending.counts[i]);
+            bucket.remove(pending);
+            if (bucket.isEmpty()) {
+                byCount.remove(pending.counts[i]);
+            }
+        }
+    }
+
+	// SERVERS ADDED
+	// THE IDLE COUNT OF A TYPE HAS RISEN TO `newCount`, SO ONLY THE JOBS NEEDING
+	// EXACTLY THAT MANY SERVERS OF THE TYPE HAVE ONE LESS DEFICIT.
+    private void serversAdded(int typeId, int newCount) {
+        HashSet<PendingJob> bucket = types[typeId].jobsByCount.get(newCount);
+        if (bucket == null) {
+            return;
+        }
+        for (PendingJob pending : bucket) {
+            if (--pending.deficit == 0) {
+                readyJobs.add(pending);
+            }
+        }
+    }
+
+	// SERVERS REMOVED
+	// THE IDLE COUNT OF A TYPE HAS FALLEN FROM `oldCount` TO `newCount`, SO THE
+	// JOBS NEEDING MORE THAN `newCount` BUT NO MORE THAN `oldCount` ARE SHORT AGAIN.
+    private void serversRemoved(int typeId, int oldCount, int newCount) {
+        TreeMap<Integer, HashSet<PendingJob>> byCount = types[typeId].jobsByCount;
+        if (byCount.isEmpty()) {
+            return;
+        }
+        for (HashSet<PendingJob> bucket : byCount.subMap(newCount, false, oldCount, true).values()) {
+            for (PendingJob pending : bucket) {
+                if (pending.deficit++ == 0) {
+                    readyJobs.remove(pending);
+                }
+            }
+        }
+    }
+
+    private int idleCount(int typeId) {
+        return typeId < types.length && types[typeId] != null ? types[typeId].availableServers.size() : 0;
+    }
+
+	// THE STATE OF A TYPE, CREATED THE FIRST TIME A SERVER OR JOB USES THE TYPE
+    private TypeState typeState(int typeId) {
+        if (typeId >= types.length) {
+            types = Arrays.copyOf(types, Math.max(typeId + 1, types.length * 2));
+        }
+        if (types[typeId] == null) {
+            types[typeId] = new TypeState();
+            if (selection != ServerSelectionPolicy.HIGHEST_ID) {
+                types[typeId].availableServers.regroup(true, server -> { });
+            }
+        }
+        return types[typeId];
+    }
+
 	// ASSGNING THE JOBS
 	// ASSIGNS A JOB TO THE REQUIRED NUMBER OF SERVERS.
-	// RETRIEVES AND REMOVES THE NEEDED SERVERS FROM THE `availableServers` MAP.
-	// MAPS THE SERVERS' IDS TO THE JOB NAME (`assignedJobs`).
+	// RETRIEVES AND REMOVES THE NEEDED SERVERS FROM THE IDLE HEAP OF EACH TYPE.
 	// SIGNALS THE WAITING SERVER THREADS TO CONTINUE EXECUTION.
-    private void assignJob(JobRequest job) {
-        for (Map.Entry<String, Integer> requirement : job.entrySet()) {
-            String serverType = requirement.getKey();
-            int requiredCount = requirement.getValue();
-            ArrayList<ServerThread> servers = availableServers.get(serverType);
-            
-            // Sort servers by ID in reverse order (higher IDs first)
-            Collections.sort(servers, Comparator.comparingInt(ServerThread::getID).reversed());
+    private void assignJob(PendingJob pending, long now) {
+        String jobName = pending.spec.getName();
+        RunningJob running = null;
+        int group = chooseGroup(pending);
+        for (int t = 0; t < pending.size; t++) {
+            int typeId = pending.typeIds[t];
+            int requiredCount = pending.counts[t];
+            ServerHeap servers = types[typeId].availableServers;
             
+            // Highest IDs come off the top of the heap first (in the chosen group first)
+            int oldCount = servers.size();
             for (int i = 0; i < requiredCount; i++) {
-                ServerThread server = servers.remove(0);
-                server.assignJob(job.jobName);
+                ServerThread server = group == ServerSelectionPolicy.NO_GROUP ? null : servers.pollGroup(group);
+                running = assignServer(server != null ? server : servers.poll(), jobName, running, now);
+            }
+            serversRemoved(typeId, oldCount, servers.size());
+        }
+    }
+
+	// THE GROUP THE SELECTION POLICY WANTS THE JOB'S SERVERS FROM, OR NO_GROUP
+    private int chooseGroup(PendingJob pending) {
+        if (selection == ServerSelectionPolicy.HIGHEST_ID) {
+            return ServerSelectionPolicy.NO_GROUP;
+        }
+        String[] names = new String[pending.size];
+        for (int t = 0; t < pending.size; t++) {
+            names[t] = registry.nameOf(pending.typeIds[t]);
+        }
+        idleGroups.job = pending;
+        idleGroups.names = names;
+        try {
+            return selection.chooseGroup(names, pending.counts, idleGroups);
+        } finally {
+            idleGroups.job = null;
+            idleGroups.names = null;
+        }
+    }
+
+	// ASSIGNING ONE SERVER
+	// HANDS THE JOB TO A SERVER ALREADY TAKEN OUT OF THE IDLE POOL AND RECORDS IT
+	// AGAINST THE JOB'S RUNNING ENTRY (CREATED ON FIRST USE AND RETURNED).
+    private RunningJob assignServer(ServerThread server, String jobName, RunningJob running, long now) {
+        if (metrics != null) {
+            metrics.serversAssigned++;
+            metrics.serverIdle.record(now - server.idleSince);
+        }
+        // ONLY SERVERS THAT CAN LOG IN AGAIN ARE TRACKED FOR completeJob
+        if (types[server.typeId].servers.get(server.getID()) == server) {
+            if (running == null) {
+                running = runningJobs.computeIfAbsent(jobName, RunningJob::new);
+            }
+            running.servers.add(server);
+            running.live++;
+            server.running = running;
+        }
+        server.assignJob(jobName);
+        return running;
+    }
+
+	// TYPE STATE
+	// THE IDLE AND KNOWN SERVERS OF ONE TYPE, AND THE PENDING JOBS THAT NEED THE TYPE INDEXED
+	// BY HOW MANY SERVERS OF IT THEY NEED (ONLY THE JOBS WAITING ON THAT EXACT COUNT
+	// ARE TOUCHED WHEN THE IDLE COUNT OF THE TYPE CHANGES).
+    private static class TypeState {
+        private final ServerHeap availableServers = new ServerHeap();
+        // EVERY SERVER OF THE TYPE THAT HAS LOGGED IN, BY ID, KEPT FOR REUSE
+        private final HashMap<Integer, ServerThread> servers = new HashMap<>();
+        private final TreeMap<Integer, HashSet<PendingJob>> jobsByCount = new TreeMap<>();
+        // PENDING JOBS NEEDING THE TYPE, AND THE MOST ADMISSION CONTROL ALLOWS
+        private int pendingCount = 0;
+        private int pendingLimit = Integer.MAX_VALUE;
+    }
+
+	// BLOCKED JOB
+	// A SUBMISSION WAITING FOR ROOM IN THE QUEUE UNDER AdmissionPolicy.BLOCK
+    private static class BlockedJob {
+        private final JobSpec spec;
+        private final Condition room;
+        private boolean woken;
+
+        public BlockedJob(JobSpec spec, Condition room) {
+            this.spec = spec;
+            this.room = room;
+        }
+    }
+
+	// PENDING JOB
+	// A QUEUED JOB WITH ITS FIFO SEQUENCE NUMBER, ITS SPEC (WHOSE PARALLEL ARRAYS OF
+	// TYPE IDS AND COUNTS ARE READ DIRECTLY), AND THE NUMBER OF THOSE TYPES THAT DO
+	// NOT YET HAVE ENOUGH IDLE SERVERS.
+    private static class PendingJob extends JobQueue.Node {
+        private final JobSpec spec;
+        private final long seq;
+        private final int[] typeIds;
+        private final int[] counts;
+        private final int size;
+        private int deficit;
+        private long submittedAt;
+        // GATHERING A GANG: OUT OF THE COUNT INDEX, SO `deficit` IS NOT KEPT UP TO DATE
+        private boolean holding;
+
+        public PendingJob(JobSpec spec, long seq) {
+            super(null);
+            this.spec = spec;
+            this.seq = seq;
+            this.typeIds = spec.typeIds();
+            this.counts = spec.counts();
+            this.size = spec.size();
+            this.deficit = 0;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public int getPriority() {
+            return spec.getPriority();
+        }
+
+        // HOW MANY SERVERS OF THE TYPE THE JOB NEEDS (0 IF NONE)
+        public int countOf(int typeId) {
+            return spec.countOf(typeId);
+        }
+    }
+
+	// RESERVATION
+	// IDLE SERVERS TAKEN OUT OF THE POOL BY reserve(), UNTIL COMMITTED OR CANCELLED
+    public static class Reservation {
+        private final ArrayList<ServerThread> servers = new ArrayList<>();
+        private final HashMap<String, Integer> granted = new HashMap<>();
+        private boolean closed = false;
+
+        // HOW MANY SERVERS OF EACH TYPE WERE RESERVED
+        public Map<String, Integer> getGranted() {
+            return Collections.unmodifiableMap(granted);
+        }
+
+        public boolean isEmpty() {
+            return servers.isEmpty();
+        }
+
+        private void close() {
+            if (closed) {
+                throw new IllegalStateException("reservation already committed or cancelled");
+            }
+            closed = true;
+        }
+    }
+
+	// GANG
+	// THE SERVERS HELD FOR THE HEAD JOB UNDER A GANG RESERVATION. `held` AND `limit` (THE
+	// MOST IT MAY HOLD) ARE BY THE JOB'S OWN TYPE INDEX, AS IN PendingJob.counts.
+    private static class Gang {
+        private final PendingJob job;
+        private final long since;
+        private final ArrayList<ServerThread> servers = new ArrayList<>();
+        private final int[] held;
+        private final int[] limit;
+
+        public Gang(PendingJob job, long since, double holdFraction) {
+            this.job = job;
+            this.since = since;
+            this.held = new int[job.size];
+            this.limit = new int[job.size];
+            for (int t = 0; t < job.size; t++) {
+                limit[t] = (int) Math.ceil(job.counts[t] * holdFraction);
+            }
+        }
+
+        // THE JOB'S INDEX FOR THE TYPE, OR -1 IF IT DOES NOT NEED IT
+        public int indexOf(int typeId) {
+            for (int t = 0; t < job.size; t++) {
+                if (job.typeIds[t] == typeId) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+
+        public int heldOf(int typeId) {
+            int t = indexOf(typeId);
+            return t < 0 ? 0 : held[t];
+        }
+    }
+
+	// RUNNING JOB
+	// THE SERVERS A JOB WAS ASSIGNED, SO completeJob CAN RETURN THEM. `live` COUNTS
+	// THOSE THAT HAVE NOT LOGGED IN AGAIN ON THEIR OWN; THE ENTRY GOES WHEN IT IS 0,
+	// SO THERE ARE NEVER MORE RUNNING JOBS THAN KNOWN SERVERS.
+    private static class RunningJob {
+        private final String name;
+        private final ArrayList<ServerThread> servers = new ArrayList<>();
+        private int live = 0;
+
+        public RunningJob(String name) {
+            this.name = name;
+        }
+    }
+
+	// SERVER HEAP
+	// BINARY MAX-HEAP OF IDLE SERVERS OF ONE TYPE, ORDERED BY SERVER ID.
+	// EACH SERVER KEEPS ITS OWN POSITION IN THE HEAP, SO ADDING, TAKING THE
+	// HIGHEST ID AND REMOVING A GIVEN SERVER ARE ALL O(LOG N).
+    private static class ServerHeap {
+        private ServerThread[] servers = new ServerThread[16];
+        private int size = 0;
+        // A GROUP'S HEAP KEEPS ITS POSITIONS IN ServerThread.groupIndex, NOT heapIndex
+        private final boolean groupHeap;
+        // THE IDLE SERVERS OF EACH GROUP, AND THE GROUPS BY HOW MANY IDLE SERVERS THEY
+        // HAVE; BOTH NULL UNLESS A GROUPING SELECTION POLICY IS SET
+        private HashMap<Integer, ServerHeap> groups;
+        private TreeMap<Integer, HashSet<Integer>> groupsBySize;
+
+        public ServerHeap() {
+            this(false);
+        }
+
+        private ServerHeap(boolean groupHeap) {
+            this.groupHeap = groupHeap;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void add(ServerThread server) {
+            if (size == servers.length) {
+                servers = Arrays.copyOf(servers, size * 2);
+            }
+            siftUp(size++, server);
+            if (groups != null && server.group != ServerSelectionPolicy.NO_GROUP) {
+                ServerHeap group = groups.computeIfAbsent(server.group, g -> new ServerHeap(true));
+                resizeGroup(server.group, group.size, group.size + 1);
+                group.add(server);
+            }
+        }
+
+        public ServerThread poll() {
+            ServerThread top = servers[0];
+            removeAt(0);
+            return top;
+        }
+
+        // THE HIGHEST IDLE ID IN THE GROUP, TAKEN OUT OF THE POOL, OR NULL IF THE GROUP HAS NONE
+        public ServerThread pollGroup(int group) {
+            ServerHeap members = groups == null ? null : groups.get(group);
+            if (members == null || members.size == 0) {
+                return null;
+            }
+            ServerThread top = members.servers[0];
+            remove(top);
+            return top;
+        }
+
+        public boolean remove(ServerThread server) {
+            int i = indexOf(server);
+            if (i < 0 || i >= size || servers[i] != server) {
+                return false;
+            }
+            removeAt(i);
+            return true;
+        }
+
+        public int groupSize(int group) {
+            ServerHeap members = groups == null ? null : groups.get(group);
+            return members == null ? 0 : members.size;
+        }
+
+        // RE-INDEXES THE POOL BY GROUP (OR DROPS THE INDEX) AFTER `regroup` HAS GIVEN EACH
+        // IDLE SERVER ITS GROUP
+        public void regroup(boolean grouped, Consumer<ServerThread> regroup) {
+            groups = grouped ? new HashMap<>() : null;
+            groupsBySize = grouped ? new TreeMap<>() : null;
+            ServerThread[] idle = Arrays.copyOf(servers, size);
+            Arrays.fill(servers, 0, size, null);
+            size = 0;
+            for (ServerThread server : idle) {
+                server.groupIndex = -1;
+                regroup.accept(server);
+                add(server);
+            }
+        }
+
+        private void removeAt(int i) {
+            ServerThread removed = servers[i];
+            setIndex(removed, -1);
+            ServerThread last = servers[--size];
+            servers[size] = null;
+            if (i < size) {
+                siftDown(i, last);
+                if (servers[i] == last) {
+                    siftUp(i, last);
+                }
+            }
+            if (groups != null && removed.group != ServerSelectionPolicy.NO_GROUP) {
+                ServerHeap group = groups.get(removed.group);
+                resizeGroup(removed.group, group.size, group.size - 1);
+                group.remove(removed);
+            }
+        }
+
+	// KEEPS groupsBySize IN STEP WITH A GROUP GOING FROM `oldSize` TO `newSize` SERVERS
+        private void resizeGroup(int group, int oldSize, int newSize) {
+            if (oldSize > 0) {
+                HashSet<Integer> bucket = groupsBySize.get(oldSize);
+                bucket.remove(group);
+                if (bucket.isEmpty()) {
+                    groupsBySize.remove(oldSize);
+                }
+            }
+            if (newSize > 0) {
+                groupsBySize.computeIfAbsent(newSize, n -> new HashSet<>()).add(group);
+            }
+        }
+
+        private int indexOf(ServerThread server) {
+            return groupHeap ? server.groupIndex : server.heapIndex;
+        }
+
+        private void setIndex(ServerThread server, int i) {
+            if (groupHeap) {
+                server.groupIndex = i;
+            } else {
+                server.heapIndex = i;
+            }
+        }
+
+        private void siftUp(int i, ServerThread server) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (servers[parent].getID() >= server.getID()) {
+                    break;
+                }
+                place(i, servers[parent]);
+                i = parent;
+            }
+            place(i, server);
+        }
+
+        private void siftDown(int i, ServerThread server) {
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && servers[right].getID() > servers[child].getID()) {
+                    child = right;
+                }
+                if (server.getID() >= servers[child].getID()) {
+                    break;
+                }
+                place(i, servers[child]);
+                i = child;
+            }
+            place(i, server);
+        }
+
+        private void place(int i, ServerThread server) {
+            servers[i] = server;
+            setIndex(server, i);
+        }
+    }
+
+	// IDLE GROUPS VIEW
+	// THE ServerSelectionPolicy'S VIEW OF THE IDLE POOLS' GROUP INDEXES (READ UNDER THE LOCK)
+    private class IdleGroupsView implements ServerSelectionPolicy.IdleGroups {
+        // THE JOB BEING PLACED, SO ITS OWN TYPES ARE FOUND WITHOUT THE REGISTRY
+        private PendingJob job;
+        private String[] names;
+
+        private ServerHeap pool(String type) {
+            int typeId = -1;
+            for (int t = 0; names != null && t < names.length && typeId < 0; t++) {
+                if (names[t].equals(type)) {
+                    typeId = job.typeIds[t];
+                }
+            }
+            if (typeId < 0) {
+                typeId = registry.find(type);
+            }
+            return typeId < 0 || typeId >= types.length || types[typeId] == null ? null : types[typeId].availableServers;
+        }
+
+        @Override
+        public int idleCount(String type, int group) {
+            ServerHeap servers = pool(type);
+            return servers == null ? 0 : servers.groupSize(group);
+        }
+
+        @Override
+        public Iterable<Integer> groupsWithAtLeast(String type, int count) {
+            ServerHeap servers = pool(type);
+            if (servers == null || servers.groupsBySize == null) {
+                return Collections.emptyList();
+            }
+            Collection<HashSet<Integer>> buckets = servers.groupsBySize.tailMap(Math.max(1, count), true).values();
+            return () -> buckets.stream().flatMap(HashSet::stream).iterator();
+        }
+
+        @Override
+        public int largestGroup(String type) {
+            ServerHeap servers = pool(type);
+            if (servers == null || servers.groupsBySize == null || servers.groupsBySize.isEmpty()) {
+                return ServerSelectionPolicy.NO_GROUP;
             }
+            return servers.groupsBySize.lastEntry().getValue().iterator().next();
+        }
+    }
+
+	// OPERATION
+	// ONE PUBLISHED specifyJob OR serverLogin CALL, AND WHAT APPLYING IT PRODUCED. EACH
+	// THREAD HAS ONE, WITH A CONDITION OF combineLock TO WAIT ON; `complete` IS UPDATED
+	// UNDER combineLock, THE REST BY ITS CALLER OR BY THE COMBINER UNDER THE MAIN LOCK.
+    private static class Operation {
+        private static final int SPECIFY = 0;
+        private static final int LOGIN = 1;
+        private static final int LOGIN_ASYNC = 2;
+
+        private final Condition done;
+        private boolean inUse;
+        private boolean complete;
+        private int kind;
+        private JobRequest job;
+        private String type;
+        private int id;
+        private Consumer<String> callback;
+        private String result;
+        private ServerThread server;
+        private boolean deferred;
+        private RuntimeException failure;
+        private long logged;
+
+        public Operation(Condition done) {
+            this.done = done;
+        }
+
+        public void clear() {
+            complete = false;
+            job = null;
+            type = null;
+            callback = null;
+            result = null;
+            server = null;
+            deferred = false;
+            failure = null;
+            logged = 0;
         }
     }
 
+	// SERVER THREAD
+	// A SERVER, KEPT AND REUSED ACROSS ITS LOGINS. A BLOCKING LOGIN WAITS ON ITS
+	// CONDITION; AN ASYNCHRONOUS LOGIN IS HANDED ITS JOB THROUGH ITS CALLBACK INSTEAD.
+	// IT IS IDLE WHILE IN ITS TYPE'S HEAP, AND `assigned` WHILE A BLOCKING SERVER HAS
+	// A JOB IT HAS NOT YET COLLECTED FROM serverLogin.
     private class ServerThread {
         private final String type;
+        private final int typeId;
         private final int id;
         private String assignedJob;
-        private final Condition condition;
+        private Condition condition;
+        private Consumer<String> callback;
         private boolean assigned;
+        private boolean waiting;
+        // PARKED: WAITING FOR A HANDOFF, ON ITS OWN LOCK (UPDATED UNDER THE MANAGER'S LOCK)
+        private boolean parked;
+        private ReentrantLock parkingLock;
+        private Condition handoff;
+        // THE JOB HANDED OVER AND NOT YET TAKEN (UPDATED UNDER parkingLock)
+        private String handedOff;
+        private RunningJob running;
+        private int heapIndex = -1;
+        // LOCALITY GROUP (SEE ServerSelectionPolicy), AND POSITION IN ITS GROUP'S HEAP
+        private int group = ServerSelectionPolicy.NO_GROUP;
+        private int groupIndex = -1;
+        // HELD FOR A GANG: IDLE, BUT OUT OF THE POOL
+        private boolean held;
+        private long heldSince;
+        private long idleSince;
 
-        public ServerThread(String type, int id) {
+        public ServerThread(String type, int typeId, int id) {
             this.type = type;
+            this.typeId = typeId;
             this.id = id;
             this.assigned = false;
             this.assignedJob = "";
-            this.condition = lock.newCondition();
         }
 
         public String getType() {
@@ -161,18 +2262,106 @@ public class JobManager implements Manager {
             return assignedJob;
         }
 
+        public boolean isIdle() {
+            return heapIndex >= 0 || held;
+        }
+
+        // HANDS THE ASSIGNED JOB TO THE LOGGED-IN SERVER
+        public String takeAssignedJob() {
+            this.assigned = false;
+            return assignedJob;
+        }
+
         public void assignJob(String jobName) {
             this.assignedJob = jobName;
-            this.assigned = true;
-            this.condition.signal();
+            if (callback != null) {
+                Consumer<String> onAssigned = callback;
+                assignedCallbacks.add(() -> onAssigned.accept(jobName));
+            } else if (parked) {
+                parked = false;
+                waiting = false;
+                parkingLock.lock();
+                try {
+                    handedOff = jobName;
+                    handoff.signal();
+                } finally {
+                    parkingLock.unlock();
+                }
+            } else {
+                this.assigned = true;
+                this.condition.signal();
+            }
         }
 
-        public void waitForAssignment() {
+        // READY TO WAIT FOR A HANDOFF; THE LOCK AND CONDITION ARE MADE ONCE AND THEN KEPT
+        public void park() {
+            if (parkingLock == null) {
+                parkingLock = new ReentrantLock();
+                handoff = parkingLock.newCondition();
+            }
+            parked = true;
+        }
+
+        // WHETHER A HANDED-OVER JOB HAS NOT BEEN TAKEN YET
+        public boolean hasHandoff() {
+            if (parkingLock == null) {
+                return false;
+            }
+            parkingLock.lock();
             try {
-                condition.await();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                return handedOff != null;
+            } finally {
+                parkingLock.unlock();
+            }
+        }
+
+        // WAITS ON THE SERVER'S OWN CONDITION FOR AT MOST `nanos` (FOREVER IF NEGATIVE)
+        // AND TAKES THE HANDED-OVER JOB, OR RETURNS NULL IF THE TIME RUNS OUT FIRST
+        public String awaitHandoff(boolean interruptible, long nanos) throws InterruptedException {
+            boolean timed = nanos >= 0;
+            parkingLock.lock();
+            try {
+                while (handedOff == null) {
+                    if (timed) {
+                        if (nanos <= 0) {
+                            return null;
+                        }
+                        nanos = handoff.awaitNanos(nanos);
+                    } else if (interruptible) {
+                        handoff.await();
+                    } else {
+                        handoff.awaitUninterruptibly();
+                    }
+                }
+                String jobName = handedOff;
+                handedOff = null;
+                return jobName;
+            } finally {
+                parkingLock.unlock();
+            }
+        }
+
+        // WAITS ON THE CONDITION FOR AT MOST `nanos` (FOREVER IF NEGATIVE) AND RETURNS
+        // THE TIME LEFT, AS Condition.awaitNanos DOES
+        public long waitForAssignment(boolean interruptible, long nanos) throws InterruptedException {
+        	// THE LOCK IS GIVEN UP WHILE WAITING, SO THAT TIME IS NOT COUNTED AS HELD
+            if (metrics != null) {
+                metrics.lockHold.record(System.nanoTime() - metrics.lockHeldSince);
+            }
+            try {
+                if (nanos >= 0) {
+                    nanos = condition.awaitNanos(nanos);
+                } else if (interruptible) {
+                    condition.await();
+                } else {
+                    condition.awaitUninterruptibly();
+                }
+            } finally {
+                if (metrics != null) {
+                    metrics.lockHeldSince = System.nanoTime();
+                }
             }
+            return nanos;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+import java.util.Map;
+
+// JMX VIEW OF A JobManager'S METRICS, REGISTERED THROUGH JobManagerMonitor.
+// EVERY GETTER READS A FRESH SNAPSHOT; LATENCIES ARE IN NANOSECONDS.
+public interface JobManagerMXBean {
+
+	public int getPendingJobs();
+
+	public Map<String, Integer> getIdleServers();
+
+	public long getJobsSubmitted();
+
+	public long getJobsAssigned();
+
+	public long getJobsCompleted();
+
+	public long getJobsCancelled();
+
+	public long getJobsRejected();
+
+	public long getJobsShed();
+
+	public long getServersLoggedIn();
+
+	public long getServersReturned();
+
+	public long getServersWithdrawn();
+
+	public long getServersAssigned();
+
+	public long getMatchPasses();
+
+	public long getLockAcquisitions();
+
+	public long getGangsAssembled();
+
+	public long getGangsExpired();
+
+	public long getGangHeldServerNanos();
+
+	public long getJobWaitP50();
+
+	public long getJobWaitP99();
+
+	public long getServerIdleP50();
+
+	public long getServerIdleP99();
+
+	public long getMatchPassP99();
+
+	public long getLockWaitP99();
+
+	public long getLockWaitMax();
+
+	public long getLockHoldP99();
+
+	public long getLockHoldMax();
+
+	public long getGangHoldP99();
+
+	public void resetMetrics();
+}
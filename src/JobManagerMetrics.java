@@ -0,0 +1,258 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+// JOB MANAGER METRICS
+// COUNTERS AND LATENCY HISTOGRAMS FOR ONE JobManager.
+// EVERYTHING IS UPDATED BY THE JobManager WHILE IT HOLDS ITS LOCK, SO PLAIN long FIELDS
+// ARE ENOUGH AND NOTHING ON THE HOT PATH ALLOCATES.
+// READ IT THROUGH JobManager.getMetrics(), WHICH TAKES A CONSISTENT Snapshot.
+public class JobManagerMetrics {
+
+	// COUNTERS
+	long jobsSubmitted = 0;
+	long jobsAssigned = 0;
+	long jobsCompleted = 0;
+	long jobsCancelled = 0;
+	long jobsRejected = 0;
+	long jobsShed = 0;
+	long serversLoggedIn = 0;
+	long serversReturned = 0;
+	long serversWithdrawn = 0;
+	long serversAssigned = 0;
+	long matchPasses = 0;
+	long lockAcquisitions = 0;
+	long gangsAssembled = 0;
+	long gangsExpired = 0;
+	// SERVER-NANOSECONDS THAT SERVERS SAT IDLE WHILE HELD FOR A GANG
+	long gangHeldServerNanos = 0;
+
+	// TIME FROM specifyJob UNTIL THE JOB'S SERVERS ARE ASSIGNED
+	final LatencyHistogram jobWait = new LatencyHistogram();
+	// TIME FROM serverLogin UNTIL THE SERVER IS ASSIGNED A JOB
+	final LatencyHistogram serverIdle = new LatencyHistogram();
+	// DURATION OF ONE ALLOCATION PASS (processJobs)
+	final LatencyHistogram matchPass = new LatencyHistogram();
+	// TIME SPENT WAITING TO ACQUIRE THE LOCK
+	final LatencyHistogram lockWait = new LatencyHistogram();
+	// TIME THE LOCK IS HELD FOR, NOT COUNTING TIME A SERVER SPENDS WAITING ON ITS CONDITION
+	final LatencyHistogram lockHold = new LatencyHistogram();
+	// TIME FROM A GANG RESERVATION FORMING UNTIL ITS JOB IS RELEASED OR IT GIVES UP
+	final LatencyHistogram gangHold = new LatencyHistogram();
+
+	// RECORDED WHEN THE LOCK IS ACQUIRED, USED TO WORK OUT THE HOLD TIME
+	long lockHeldSince = 0;
+
+	void reset() {
+		jobsSubmitted = 0;
+		jobsAssigned = 0;
+		jobsCompleted = 0;
+		jobsCancelled = 0;
+		jobsRejected = 0;
+		jobsShed = 0;
+		serversLoggedIn = 0;
+		serversReturned = 0;
+		serversWithdrawn = 0;
+		serversAssigned = 0;
+		matchPasses = 0;
+		lockAcquisitions = 0;
+		gangsAssembled = 0;
+		gangsExpired = 0;
+		gangHeldServerNanos = 0;
+		jobWait.reset();
+		serverIdle.reset();
+		matchPass.reset();
+		lockWait.reset();
+		lockHold.reset();
+		gangHold.reset();
+	}
+
+	// SNAPSHOT
+	// AN IMMUTABLE COPY OF THE METRICS, PLUS THE QUEUE DEPTH AND IDLE SERVER COUNTS AT THE
+	// MOMENT IT WAS TAKEN. SAFE TO READ FROM ANY THREAD.
+	public static class Snapshot {
+		private final long takenAtNanos;
+		private final int pendingJobs;
+		private final Map<String, Integer> idleServers;
+		private final long jobsSubmitted;
+		private final long jobsAssigned;
+		private final long jobsCompleted;
+		private final long jobsCancelled;
+		private final long jobsRejected;
+		private final long jobsShed;
+		private final long serversLoggedIn;
+		private final long serversReturned;
+		private final long serversWithdrawn;
+		private final long serversAssigned;
+		private final long matchPasses;
+		private final long lockAcquisitions;
+		private final long gangsAssembled;
+		private final long gangsExpired;
+		private final long gangHeldServerNanos;
+		private final LatencyHistogram jobWait;
+		private final LatencyHistogram serverIdle;
+		private final LatencyHistogram matchPass;
+		private final LatencyHistogram lockWait;
+		private final LatencyHistogram lockHold;
+		private final LatencyHistogram gangHold;
+
+		Snapshot(JobManagerMetrics metrics, int pendingJobs, Map<String, Integer> idleServers) {
+			this.takenAtNanos = System.nanoTime();
+			this.pendingJobs = pendingJobs;
+			this.idleServers = Collections.unmodifiableMap(new TreeMap<>(idleServers));
+			this.jobsSubmitted = metrics.jobsSubmitted;
+			this.jobsAssigned = metrics.jobsAssigned;
+			this.jobsCompleted = metrics.jobsCompleted;
+			this.jobsCancelled = metrics.jobsCancelled;
+			this.jobsRejected = metrics.jobsRejected;
+			this.jobsShed = metrics.jobsShed;
+			this.serversLoggedIn = metrics.serversLoggedIn;
+			this.serversReturned = metrics.serversReturned;
+			this.serversWithdrawn = metrics.serversWithdrawn;
+			this.serversAssigned = metrics.serversAssigned;
+			this.matchPasses = metrics.matchPasses;
+			this.lockAcquisitions = metrics.lockAcquisitions;
+			this.gangsAssembled = metrics.gangsAssembled;
+			this.gangsExpired = metrics.gangsExpired;
+			this.gangHeldServerNanos = metrics.gangHeldServerNanos;
+			this.jobWait = metrics.jobWait.copy();
+			this.serverIdle = metrics.serverIdle.copy();
+			this.matchPass = metrics.matchPass.copy();
+			this.lockWait = metrics.lockWait.copy();
+			this.lockHold = metrics.lockHold.copy();
+			this.gangHold = metrics.gangHold.copy();
+		}
+
+		public long getTakenAtNanos() {
+			return takenAtNanos;
+		}
+
+		public int getPendingJobs() {
+			return pendingJobs;
+		}
+
+		// IDLE SERVERS BY TYPE
+		public Map<String, Integer> getIdleServers() {
+			return idleServers;
+		}
+
+		public int getIdleServerTotal() {
+			int total = 0;
+			for (int count : idleServers.values()) {
+				total += count;
+			}
+			return total;
+		}
+
+		public long getJobsSubmitted() {
+			return jobsSubmitted;
+		}
+
+		public long getJobsAssigned() {
+			return jobsAssigned;
+		}
+
+		public long getJobsCompleted() {
+			return jobsCompleted;
+		}
+
+		// QUEUED JOBS WITHDRAWN BY JobManager.cancelJob
+		public long getJobsCancelled() {
+			return jobsCancelled;
+		}
+
+		// JOBS TURNED AWAY BY ADMISSION CONTROL (SEE AdmissionPolicy)
+		public long getJobsRejected() {
+			return jobsRejected;
+		}
+
+		// QUEUED JOBS DROPPED UNDER AdmissionPolicy.SHED_OLDEST TO MAKE ROOM FOR NEWER ONES
+		public long getJobsShed() {
+			return jobsShed;
+		}
+
+		public long getServersLoggedIn() {
+			return serversLoggedIn;
+		}
+
+		// SERVERS PUT BACK IN THE IDLE POOL BY JobManager.completeJob
+		public long getServersReturned() {
+			return serversReturned;
+		}
+
+		// IDLE SERVERS WHOSE TIMED LOGIN RAN OUT OR WHOSE LOGIN WAS INTERRUPTED
+		public long getServersWithdrawn() {
+			return serversWithdrawn;
+		}
+
+		public long getServersAssigned() {
+			return serversAssigned;
+		}
+
+		public long getMatchPasses() {
+			return matchPasses;
+		}
+
+		public long getLockAcquisitions() {
+			return lockAcquisitions;
+		}
+
+		// GANG RESERVATIONS WHOSE JOB WAS RELEASED, AND THOSE THAT TIMED OUT FIRST
+		public long getGangsAssembled() {
+			return gangsAssembled;
+		}
+
+		public long getGangsExpired() {
+			return gangsExpired;
+		}
+
+		// IDLE CAPACITY SPENT HOLDING SERVERS FOR GANGS, IN SERVER-NANOSECONDS
+		public long getGangHeldServerNanos() {
+			return gangHeldServerNanos;
+		}
+
+		public LatencyHistogram getJobWait() {
+			return jobWait;
+		}
+
+		public LatencyHistogram getServerIdle() {
+			return serverIdle;
+		}
+
+		public LatencyHistogram getMatchPass() {
+			return matchPass;
+		}
+
+		public LatencyHistogram getLockWait() {
+			return lockWait;
+		}
+
+		public LatencyHistogram getLockHold() {
+			return lockHold;
+		}
+
+		public LatencyHistogram getGangHold() {
+			return gangHold;
+		}
+
+		@Override
+		public String toString() {
+			return "pendingJobs=" + pendingJobs + ", idleServers=" + idleServers
+					+ "\njobsSubmitted=" + jobsSubmitted + ", jobsAssigned=" + jobsAssigned
+					+ ", jobsCompleted=" + jobsCompleted + ", jobsCancelled=" + jobsCancelled
+					+ ", jobsRejected=" + jobsRejected + ", jobsShed=" + jobsShed
+					+ ", serversLoggedIn=" + serversLoggedIn + ", serversReturned=" + serversReturned
+					+ ", serversWithdrawn=" + serversWithdrawn
+					+ ", serversAssigned=" + serversAssigned
+					+ ", matchPasses=" + matchPasses + ", lockAcquisitions=" + lockAcquisitions
+					+ "\ngangsAssembled=" + gangsAssembled + ", gangsExpired=" + gangsExpired
+					+ ", gangHeldServerNanos=" + gangHeldServerNanos
+					+ "\njobWait:    " + jobWait
+					+ "\nserverIdle: " + serverIdle
+					+ "\nmatchPass:  " + matchPass
+					+ "\nlockWait:   " + lockWait
+					+ "\nlockHold:   " + lockHold
+					+ "\ngangHold:   " + gangHold;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// JOB MANAGER MONITOR
+// PUBLISHES THE METRICS OF A JobManager (CREATED WITH METRICS ON) AS A JMX MXBEAN, SO
+// THEY CAN BE WATCHED IN JConsole OR SCRAPED BY A JMX EXPORTER, E.G.
+//
+//	JobManager manager = new JobManager(true);
+//	JobManagerMonitor.register(manager, "main");	// f29oc:type=JobManager,name=main
+//
+// A SCRAPE READS EVERY ATTRIBUTE ONE GETTER AT A TIME. TAKING A FRESH SNAPSHOT FOR
+// EACH WOULD TAKE THE MANAGER'S LOCK AND COPY ALL THE HISTOGRAMS TWENTY-ODD TIMES, SO
+// ONE SNAPSHOT IS SHARED BY EVERY GETTER UNTIL IT IS MAX_AGE_NANOS OLD.
+public class JobManagerMonitor implements JobManagerMXBean {
+
+	// HOW LONG ONE SNAPSHOT SERVES THE GETTERS: LONG ENOUGH TO COVER A SCRAPE,
+	// FAR SHORTER THAN ANY SCRAPE INTERVAL
+	static final long MAX_AGE_NANOS = 5_000_000L;
+
+	private final JobManager manager;
+
+	// THE SNAPSHOT LAST TAKEN. TWO SCRAPES RACING TO REPLACE IT MAY BOTH TAKE ONE;
+	// EITHER IS A CONSISTENT VIEW, SO THE LAST WRITE SIMPLY WINS.
+	private volatile JobManagerMetrics.Snapshot cached;
+
+	public JobManagerMonitor(JobManager manager) {
+		if (manager.getMetrics() == null) {
+			throw new IllegalArgumentException("the JobManager was created without metrics");
+		}
+		this.manager = manager;
+	}
+
+	// REGISTERS A MONITOR FOR THE MANAGER WITH THE PLATFORM MBEAN SERVER
+	public static ObjectName register(JobManager manager, String name) throws JMException {
+		ObjectName objectName = new ObjectName("f29oc:type=JobManager,name=" + ObjectName.quote(name));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(new JobManagerMonitor(manager), objectName);
+		return objectName;
+	}
+
+	public static void unregister(ObjectName objectName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	private JobManagerMetrics.Snapshot snapshot() {
+		JobManagerMetrics.Snapshot snapshot = cached;
+		if (snapshot == null || System.nanoTime() - snapshot.getTakenAtNanos() > MAX_AGE_NANOS) {
+			snapshot = manager.getMetrics();
+			cached = snapshot;
+		}
+		return snapshot;
+	}
+
+	@Override
+	public int getPendingJobs() {
+		return snapshot().getPendingJobs();
+	}
+
+	@Override
+	public Map<String, Integer> getIdleServers() {
+		return snapshot().getIdleServers();
+	}
+
+	@Override
+	public long getJobsSubmitted() {
+		return snapshot().getJobsSubmitted();
+	}
+
+	@Override
+	public long getJobsAssigned() {
+		return snapshot().getJobsAssigned();
+	}
+
+	@Override
+	public long getJobsCompleted() {
+		return snapshot().getJobsCompleted();
+	}
+
+	@Override
+	public long getJobsCancelled() {
+		return snapshot().getJobsCancelled();
+	}
+
+	@Override
+	public long getJobsRejected() {
+		return snapshot().getJobsRejected();
+	}
+
+	@Override
+	public long getJobsShed() {
+		return snapshot().getJobsShed();
+	}
+
+	@Override
+	public long getServersLoggedIn() {
+		return snapshot().getServersLoggedIn();
+	}
+
+	@Override
+	public long getServersReturned() {
+		return snapshot().getServersReturned();
+	}
+
+	@Override
+	public long getServersWithdrawn() {
+		return snapshot().getServersWithdrawn();
+	}
+
+	@Override
+	public long getServersAssigned() {
+		return snapshot().getServersAssigned();
+	}
+
+	@Override
+	public long getMatchPasses() {
+		return snapshot().getMatchPasses();
+	}
+
+	@Override
+	public long getLockAcquisitions() {
+		return snapshot().getLockAcquisitions();
+	}
+
+	@Override
+	public long getGangsAssembled() {
+		return snapshot().getGangsAssembled();
+	}
+
+	@Override
+	public long getGangsExpired() {
+		return snapshot().getGangsExpired();
+	}
+
+	@Override
+	public long getGangHeldServerNanos() {
+		return snapshot().getGangHeldServerNanos();
+	}
+
+	@Override
+	public long getJobWaitP50() {
+		return snapshot().getJobWait().getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getJobWaitP99() {
+		return snapshot().getJobWait().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getServerIdleP50() {
+		return snapshot().getServerIdle().getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getServerIdleP99() {
+		return snapshot().getServerIdle().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getMatchPassP99() {
+		return snapshot().getMatchPass().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getLockWaitP99() {
+		return snapshot().getLockWait().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getLockWaitMax() {
+		return snapshot().getLockWait().getMax();
+	}
+
+	@Override
+	public long getLockHoldP99() {
+		return snapshot().getLockHold().getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getLockHoldMax() {
+		return snapshot().getLockHold().getMax();
+	}
+
+	@Override
+	public long getGangHoldP99() {
+		return snapshot().getGangHold().getValueAtPercentile(99);
+	}
+
+	@Override
+	public void resetMetrics() {
+		manager.resetMetrics();
+		cached = null;
+	}
+}
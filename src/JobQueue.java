@@ -0,0 +1,121 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// JOB QUEUE
+// FIFO QUEUE OF JOB REQUESTS BUILT AS AN INTRUSIVE DOUBLY LINKED LIST.
+// EACH QUEUED JOB IS HELD IN A NODE THAT THE CALLER KEEPS A HANDLE ON, SO A JOB
+// CAN BE TAKEN OUT OF THE MIDDLE OF THE QUEUE IN O(1) WITHOUT SEARCHING FOR IT
+// (UNLIKE LinkedList.get(i) / remove(i) WHICH BOTH WALK THE LIST).
+// NOT THREAD-SAFE: THE OWNER MUST HOLD ITS OWN LOCK.
+public class JobQueue implements Iterable<JobQueue.Node> {
+
+	// NODE
+	// A QUEUED JOB. SUBCLASSES CAN CARRY EXTRA MATCHING STATE ALONGSIDE THE LINKS, OR
+	// THEIR OWN DESCRIPTION OF THE JOB IN PLACE OF THE JobRequest (WHICH IS THEN NULL).
+	public static class Node {
+		final JobRequest job;
+		private Node prev;
+		private Node next;
+		private JobQueue queue;
+
+		public Node(JobRequest job) {
+			this.job = job;
+		}
+
+		public JobRequest getJob() {
+			return job;
+		}
+
+		public boolean isQueued() {
+			return queue != null;
+		}
+	}
+
+	private Node head;
+	private Node tail;
+	private int size = 0;
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// ADDS THE NODE TO THE BACK OF THE QUEUE
+	public void add(Node node) {
+		if (node.queue != null) {
+			throw new IllegalStateException("the job is already queued");
+		}
+		node.queue = this;
+		node.prev = tail;
+		node.next = null;
+		if (tail == null) {
+			head = node;
+		} else {
+			tail.next = node;
+		}
+		tail = node;
+		size++;
+	}
+
+	// UNLINKS THE NODE FROM WHEREVER IT IS IN THE QUEUE
+	// RETURNS FALSE IF THE NODE IS NOT IN THIS QUEUE
+	public boolean remove(Node node) {
+		if (node.queue != this) {
+			return false;
+		}
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+		if (node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+		node.prev = null;
+		node.next = null;
+		node.queue = null;
+		size--;
+		return true;
+	}
+
+	public Node peekFirst() {
+		return head;
+	}
+
+	public Node pollFirst() {
+		Node first = head;
+		if (first != null) {
+			remove(first);
+		}
+		return first;
+	}
+
+	// ITERATES FROM THE OLDEST TO THE NEWEST JOB
+	// THE NODE MOST RECENTLY RETURNED MAY BE REMOVED WHILE ITERATING
+	@Override
+	public Iterator<Node> iterator() {
+		return new Iterator<Node>() {
+			private Node nextNode = head;
+
+			@Override
+			public boolean hasNext() {
+				return nextNode != null;
+			}
+
+			@Override
+			public Node next() {
+				if (nextNode == null) {
+					throw new NoSuchElementException();
+				}
+				Node current = nextNode;
+				nextNode = current.next;
+				return current;
+			}
+		};
+	}
+}
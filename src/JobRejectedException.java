@@ -0,0 +1,19 @@
+// JOB REJECTED
+// THROWN BY JobManager.specifyJob WHEN ADMISSION CONTROL TURNS A JOB AWAY: ITS QUEUE IS
+// FULL, A BLOCKED SUBMISSION TIMED OUT OR WAS INTERRUPTED, OR THE JOB NEEDS MORE
+// SERVERS OF A TYPE THAN HAVE EVER LOGGED IN. THE JOB WAS NOT QUEUED.
+public class JobRejectedException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String jobName;
+
+	public JobRejectedException(String jobName, String reason) {
+		super("job " + jobName + " rejected: " + reason);
+		this.jobName = jobName;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+}
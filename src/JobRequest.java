@@ -12,18 +12,25 @@ public class JobRequest extends HashMap<String, Integer>{
 	// creates a JobRequest, named "job01", that requires two Compute Servers and one Storage Server.
 	
 	String jobName = "";	
+	// Higher runs first under SchedulingPolicy.PRIORITY and HEAD_RESERVATION; ignored under FIFO.
+	int priority = 0;
 	JobRequest(String job){
 		super();
 		this.jobName = job;
 	}
+	JobRequest(String job, int priority){
+		this(job);
+		this.priority = priority;
+	}
     @Override
     public String toString() {
-        return  "jobName=" + jobName + ", job=" + super.toString();
+        return  "jobName=" + jobName + (priority != 0 ? ", priority=" + priority : "") + ", job=" + super.toString();
     }
     @Override
     public JobRequest clone() {
         JobRequest cloned = (JobRequest) super.clone();
         cloned.jobName = this.jobName;
+        cloned.priority = this.priority;
         return cloned;
     }
 }
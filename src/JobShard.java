@@ -0,0 +1,26 @@
+import java.util.Map;
+import java.util.function.Consumer;
+
+// One shard of a ShardedJobManager, as seen through a ShardTransport.
+// A shard owns the servers that log in to it and queues the jobs placed on it. Everything passed in
+// or out is a plain value (job requests, type names, counts and reservation ids) so that a transport
+// can carry it between processes; the in-process LocalShardTransport simply calls straight through.
+public interface JobShard {
+
+	// Queues the job on this shard if the servers that have logged in to it could ever satisfy it
+	// (whether or not they are idle now). Returns false, without queuing it, if they could not.
+	public boolean offerJob(JobRequest job);
+
+	// Logs the server in to this shard, as AsyncManager.serverLoginAsync.
+	public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned);
+
+	// Phase one of a cross-shard job: holds up to the wanted number of idle servers of each type
+	// under the reservation id and returns how many of each type were held (possibly none).
+	public Map<String, Integer> reserve(long reservationId, Map<String, Integer> wanted);
+
+	// Phase two: assigns the servers held under the reservation id to the job.
+	public void commit(long reservationId, String jobName);
+
+	// Phase two when the job could not be gathered: returns the held servers to the idle pool.
+	public void abort(long reservationId);
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+import java.util.Map;
+
+// JOB SPEC
+// A COMPACT, IMMUTABLE DESCRIPTION OF A JOB: ITS NAME, PRIORITY AND REQUIREMENTS AS
+// PARALLEL int ARRAYS OF SERVER TYPE IDS (SORTED) AND COUNTS, WITH THE IDS TAKEN FROM A
+// ServerTypeRegistry (USE THE ONE FROM JobManager.getTypeRegistry()).
+// UNLIKE A JobRequest THERE IS NO HASH TABLE, NO ENTRY NODES AND NO BOXED COUNTS.
+//
+//	JobSpec.Builder builder = new JobSpec.Builder(manager.getTypeRegistry());
+//	manager.specifyJob(builder.start("job01").require("ComputeServer", 2).require("StorageServer", 1).build());
+//
+// A SPEC IS NOT CHANGED ONCE BUILT, SO IT CAN BE SUBMITTED ANY NUMBER OF TIMES.
+public final class JobSpec {
+
+	private final ServerTypeRegistry registry;
+	private String name;
+	private int priority;
+	private int[] typeIds;
+	private int[] counts;
+	private int size;
+
+	private JobSpec(ServerTypeRegistry registry, int capacity) {
+		this.registry = registry;
+		this.typeIds = new int[capacity];
+		this.counts = new int[capacity];
+	}
+
+	// CONVERTS A JobRequest, SO EXISTING CALLERS KEEP WORKING
+	public static JobSpec of(JobRequest job, ServerTypeRegistry registry) {
+		JobSpec spec = new JobSpec(registry, job.size());
+		spec.name = job.jobName;
+		spec.priority = job.priority;
+		for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+			spec.add(registry.idOf(requirement.getKey()), requirement.getValue());
+		}
+		spec.sort();
+		return spec;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public ServerTypeRegistry getRegistry() {
+		return registry;
+	}
+
+	// NUMBER OF SERVER TYPES THE JOB NEEDS
+	public int size() {
+		return size;
+	}
+
+	// THE i-TH TYPE ID, IN ASCENDING ORDER
+	public int getTypeId(int i) {
+		checkIndex(i);
+		return typeIds[i];
+	}
+
+	public String getType(int i) {
+		return registry.nameOf(getTypeId(i));
+	}
+
+	public int getCount(int i) {
+		checkIndex(i);
+		return counts[i];
+	}
+
+	// HOW MANY SERVERS OF THE TYPE THE JOB NEEDS (0 IF NONE), BY BINARY SEARCH
+	public int countOf(int typeId) {
+		int i = Arrays.binarySearch(typeIds, 0, size, typeId);
+		return i < 0 ? 0 : counts[i];
+	}
+
+	public JobRequest toJobRequest() {
+		JobRequest job = new JobRequest(name, priority);
+		for (int i = 0; i < size; i++) {
+			job.put(registry.nameOf(typeIds[i]), counts[i]);
+		}
+		return job;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("jobName=").append(name);
+		if (priority != 0) {
+			text.append(", priority=").append(priority);
+		}
+		text.append(", job={");
+		for (int i = 0; i < size; i++) {
+			text.append(i == 0 ? "" : ", ").append(registry.nameOf(typeIds[i])).append('=').append(counts[i]);
+		}
+		return text.append('}').toString();
+	}
+
+	// THE ARRAYS THEMSELVES, FOR JobManager AND JobJournal (ONLY THE FIRST size() ENTRIES ARE USED)
+	int[] typeIds() {
+		return typeIds;
+	}
+
+	int[] counts() {
+		return counts;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("requirement " + i + " of " + size);
+		}
+	}
+
+	// ADDS A REQUIREMENT; A LATER COUNT FOR THE SAME TYPE REPLACES AN EARLIER ONE (AS IN
+	// JobRequest.put) AND A COUNT OF 0 OR LESS MEANS THE TYPE IS NOT NEEDED
+	private void add(int typeId, int count) {
+		for (int i = 0; i < size; i++) {
+			if (typeIds[i] == typeId) {
+				counts[i] = count;
+				return;
+			}
+		}
+		if (size == typeIds.length) {
+			typeIds = Arrays.copyOf(typeIds, Math.max(4, size * 2));
+			counts = Arrays.copyOf(counts, typeIds.length);
+		}
+		typeIds[size] = typeId;
+		counts[size] = count;
+		size++;
+	}
+
+	// DROPS THE UNNEEDED TYPES AND SORTS THE REST BY TYPE ID (INSERTION SORT: JOBS NEED FEW TYPES)
+	private void sort() {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			if (counts[i] > 0) {
+				int typeId = typeIds[i];
+				int count = counts[i];
+				int j = n++;
+				while (j > 0 && typeIds[j - 1] > typeId) {
+					typeIds[j] = typeIds[j - 1];
+					counts[j] = counts[j - 1];
+					j--;
+				}
+				typeIds[j] = typeId;
+				counts[j] = count;
+			}
+		}
+		size = n;
+	}
+
+	// BUILDER
+	// REUSABLE: start() BEGINS A NEW SPEC, require() ADDS TO IT AND build() FINISHES IT.
+	// A BUILDER IS NOT THREAD-SAFE; GIVE EACH SUBMITTING THREAD ITS OWN.
+	public static class Builder {
+		private final ServerTypeRegistry registry;
+		private JobSpec spec;
+
+		public Builder(ServerTypeRegistry registry) {
+			this.registry = registry;
+		}
+
+		public Builder start(String name) {
+			spec = new JobSpec(registry, 4);
+			spec.name = name;
+			return this;
+		}
+
+		public Builder priority(int priority) {
+			current().priority = priority;
+			return this;
+		}
+
+		public Builder require(String type, int count) {
+			return require(registry.idOf(type), count);
+		}
+
+		// FOR CALLERS THAT HAVE ALREADY LOOKED THE TYPE UP IN THE REGISTRY
+		public Builder require(int typeId, int count) {
+			current().add(typeId, count);
+			return this;
+		}
+
+		public JobSpec build() {
+			JobSpec built = current();
+			built.sort();
+			spec = null;
+			return built;
+		}
+
+		private JobSpec current() {
+			if (spec == null) {
+				throw new IllegalStateException("call start(name) first");
+			}
+			return spec;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+// LATENCY HISTOGRAM
+// RECORDS DURATIONS IN NANOSECONDS INTO LOG-LINEAR BUCKETS, IN THE STYLE OF HdrHistogram:
+// EVERY POWER OF TWO IS SPLIT INTO 32 EQUAL SUB-BUCKETS, SO ANY RECORDED VALUE IS KEPT TO
+// WITHIN ABOUT 3% WHATEVER ITS SIZE, AND VALUES BELOW 64ns ARE KEPT EXACTLY.
+// ALL THE BUCKETS ARE ALLOCATED UP FRONT, SO record() NEVER ALLOCATES.
+// NOT THREAD-SAFE: JobManager ONLY RECORDS WHILE HOLDING ITS LOCK.
+public class LatencyHistogram {
+
+	// 2^SUB_BUCKET_BITS SUB-BUCKETS IN EACH HALF OF A POWER OF TWO
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[] counts;
+	private long totalCount = 0;
+	private long sum = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	public LatencyHistogram() {
+		this.counts = new long[BUCKETS];
+	}
+
+	private LatencyHistogram(LatencyHistogram other) {
+		this.counts = other.counts.clone();
+		this.totalCount = other.totalCount;
+		this.sum = other.sum;
+		this.min = other.min;
+		this.max = other.max;
+	}
+
+	// RECORDS ONE VALUE (NEGATIVE VALUES, E.G. FROM A CLOCK GOING BACKWARDS, COUNT AS 0)
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[bucketOf(value)]++;
+		totalCount++;
+		sum += value;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public long getCount() {
+		return totalCount;
+	}
+
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) sum / totalCount;
+	}
+
+	// VALUE AT THE GIVEN PERCENTILE (0-100): THE HIGHEST VALUE IN THE BUCKET THAT HOLDS IT,
+	// NEVER MORE THAN THE LARGEST VALUE ACTUALLY RECORDED
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * totalCount));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(highestValueIn(i), max);
+			}
+		}
+		return max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	// ADDS IN EVERYTHING RECORDED BY ANOTHER HISTOGRAM, E.G. ONE KEPT PER THREAD
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	// INDEPENDENT COPY, E.G. FOR A SNAPSHOT THAT IS READ AFTER THE LOCK IS RELEASED
+	public LatencyHistogram copy() {
+		return new LatencyHistogram(this);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, p50=%d, p90=%d, p99=%d, p99.9=%d, max=%d (ns)", totalCount,
+				getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+				getValueAtPercentile(99.9), max);
+	}
+
+	// VALUES BELOW 2 * SUB_BUCKETS HAVE A BUCKET EACH. ABOVE THAT, A VALUE WITH ITS
+	// HIGHEST BIT AT POSITION e IS SHIFTED RIGHT BY e - SUB_BUCKET_BITS, LEAVING A
+	// SUB-BUCKET IN [SUB_BUCKETS, 2 * SUB_BUCKETS).
+	private static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	private static long highestValueIn(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket - (long) shift * SUB_BUCKETS;
+		long highest = ((subBucket + 1) << shift) - 1;
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+}
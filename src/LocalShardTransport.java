@@ -0,0 +1,111 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// LOCAL SHARD TRANSPORT
+// IN-PROCESS STAND-IN FOR THE NETWORK: EVERY SHARD IS A JobManager IN THIS PROCESS
+// AND EVERY CALL GOES STRAIGHT THROUGH TO IT.
+public class LocalShardTransport implements ShardTransport {
+
+	private final LocalShard[] shards;
+
+	public LocalShardTransport(int shardCount) {
+		this(shardCount, false);
+	}
+
+	public LocalShardTransport(int shardCount, boolean collectMetrics) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("shardCount must be at least 1: " + shardCount);
+		}
+		shards = new LocalShard[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = new LocalShard(new JobManager(collectMetrics));
+		}
+	}
+
+	@Override
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	@Override
+	public JobShard getShard(int shard) {
+		return shards[shard];
+	}
+
+	// THE JobManager BEHIND A SHARD, E.G. FOR ITS METRICS
+	public JobManager getManager(int shard) {
+		return shards[shard].manager;
+	}
+
+	// LOCAL SHARD
+	// A JobManager PLUS THE OPEN RESERVATIONS, KEYED BY THE IDS THE ROUTER SENDS.
+	// THE LOCK ONLY GUARDS THE RESERVATION TABLE AND IS NEVER HELD WHILE CALLING THE MANAGER.
+	private static class LocalShard implements JobShard {
+		private final JobManager manager;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final HashMap<Long, JobManager.Reservation> reservations = new HashMap<>();
+
+		public LocalShard(JobManager manager) {
+			this.manager = manager;
+		}
+
+		// THE FLEET ONLY EVER GROWS, SO A JOB THAT FITS WHEN CHECKED STILL FITS WHEN QUEUED
+		@Override
+		public boolean offerJob(JobRequest job) {
+			for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+				if (manager.getKnownServerCount(requirement.getKey()) < requirement.getValue()) {
+					return false;
+				}
+			}
+			manager.specifyJob(job);
+			return true;
+		}
+
+		@Override
+		public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned) {
+			manager.serverLoginAsync(type, ID, onAssigned);
+		}
+
+		@Override
+		public Map<String, Integer> reserve(long reservationId, Map<String, Integer> wanted) {
+			JobManager.Reservation reservation = manager.reserve(wanted);
+			if (reservation.isEmpty()) {
+				return reservation.getGranted();
+			}
+			lock.lock();
+			try {
+				reservations.put(reservationId, reservation);
+			} finally {
+				lock.unlock();
+			}
+			return reservation.getGranted();
+		}
+
+		@Override
+		public void commit(long reservationId, String jobName) {
+			JobManager.Reservation reservation = take(reservationId);
+			if (reservation != null) {
+				manager.commitReservation(reservation, jobName);
+			}
+		}
+
+		@Override
+		public void abort(long reservationId) {
+			JobManager.Reservation reservation = take(reservationId);
+			if (reservation != null) {
+				manager.cancelReservation(reservation);
+			}
+		}
+
+		private JobManager.Reservation take(long reservationId) {
+			lock.lock();
+			try {
+				return reservations.remove(reservationId);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,29 @@
+// LOCK MODE
+// HOW CALLERS OF A JobManager GET ITS LOCK. CHOSEN WHEN THE MANAGER IS CREATED, AS
+// THE LOCK CANNOT CHANGE AFTERWARDS (HOW A BLOCKED LOGIN WAITS FOR ITS JOB IS SET
+// SEPARATELY, WITH JobManager.setWakeupHandoff()).
+public enum LockMode {
+
+	// A NON-FAIR ReentrantLock (THE DEFAULT): A THREAD ARRIVING WHILE THE LOCK IS
+	// FREE TAKES IT AHEAD OF THE THREADS QUEUED FOR IT. THE BEST THROUGHPUT, BUT
+	// UNDER A STORM OF LOGINS AN UNLUCKY CALLER CAN BE OVERTAKEN AGAIN AND AGAIN.
+	NON_FAIR,
+
+	// A FAIR ReentrantLock: THE LOCK GOES TO THE THREADS IN THE ORDER THEY ASKED
+	// FOR IT, WHICH BOUNDS HOW LONG ANY ONE CALLER WAITS AT THE COST OF A THREAD
+	// SWITCH ON ALMOST EVERY HAND-OVER.
+	FAIR,
+
+	// A NON-FAIR LOCK BEHIND A FLAT-COMBINING FRONT-END: specifyJob, serverLogin AND
+	// serverLoginAsync PUBLISH THEIR CALL, AND WHICHEVER CALLER IS COMBINING APPLIES
+	// ALL THE PUBLISHED CALLS UNDER ONE ACQUISITION OF THE LOCK WITH ONE MATCHING
+	// PASS. A BLOCKED LOGIN IS HANDED ITS JOB AS WITH WAKE-UP HANDOFF. THE OTHER
+	// METHODS TAKE THE LOCK DIRECTLY.
+	// EXPERIMENTAL, NOT A PERFORMANCE MODE: IN Benchmarks.lockContentionBenchmark IT IS
+	// SLOWER THAN NON_FAIR (ABOUT 50K AGAINST 67K JOBS/S) AND A LOGIN CAN WAIT BEHIND A
+	// WHOLE BATCH (REGISTRATION p99.9 OF MILLISECONDS AGAINST MICROSECONDS). THOSE
+	// NUMBERS ARE FROM A SINGLE CPU, WHERE PUBLISHING A CALL ONLY ADDS A HAND-OFF; IT HAS
+	// NOT BEEN MEASURED ON A MULTI-CORE MACHINE, WHERE BATCHING MIGHT PAY. USE NON_FAIR
+	// UNLESS MEASUREMENTS ON THE TARGET MACHINE SAY OTHERWISE.
+	COMBINING
+}
@@ -3,7 +3,10 @@
 
 public class Main {
 	public static void main(String[] args) {
-		Tests tests =  new Tests();
+		// RUN WITH "striped" TO TEST THE LOCK-STRIPED MANAGER INSTEAD OF JobManager
+		Tests tests = (args.length > 0 && args[0].equals("striped"))
+				? new Tests(StripedJobManager::new)
+				: new Tests();
 		
 		// USED THE EXAMPLE TEST CASES FOR 2 AND 6
 		// COMMENTED OUT MY OWN TEST CASES
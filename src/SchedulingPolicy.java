@@ -0,0 +1,25 @@
+// SCHEDULING POLICY
+// THE ORDER IN WHICH JobManager RELEASES PENDING JOBS. SET WITH JobManager.setSchedulingPolicy().
+public enum SchedulingPolicy {
+
+	// RELEASE THE EARLIEST SUBMITTED JOB THAT CAN BE FULLY SATISFIED (THE DEFAULT).
+	// A JOB THAT CANNOT RUN YET DOES NOT HOLD UP THE JOBS BEHIND IT.
+	FIFO,
+
+	// AS FIFO, BUT JOBS WITH A HIGHER JobRequest.priority ARE CONSIDERED FIRST;
+	// JOBS OF THE SAME PRIORITY ARE CONSIDERED IN SUBMISSION ORDER.
+	PRIORITY,
+
+	// A STARVATION GUARD OVER THE PRIORITY ORDER, NOT A THROUGHPUT POLICY. THE JOB AT
+	// THE HEAD OF THE QUEUE HOLDS A RESERVATION ON THE IDLE SERVERS IT NEEDS; A LATER JOB
+	// MAY ONLY RUN IF IT FITS IN THE SERVERS LEFT OVER, SO IT NEVER TAKES A SERVER THE
+	// HEAD JOB IS WAITING FOR AND THE HEAD JOB CANNOT BE STARVED BY A STREAM OF SMALLER
+	// JOBS.
+	// THIS IS NOT EASY BACKFILL: JOBS HAVE NO RUNNING-TIME ESTIMATES, SO THERE IS NO
+	// SHADOW TIME FOR THE HEAD JOB, AND A LATER JOB THAT WOULD FINISH LONG BEFORE THE
+	// HEAD JOB COULD START IS STILL KEPT OFF THE RESERVED SERVERS. THOSE SERVERS SIT
+	// IDLE WHILE THE HEAD JOB GATHERS, SO EXPECT LOWER UTILIZATION AND LONGER MEAN WAITS
+	// THAN FIFO OR PRIORITY (SEE Benchmarks.schedulingPolicySimulation) IN EXCHANGE FOR A
+	// BOUND ON HOW LONG A LARGE JOB CAN BE PASSED OVER.
+	HEAD_RESERVATION
+}
@@ -0,0 +1,77 @@
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+
+// SERVER LAUNCHER
+// STARTS ONE THREAD PER SERVER. EACH THREAD CALLS serverLogin AND HANDS THE JOB IT
+// IS RELEASED WITH TO A CALLBACK.
+// ON A RUNTIME WITH VIRTUAL THREADS (JAVA 21+) THE SERVERS RUN ON VIRTUAL THREADS, SO
+// A PARKED LOGIN COSTS A FEW HUNDRED BYTES OF HEAP INSTEAD OF A PLATFORM THREAD AND
+// ITS STACK. JobManager ONLY WAITS ON ReentrantLock CONDITIONS (NEVER synchronized),
+// SO A PARKED VIRTUAL THREAD DOES NOT PIN ITS CARRIER THREAD.
+// ON OLDER RUNTIMES IT FALLS BACK TO PLATFORM THREADS WITH A SMALL STACK.
+public class ServerLauncher {
+
+	// STACK SIZE REQUESTED FOR PLATFORM SERVER THREADS (serverLogin NEEDS VERY LITTLE)
+	private static final long PLATFORM_STACK_SIZE = 64 * 1024;
+
+	// Thread.ofVirtual() AND Thread.Builder.unstarted(Runnable), LOOKED UP ONCE
+	private static final Method OF_VIRTUAL;
+	private static final Method UNSTARTED;
+
+	static {
+		Method ofVirtual = null;
+		Method unstarted = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+		} catch (ReflectiveOperationException e) {
+			// NO VIRTUAL THREADS ON THIS RUNTIME
+			ofVirtual = null;
+			unstarted = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		UNSTARTED = unstarted;
+	}
+
+	private final Manager manager;
+	private final boolean virtual;
+
+	// USES VIRTUAL THREADS WHENEVER THE RUNTIME HAS THEM
+	public ServerLauncher(Manager manager) {
+		this(manager, virtualThreadsSupported());
+	}
+
+	public ServerLauncher(Manager manager, boolean virtual) {
+		if (virtual && !virtualThreadsSupported()) {
+			throw new UnsupportedOperationException("virtual threads need Java 21 or later");
+		}
+		this.manager = manager;
+		this.virtual = virtual;
+	}
+
+	public static boolean virtualThreadsSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	// LAUNCHES A SERVER THAT LOGS IN ONCE
+	// `onRelease` IS CALLED ON THE SERVER'S THREAD WITH ITS ID AND JOB NAME
+	public Thread launch(String type, int ID, BiConsumer<Integer, String> onRelease) {
+		Runnable server = () -> onRelease.accept(ID, manager.serverLogin(type, ID));
+		Thread thread = virtual ? newVirtualThread(server)
+				: new Thread(null, server, type + "-" + ID, PLATFORM_STACK_SIZE);
+		thread.start();
+		return thread;
+	}
+
+	private static Thread newVirtualThread(Runnable server) {
+		try {
+			return (Thread) UNSTARTED.invoke(OF_VIRTUAL.invoke(null), server);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot create a virtual thread", e);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+import java.util.function.IntUnaryOperator;
+
+// SERVER SELECTION POLICY
+// WHICH IDLE SERVERS JobManager GIVES A JOB ONCE IT HAS DECIDED TO RELEASE IT. SET WITH
+// JobManager.setServerSelectionPolicy(); HIGHEST_ID (THE DEFAULT) TAKES THE HIGHEST IDS.
+//
+// A POLICY PUTS EACH SERVER IN A LOCALITY GROUP (A RACK, A ZONE) BY ITS TYPE AND ID, AND
+// THE MANAGER KEEPS ITS IDLE SERVERS INDEXED BY GROUP. FOR EACH JOB THE POLICY CHOOSES
+// ONE GROUP THROUGH THAT INDEX; THE JOB GETS THE HIGHEST IDS IN THAT GROUP FIRST, AND
+// ANY SERVERS IT STILL NEEDS ARE THE HIGHEST IDS ANYWHERE. SO THE POLICY ONLY EVER
+// LOOKS AT GROUPS, NEVER AT EVERY IDLE SERVER, AND WHETHER A JOB CAN RUN AT ALL STILL
+// DEPENDS ONLY ON THE NUMBER OF IDLE SERVERS OF EACH TYPE.
+public interface ServerSelectionPolicy {
+
+	// NOT IN ANY GROUP, OR (FROM chooseGroup) NO GROUP IS PREFERRED
+	int NO_GROUP = Integer.MIN_VALUE;
+
+	// THE GROUP OF A SERVER. CALLED WHEN THE SERVER FIRST LOGS IN (AND FOR EVERY KNOWN
+	// SERVER WHEN THE POLICY IS SET), SO IT MUST ALWAYS GIVE THE SAME ANSWER.
+	int groupOf(String type, int serverID);
+
+	// THE GROUP TO TAKE A JOB'S SERVERS FROM FIRST, OR NO_GROUP. THE JOB NEEDS counts[i]
+	// SERVERS OF types[i], AND THERE ARE ALWAYS ENOUGH IDLE SERVERS OF EACH TYPE.
+	int chooseGroup(String[] types, int[] counts, IdleGroups idle);
+
+	// THE MANAGER'S INDEX OF ITS IDLE SERVERS BY GROUP (ONLY VALID DURING chooseGroup)
+	interface IdleGroups {
+
+		// IDLE SERVERS OF THE TYPE IN THE GROUP
+		int idleCount(String type, int group);
+
+		// THE GROUPS WITH AT LEAST `count` IDLE SERVERS OF THE TYPE, FEWEST IDLE FIRST
+		Iterable<Integer> groupsWithAtLeast(String type, int count);
+
+		// THE GROUP WITH THE MOST IDLE SERVERS OF THE TYPE, OR NO_GROUP IF NONE ARE IDLE
+		int largestGroup(String type);
+	}
+
+	// HIGHEST IDS FIRST, NO GROUPS (THE DEFAULT)
+	ServerSelectionPolicy HIGHEST_ID = new ServerSelectionPolicy() {
+		@Override
+		public int groupOf(String type, int serverID) {
+			return NO_GROUP;
+		}
+
+		@Override
+		public int chooseGroup(String[] types, int[] counts, IdleGroups idle) {
+			return NO_GROUP;
+		}
+
+		@Override
+		public String toString() {
+			return "HIGHEST_ID";
+		}
+	};
+
+	// AFFINITY
+	// GROUPS SERVERS OF EVERY TYPE BY `locality` OF THEIR ID, AND PUTS A JOB IN THE GROUP
+	// WITH THE FEWEST IDLE SERVERS THAT STILL HOLDS ALL OF IT (LEAVING THE EMPTIER GROUPS
+	// FOR LARGER JOBS). IF NO GROUP HOLDS ALL OF IT, THE JOB STARTS IN THE GROUP WITH THE
+	// MOST IDLE SERVERS OF THE TYPE IT NEEDS MOST OF.
+	// ONLY THE GROUPS WITH ENOUGH IDLE SERVERS OF THAT TYPE ARE EXAMINED, SO THE COST
+	// GROWS WITH THE NUMBER OF GROUPS, NOT THE NUMBER OF IDLE SERVERS.
+	static ServerSelectionPolicy affinity(IntUnaryOperator locality) {
+		return new ServerSelectionPolicy() {
+			@Override
+			public int groupOf(String type, int serverID) {
+				return locality.applyAsInt(serverID);
+			}
+
+			@Override
+			public int chooseGroup(String[] types, int[] counts, IdleGroups idle) {
+				int largest = 0;
+				for (int i = 1; i < types.length; i++) {
+					if (counts[i] > counts[largest]) {
+						largest = i;
+					}
+				}
+				for (int group : idle.groupsWithAtLeast(types[largest], counts[largest])) {
+					boolean fits = true;
+					for (int i = 0; i < types.length && fits; i++) {
+						fits = idle.idleCount(types[i], group) >= counts[i];
+					}
+					if (fits) {
+						return group;
+					}
+				}
+				return idle.largestGroup(types[largest]);
+			}
+
+			@Override
+			public String toString() {
+				return "affinity";
+			}
+		};
+	}
+
+	// RACK AFFINITY FOR IDS THAT NUMBER THE SERVERS RACK BY RACK, `serversPerRack` TO A RACK
+	static ServerSelectionPolicy rackAffinity(int serversPerRack) {
+		return affinity(id -> id / serversPerRack);
+	}
+
+	// ZONE AFFINITY FOR IDS THAT NUMBER THE SERVERS ZONE BY ZONE, `serversPerZone` TO A ZONE
+	static ServerSelectionPolicy zoneAffinity(int serversPerZone) {
+		return affinity(id -> id / serversPerZone);
+	}
+}
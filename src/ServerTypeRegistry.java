@@ -0,0 +1,75 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// SERVER TYPE REGISTRY
+// GIVES EVERY SERVER TYPE NAME A DENSE int ID (0, 1, 2, ...) THE FIRST TIME IT IS SEEN.
+// TYPE NAMES ARE HASHED ONCE, WHEN A SERVER LOGS IN OR A JOB IS SUBMITTED; AFTER THAT THE
+// MATCHER WORKS ONLY WITH THE IDS, INDEXING PLAIN ARRAYS.
+// IDS ARE NEVER REUSED OR REMOVED. THE TYPES ARE KEPT IN A TABLE THAT IS NEVER CHANGED
+// ONCE PUBLISHED: A NEW TYPE IS ADDED TO A COPY UNDER THE LOCK, SO LOOKING UP A TYPE
+// THAT IS ALREADY REGISTERED TAKES NO LOCK AT ALL, WHETHER OR NOT THE CALLER HOLDS A
+// MANAGER'S LOCK (JobSpec.Builder REGISTERS TYPES ON THE SUBMITTING THREAD).
+public class ServerTypeRegistry {
+
+	// LOCKING FOR REGISTERING A NEW TYPE
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile Table table = new Table(new HashMap<>(), new String[0]);
+
+	// THE ID OF THE TYPE, REGISTERING IT IF IT IS NEW
+	public int idOf(String type) {
+		Integer id = table.ids.get(type);
+		if (id != null) {
+			return id;
+		}
+		lock.lock();
+		try {
+			Table current = table;
+			id = current.ids.get(type);
+			if (id != null) {
+				return id;
+			}
+			int newId = current.names.length;
+			HashMap<String, Integer> ids = new HashMap<>(current.ids);
+			ids.put(type, newId);
+			String[] names = Arrays.copyOf(current.names, newId + 1);
+			names[newId] = type;
+			table = new Table(ids, names);
+			return newId;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// THE ID OF THE TYPE, OR -1 IF IT HAS NEVER BEEN REGISTERED
+	public int find(String type) {
+		Integer id = table.ids.get(type);
+		return id == null ? -1 : id;
+	}
+
+	public String nameOf(int id) {
+		String[] names = table.names;
+		if (id < 0 || id >= names.length) {
+			throw new IllegalArgumentException("no server type with id " + id);
+		}
+		return names[id];
+	}
+
+	// NUMBER OF TYPES REGISTERED SO FAR (ONE MORE THAN THE HIGHEST ID)
+	public int size() {
+		return table.names.length;
+	}
+
+	// ONE PUBLISHED STATE OF THE REGISTRY. NEITHER THE MAP NOR THE ARRAY IS CHANGED
+	// AFTER CONSTRUCTION, AND THE FIELDS ARE FINAL, SO A THREAD THAT READS THE table
+	// FIELD SEES BOTH IN FULL.
+	private static final class Table {
+		private final HashMap<String, Integer> ids;
+		private final String[] names;
+
+		Table(HashMap<String, Integer> ids, String[] names) {
+			this.ids = ids;
+			this.names = names;
+		}
+	}
+}
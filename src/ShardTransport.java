@@ -0,0 +1,9 @@
+// How a ShardedJobManager reaches its shards.
+// A networked transport would implement this with a client stub per shard; LocalShardTransport keeps
+// every shard in this process so the sharded manager can be run and tested without a network.
+public interface ShardTransport {
+
+	public int getShardCount();
+
+	public JobShard getShard(int shard);
+}
@@ -0,0 +1,357 @@
+// A Manager that spreads its servers and jobs over several JobManager shards.
+//
+// Each shard owns the servers whose ID maps to it (ID modulo the shard count) and queues the jobs
+// placed on it, so logins, matching passes and wake-ups in different shards never share a lock.
+// The shards are reached through a ShardTransport; LocalShardTransport keeps them in this process.
+//
+// A job is placed on its home shard (chosen from a hash of its name), or on the next shard after it
+// whose servers could ever satisfy it, and is then matched there by that shard's JobManager. Jobs
+// stay on the shard they were placed on, so FIFO order holds within each shard, not across them.
+//
+// A job that no single shard can satisfy (e.g. one needing more servers of a type than any shard
+// has) is kept by the router and gathered with a two-phase reserve/commit: idle servers are reserved
+// on as many shards as it takes, and the reservations are committed only once the whole job is
+// covered, otherwise they are all aborted and the servers go back to their pools. These cross-shard
+// jobs are queued by every server type they need, and a login retries only the jobs needing its
+// type, in FIFO order, stopping at the first that is still short. A job is only tried once it is
+// the oldest waiting job of every type it needs, so no later job takes servers it is waiting for.
+//
+// A job specified before enough of its servers have logged in lands with the router too, only
+// because no shard has the servers yet. Each retry therefore offers a waiting job to its home shard
+// again first, and once that shard can satisfy it the job moves there for good, so jobs submitted
+// ahead of their servers do not stay cross-shard once the servers arrive. Only the home shard is
+// tried: moving every such job to whichever shard saw a server first would pile them all onto it.
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.*;
+
+public class ShardedJobManager implements BatchManager, AsyncManager {
+
+	// HOW THE SHARDS ARE REACHED
+    private final ShardTransport transport;
+    private final int shardCount;
+
+	// LOCKING FOR THE CROSS-SHARD JOBS AND THE RESERVATION IDS
+	// TAKEN BEFORE ANY SHARD IS CALLED, NEVER WHILE A SHARD IS CALLING BACK
+    private final ReentrantLock routerLock = new ReentrantLock();
+
+	// JOBS NO SINGLE SHARD CAN SATISFY, QUEUED IN FIFO ORDER UNDER EACH SERVER TYPE THEY NEED
+    private final HashMap<String, LinkedHashSet<WaitingJob>> waitingByType = new HashMap<>();
+    private int crossShardJobCount = 0;
+
+	// SET WHILE ANY CROSS-SHARD JOB IS WAITING, SO LOGINS CAN SKIP THE ROUTER LOCK OTHERWISE
+    private volatile boolean crossShardPending = false;
+
+    private long nextReservationId = 0;
+
+	// ONE LOCK PER SHARD FOR THE BLOCKING LOGINS WAITING ON THAT SHARD'S SERVERS
+    private final ReentrantLock[] loginLocks;
+
+    public ShardedJobManager(int shardCount) {
+        this(new LocalShardTransport(shardCount));
+    }
+
+    public ShardedJobManager(ShardTransport transport) {
+        this.transport = transport;
+        this.shardCount = transport.getShardCount();
+        this.loginLocks = new ReentrantLock[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            loginLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void specifyJob(JobRequest job) {
+        if (!placeJob(job)) {
+            routerLock.lock();
+            try {
+                WaitingJob waiting = enqueue(job);
+                crossShardPending = true;
+                gatherNewJobs(Collections.singletonList(waiting));
+            } finally {
+                routerLock.unlock();
+            }
+        }
+    }
+
+	// SPECIFYING A BATCH OF JOBS
+	// EACH JOB IS PLACED IN TURN; THE ONES THAT NEED SEVERAL SHARDS ARE QUEUED
+	// TOGETHER AND GATHERED IN A SINGLE PASS.
+    @Override
+    public void specifyJobs(Collection<JobRequest> jobs) {
+        ArrayList<JobRequest> spilled = new ArrayList<>();
+        for (JobRequest job : jobs) {
+            if (!placeJob(job)) {
+                spilled.add(job);
+            }
+        }
+        if (spilled.isEmpty()) {
+            return;
+        }
+        routerLock.lock();
+        try {
+            ArrayList<WaitingJob> added = new ArrayList<>();
+            for (JobRequest job : spilled) {
+                added.add(enqueue(job));
+            }
+            crossShardPending = true;
+            gatherNewJobs(added);
+        } finally {
+            routerLock.unlock();
+        }
+    }
+
+	// SERVER LOGIN
+	// LOGS IN TO THE SERVER'S SHARD ASYNCHRONOUSLY AND WAITS HERE FOR THE CALLBACK,
+	// SO THE ROUTER CAN TRY THE CROSS-SHARD JOBS ONCE THE SERVER IS IN THE POOL.
+    @Override
+    public String serverLogin(String type, int ID) {
+        ReentrantLock lock = loginLocks[shardOf(ID)];
+        Login login = new Login(lock);
+        serverLoginAsync(type, ID, login::assign);
+
+        lock.lock();
+        try {
+        	// WAITING FOR AN JOB TO BE AVAILABLE
+            while (!login.isAssigned()) {
+                login.waitForAssignment();
+            }
+            return login.getAssignedJob();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void serverLoginAsync(String type, int ID, Consumer<String> onAssigned) {
+        transport.getShard(shardOf(ID)).serverLoginAsync(type, ID, onAssigned);
+        if (crossShardPending) {
+            routerLock.lock();
+            try {
+                gatherJobs(type);
+            } finally {
+                routerLock.unlock();
+            }
+        }
+    }
+
+	// NUMBER OF JOBS WAITING TO BE GATHERED FROM SEVERAL SHARDS
+    public int getCrossShardJobCount() {
+        routerLock.lock();
+        try {
+            return crossShardJobCount;
+        } finally {
+            routerLock.unlock();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+    private int shardOf(int ID) {
+        return Math.floorMod(ID, shardCount);
+    }
+
+    private int homeOf(JobRequest job) {
+        return Math.floorMod(job.jobName.hashCode(), shardCount);
+    }
+
+	// PLACING THE JOB
+	// OFFERS THE JOB TO ITS HOME SHARD, THEN TO EACH SHARD AFTER IT IN TURN.
+	// RETURNS FALSE IF NO SHARD'S SERVERS COULD EVER SATISFY IT ON THEIR OWN.
+    private boolean placeJob(JobRequest job) {
+        int home = homeOf(job);
+        for (int i = 0; i < shardCount; i++) {
+            if (transport.getShard((home + i) % shardCount).offerJob(job)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+	// QUEUES A CROSS-SHARD JOB UNDER EACH TYPE IT NEEDS
+	// CALLER MUST HOLD THE ROUTER LOCK
+    private WaitingJob enqueue(JobRequest job) {
+        WaitingJob waiting = new WaitingJob(job);
+        for (String type : waiting.types) {
+            waitingByType.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(waiting);
+        }
+        crossShardJobCount++;
+        return waiting;
+    }
+
+    private void dequeue(WaitingJob waiting) {
+        for (String type : waiting.types) {
+            LinkedHashSet<WaitingJob> queue = waitingByType.get(type);
+            queue.remove(waiting);
+            if (queue.isEmpty()) {
+                waitingByType.remove(type);
+            }
+        }
+        crossShardJobCount--;
+    }
+
+	// WHETHER THE JOB IS THE OLDEST WAITING JOB OF EVERY TYPE IT NEEDS
+    private boolean isFirst(WaitingJob waiting) {
+        for (String type : waiting.types) {
+            if (waitingByType.get(type).iterator().next() != waiting) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+	// TRYING ONE WAITING JOB
+	// A JOB THAT ITS HOME SHARD CAN NOW SATISFY ON ITS OWN IS MOVED THERE; OTHERWISE IT
+	// IS GATHERED IF IT CAN BE COVERED. RETURNS FALSE IF IT IS STILL SHORT.
+    private boolean tryJob(WaitingJob waiting) {
+        JobRequest job = waiting.job;
+        return transport.getShard(homeOf(job)).offerJob(job) || gatherJob(job);
+    }
+
+	// GATHERING THE CROSS-SHARD JOBS AFTER A LOGIN
+	// ONLY THE JOBS NEEDING THE LOGIN'S TYPE CAN HAVE BECOME COVERABLE. THEY ARE TRIED
+	// OLDEST FIRST, STOPPING AT THE FIRST ONE THAT IS STILL SHORT (OR WAITING BEHIND AN
+	// OLDER JOB OF ANOTHER TYPE). A JOB THAT LEAVES MAY BE ALL THAT HELD UP THE NEXT JOB
+	// OF ITS OTHER TYPES, WHOSE SERVERS MAY ALREADY BE IDLE, SO THOSE TYPES ARE TRIED IN
+	// THE SAME PASS RATHER THAN WAITING FOR A LOGIN OF THEIR OWN.
+	// CALLER MUST HOLD THE ROUTER LOCK
+    private void gatherJobs(String type) {
+        ArrayDeque<String> types = new ArrayDeque<>();
+        types.add(type);
+        while (!types.isEmpty()) {
+            LinkedHashSet<WaitingJob> queue = waitingByType.get(types.poll());
+            while (queue != null && !queue.isEmpty()) {
+                WaitingJob waiting = queue.iterator().next();
+                if (!isFirst(waiting) || !tryJob(waiting)) {
+                    break;
+                }
+                dequeue(waiting);
+                types.addAll(waiting.types);
+            }
+        }
+        crossShardPending = crossShardJobCount > 0;
+    }
+
+	// GATHERING NEWLY SPECIFIED CROSS-SHARD JOBS
+	// A NEW JOB ADDS NO SERVERS, SO THE JOBS ALREADY WAITING ARE NO MORE LIKELY TO BE
+	// COVERED THAN AT THEIR LAST TRY, AND ONLY A NEW JOB WITH NO OLDER JOB WAITING FOR
+	// ANY OF ITS TYPES IS TRIED. THE JOBS MUST ALREADY BE QUEUED, WITH crossShardPending
+	// SET, SO THAT A LOGIN THAT HAS NOT SEEN THE FLAG HAS ITS SERVER IN THE POOL BEFORE
+	// THEY ARE TRIED.
+	// CALLER MUST HOLD THE ROUTER LOCK
+    private void gatherNewJobs(List<WaitingJob> added) {
+        for (WaitingJob waiting : added) {
+            if (isFirst(waiting) && gatherJob(waiting.job)) {
+                dequeue(waiting);
+            }
+        }
+        crossShardPending = crossShardJobCount > 0;
+    }
+
+	// GATHERING ONE JOB
+	// PHASE ONE RESERVES WHAT IS STILL NEEDED FROM EACH SHARD IN TURN (STARTING AT THE
+	// JOB'S HOME SHARD). IF THE RESERVATIONS COVER THE WHOLE JOB, PHASE TWO COMMITS
+	// THEM ALL; OTHERWISE IT ABORTS THEM ALL, SO THE JOB IS ALLOCATED ALL-OR-NOTHING.
+	// CALLER MUST HOLD THE ROUTER LOCK
+    private boolean gatherJob(JobRequest job) {
+        HashMap<String, Integer> remaining = new HashMap<>();
+        for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+            if (requirement.getValue() > 0) {
+                remaining.put(requirement.getKey(), requirement.getValue());
+            }
+        }
+        long reservationId = nextReservationId++;
+        ArrayList<JobShard> holding = new ArrayList<>();
+        int home = homeOf(job);
+        for (int i = 0; i < shardCount && !remaining.isEmpty(); i++) {
+            JobShard shard = transport.getShard((home + i) % shardCount);
+            Map<String, Integer> granted = shard.reserve(reservationId, new HashMap<>(remaining));
+            if (granted.isEmpty()) {
+                continue;
+            }
+            holding.add(shard);
+            for (Map.Entry<String, Integer> held : granted.entrySet()) {
+                int left = remaining.get(held.getKey()) - held.getValue();
+                if (left > 0) {
+                    remaining.put(held.getKey(), left);
+                } else {
+                    remaining.remove(held.getKey());
+                }
+            }
+        }
+
+        boolean covered = remaining.isEmpty();
+        for (JobShard shard : holding) {
+            if (covered) {
+                shard.commit(reservationId, job.jobName);
+            } else {
+                shard.abort(reservationId);
+            }
+        }
+        return covered;
+    }
+
+	// WAITING JOB
+	// A CROSS-SHARD JOB AND THE TYPES IT NEEDS. COMPARED BY IDENTITY, UNLIKE A JobRequest,
+	// SO TWO JOBS WITH THE SAME REQUIREMENTS ARE KEPT APART.
+    private static class WaitingJob {
+        private final JobRequest job;
+        private final ArrayList<String> types = new ArrayList<>();
+
+        public WaitingJob(JobRequest job) {
+            this.job = job;
+            for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+                if (requirement.getValue() > 0) {
+                    types.add(requirement.getKey());
+                }
+            }
+        }
+    }
+
+	// LOGIN
+	// A BLOCKING LOGIN WAITING FOR ITS SHARD TO CALL BACK WITH A JOB
+    private static class Login {
+        private final ReentrantLock lock;
+        private final Condition condition;
+        private String assignedJob = "";
+        private boolean assigned = false;
+
+        public Login(ReentrantLock lock) {
+            this.lock = lock;
+            this.condition = lock.newCondition();
+        }
+
+        public boolean isAssigned() {
+            return assigned;
+        }
+
+        public String getAssignedJob() {
+            return assignedJob;
+        }
+
+        // CALLED BY THE SHARD, ON WHATEVER THREAD RELEASED THE JOB
+        public void assign(String jobName) {
+            lock.lock();
+            try {
+                this.assignedJob = jobName;
+                this.assigned = true;
+                condition.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // UNINTERRUPTIBLE: AN INTERRUPT STAYS SET FOR THE CALLER, RATHER THAN MAKING
+        // EVERY LATER await THROW AT ONCE AND THE LOGIN LOOP SPIN
+        public void waitForAssignment() {
+            condition.awaitUninterruptibly();
+        }
+    }
+}
@@ -0,0 +1,677 @@
+//////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+//        STRESS TEST
+//        Randomized correctness checks for the Manager implementations, run with:
+//            java StressTest [seed]
+//
+//        NOTE: 1. Unlike the scenarios in Tests.java nothing here sleeps or relies on reading a printed
+//                 log: every check is made by the harness itself and a failure prints the seed, round
+//                 and operation that broke it. The same seed always generates the same workload.
+//              2. The model check drives an AsyncManager from one thread, so every operation's
+//                 assignments are known when the call returns, and compares them exactly with a simple
+//                 reference model: FIFO job order, highest-ID-first servers, all-or-nothing jobs.
+//              3. StripedJobManager has only blocking logins, so its model check runs each login on a
+//                 thread of its own and waits for the manager to settle before the next operation.
+//              4. The concurrent check works for any Manager. Many server and submitter threads run at
+//                 once, so only the invariants that hold whatever the interleaving are checked: no job
+//                 gets more servers than it asked for, every job gets all of them, and nothing stalls.
+//              5. The admission check runs fixed scenarios against JobManager's queue limits, including
+//                 the edge cases where a limit of 0 leaves nothing to shed.
+//              6. The journal check queues jobs through a JobJournal with small segments, so the log
+//                 spans many of them, then reopens it and compares the jobs recovered with those queued.
+//
+//////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.*;
+
+public class StressTest {
+
+	private static final String[] TYPES = { "ComputeServer", "StorageServer", "NetworkServer" };
+	private static final int SERVERS_PER_TYPE = 8;
+	private static final int MAX_COUNT = 4;
+
+	// GIVES UP ON A CONCURRENT RUN THAT HAS MADE NO PROGRESS FOR THIS LONG
+	private static final long STALL_SECONDS = 30;
+
+	private final long seed;
+	private final ArrayList<String> failures = new ArrayList<>();
+
+	public StressTest(long seed) {
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) {
+		StressTest stress = new StressTest(args.length > 0 ? Long.parseLong(args[0]) : 1);
+
+		System.out.println("\n\nModel check (one thread, exact FIFO and highest-ID order):");
+		System.out.printf("%-24s %10s %12s %8s%n", "manager", "ops", "ops/s", "result");
+		stress.modelCheck("JobManager", JobManager::new, 200, 500);
+		stress.modelCheck("JobManager(combining)", () -> new JobManager(LockMode.COMBINING), 200, 500);
+		stress.blockingModelCheck("StripedJobManager", StripedJobManager::new, 50, 300);
+
+		System.out.println("\n\nConcurrent check (4 submitters, " + TYPES.length * SERVERS_PER_TYPE + " servers):");
+		System.out.printf("%-24s %10s %12s %8s%n", "manager", "ops", "ops/s", "result");
+		stress.concurrentCheck("JobManager", JobManager::new, 4, 1_000);
+		stress.concurrentCheck("JobManager(handoff)", () -> {
+			JobManager manager = new JobManager();
+			manager.setWakeupHandoff(true);
+			return manager;
+		}, 4, 1_000);
+		stress.concurrentCheck("JobManager(combining)", () -> new JobManager(LockMode.COMBINING), 4, 1_000);
+		stress.concurrentCheck("JobManager(gang)", () -> {
+			JobManager manager = new JobManager();
+			manager.setGangReservation(TimeUnit.MILLISECONDS.toNanos(5));
+			return manager;
+		}, 4, 1_000);
+		stress.concurrentCheck("JobManager(rack)", () -> {
+			JobManager manager = new JobManager();
+			manager.setServerSelectionPolicy(ServerSelectionPolicy.rackAffinity(4));
+			return manager;
+		}, 4, 1_000);
+		stress.concurrentCheck("StripedJobManager", StripedJobManager::new, 4, 1_000);
+		stress.concurrentCheck("ShardedJobManager(4)", () -> new ShardedJobManager(4), 4, 1_000);
+
+		System.out.println("\n\nAdmission check (queue limits, REJECT and SHED_OLDEST):");
+		stress.admissionCheck();
+
+		System.out.println("\n\nJournal check (4KB segments, recovery after close):");
+		stress.journalCheck("JobJournal", JobJournal.Durability.ASYNC, Integer.MAX_VALUE);
+		stress.journalCheck("JobJournal(group, ckpt)", JobJournal.Durability.GROUP, 50);
+
+		for (String failure : stress.getFailures()) {
+			System.out.println("FAILED " + failure);
+		}
+		System.exit(stress.getFailures().isEmpty() ? 0 : 1);
+	}
+
+	public List<String> getFailures() {
+		return failures;
+	}
+
+	// MODEL CHECK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// EACH ROUND STARTS A FRESH MANAGER AND APPLIES `ops` RANDOM OPERATIONS TO IT AND
+	// TO A Model: MOSTLY LOGINS OF SERVERS THAT ARE NOT ALREADY IDLE (A SERVER WITH A
+	// JOB LOGGING IN AGAIN HAS FINISHED IT), AND JOBS NEEDING 1 TO 4 SERVERS OF ONE OR
+	// TWO TYPES. SERVER IDS ARE SPREAD OUT RATHER THAN 0..N, SO THE HIGHEST-ID RULE IS
+	// TESTED ON IDS THAT DO NOT ARRIVE IN ORDER.
+	// AFTER EVERY OPERATION THE SERVERS THE MANAGER ASSIGNED (THROUGH THE LOGIN
+	// CALLBACKS) MUST BE EXACTLY THE ONES THE MODEL ASSIGNED.
+	// ONLY FOR MANAGERS THAT KEEP ONE GLOBAL FIFO ORDER. ShardedJobManager KEEPS IT PER
+	// SHARD, AND EVEN WITH ONE SHARD A JOB THAT THE SHARD'S SERVERS COULD NOT YET SATISFY
+	// WAITS IN THE ROUTER'S OWN QUEUE, SO IT IS ONLY GIVEN THE CONCURRENT CHECK.
+	public boolean modelCheck(String name, Supplier<AsyncManager> factory, int rounds, int ops) {
+		long operations = 0;
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			Random random = new Random(seed * 1_000_003 + round);
+			AsyncManager manager = factory.get();
+			Model model = new Model();
+			ArrayList<String> assigned = new ArrayList<>();
+
+			int[][] ids = new int[TYPES.length][SERVERS_PER_TYPE];
+			for (int type = 0; type < TYPES.length; type++) {
+				for (int i = 0; i < SERVERS_PER_TYPE; i++) {
+					ids[type][i] = random.nextInt(1_000);
+				}
+			}
+
+			for (int op = 0; op < ops; op++, operations++) {
+				String description;
+				List<String> expected;
+				int type = random.nextInt(TYPES.length);
+				int id = ids[type][random.nextInt(SERVERS_PER_TYPE)];
+				if (random.nextInt(4) != 0 && !model.isIdle(type, id)) {
+					String server = TYPES[type];
+					description = "serverLogin(" + server + ", " + id + ")";
+					expected = model.login(type, id);
+					manager.serverLoginAsync(server, id, jobName -> assigned.add(jobName + "/" + server + "/" + id));
+				} else {
+					int[] counts = randomCounts(random, type);
+					JobRequest job = newJob("job" + op, counts);
+					description = "specifyJob(" + job + ")";
+					expected = model.submit(job.jobName, counts);
+					manager.specifyJob(job);
+				}
+
+				// THE SAME MULTISET: A DUPLICATE WOULD BE A SERVER ASSIGNED TWICE
+				ArrayList<String> actual = new ArrayList<>(assigned);
+				Collections.sort(actual);
+				Collections.sort(expected);
+				assigned.clear();
+				if (!actual.equals(expected)) {
+					report(name, operations + 1, start, false);
+					failures.add(name + ": seed " + seed + ", round " + round + ", op " + op + " " + description
+							+ "\n    expected " + expected + "\n    but got  " + actual);
+					return false;
+				}
+			}
+		}
+		report(name, operations, start, true);
+		return true;
+	}
+
+	// BLOCKING MODEL CHECK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// THE MODEL CHECK FOR StripedJobManager, WHOSE LOGINS BLOCK: THE SAME RANDOM
+	// OPERATIONS, BUT EACH LOGIN RUNS ON A THREAD OF ITS OWN THAT RECORDS THE JOB IT IS
+	// GIVEN. BEFORE THE NEXT OPERATION THE HARNESS WAITS FOR THE MANAGER TO SETTLE (SEE
+	// settle), SO ONLY ONE OPERATION IS EVER IN FLIGHT AND THE ORDER IS CHECKED AS
+	// EXACTLY AS IN THE MODEL CHECK. AN ASSIGNMENT THE MODEL DID NOT EXPECT SHOWS UP
+	// AFTER THE OPERATION THAT MADE IT AT THE LATEST.
+	// AT THE END OF A ROUND ONE JOB PER TYPE TAKES THE SERVERS STILL IDLE, SO EVERY
+	// LOGIN THREAD MUST HAVE RETURNED.
+	public boolean blockingModelCheck(String name, Supplier<StripedJobManager> factory, int rounds, int ops) {
+		long operations = 0;
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			Random random = new Random(seed * 1_000_003 + round);
+			StripedJobManager manager = factory.get();
+			Model model = new Model();
+			ConcurrentLinkedQueue<String> assigned = new ConcurrentLinkedQueue<>();
+			ArrayList<Thread> logins = new ArrayList<>();
+
+			int[][] ids = new int[TYPES.length][SERVERS_PER_TYPE];
+			for (int type = 0; type < TYPES.length; type++) {
+				for (int i = 0; i < SERVERS_PER_TYPE; i++) {
+					ids[type][i] = random.nextInt(1_000);
+				}
+			}
+
+			for (int op = 0; op < ops + TYPES.length; op++, operations++) {
+				String description;
+				List<String> expected;
+				int type = random.nextInt(TYPES.length);
+				int id = ids[type][random.nextInt(SERVERS_PER_TYPE)];
+				if (op >= ops) {
+					// DRAINING: A JOB FOR EVERY IDLE SERVER OF ONE TYPE
+					int[] counts = new int[TYPES.length];
+					counts[op - ops] = model.idleCount(op - ops);
+					if (counts[op - ops] == 0) {
+						continue;
+					}
+					JobRequest job = newJob("drain" + (op - ops), counts);
+					description = "specifyJob(" + job + ")";
+					expected = model.submit(job.jobName, counts);
+					manager.specifyJob(job);
+				} else if (random.nextInt(4) != 0 && !model.isIdle(type, id)) {
+					String server = TYPES[type];
+					description = "serverLogin(" + server + ", " + id + ")";
+					expected = model.login(type, id);
+					Thread login = new Thread(() -> assigned.add(manager.serverLogin(server, id) + "/" + server + "/" + id));
+					login.setDaemon(true);
+					login.start();
+					logins.add(login);
+				} else {
+					int[] counts = randomCounts(random, type);
+					JobRequest job = newJob("job" + op, counts);
+					description = "specifyJob(" + job + ")";
+					expected = model.submit(job.jobName, counts);
+					manager.specifyJob(job);
+				}
+
+				List<String> actual = settle(manager, model, assigned, expected.size());
+				Collections.sort(expected);
+				if (actual == null || !actual.equals(expected)) {
+					report(name, operations + 1, start, false);
+					failures.add(name + ": seed " + seed + ", round " + round + ", op " + op + " " + description
+							+ "\n    expected " + expected + "\n    but got  "
+							+ (actual == null ? "no settled state within " + STALL_SECONDS + "s" : actual));
+					return false;
+				}
+			}
+
+			for (Thread login : logins) {
+				try {
+					login.join(TimeUnit.SECONDS.toMillis(STALL_SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (login.isAlive()) {
+					report(name, operations, start, false);
+					failures.add(name + ": seed " + seed + ", round " + round + " a login never returned");
+					return false;
+				}
+			}
+		}
+		report(name, operations, start, true);
+		return true;
+	}
+
+	// SETTLING
+	// WAITS UNTIL `expected` ASSIGNMENTS HAVE COME BACK FROM THE LOGIN THREADS AND THE
+	// MANAGER HAS AS MANY IDLE SERVERS OF EACH TYPE AS THE MODEL (A LOGIN THAT RUNS NO
+	// JOB SHOWS ONLY AS ONE MORE IDLE SERVER). RETURNS THE ASSIGNMENTS, SORTED, OR NULL
+	// IF THAT HAS NOT HAPPENED WITHIN STALL_SECONDS.
+	private static List<String> settle(StripedJobManager manager, Model model, ConcurrentLinkedQueue<String> assigned,
+			int expected) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STALL_SECONDS);
+		while (true) {
+			boolean settled = assigned.size() >= expected;
+			for (int t = 0; t < TYPES.length && settled; t++) {
+				settled = manager.getIdleServerCount(TYPES[t]) == model.idleCount(t);
+			}
+			if (settled) {
+				ArrayList<String> actual = new ArrayList<>();
+				for (String assignment; (assignment = assigned.poll()) != null;) {
+					actual.add(assignment);
+				}
+				Collections.sort(actual);
+				return actual;
+			}
+			if (System.nanoTime() - deadline > 0) {
+				return null;
+			}
+			LockSupport.parkNanos(20_000);
+		}
+	}
+
+	// A RANDOM JOB: 1 TO MAX_COUNT SERVERS OF `type`, AND HALF THE TIME OF ONE OTHER TYPE TOO
+	private static int[] randomCounts(Random random, int type) {
+		int[] counts = new int[TYPES.length];
+		counts[type] = 1 + random.nextInt(MAX_COUNT);
+		if (random.nextBoolean()) {
+			int other = (type + 1 + random.nextInt(TYPES.length - 1)) % TYPES.length;
+			counts[other] = 1 + random.nextInt(MAX_COUNT);
+		}
+		return counts;
+	}
+
+	private static JobRequest newJob(String jobName, int[] counts) {
+		JobRequest job = new JobRequest(jobName);
+		for (int t = 0; t < TYPES.length; t++) {
+			if (counts[t] > 0) {
+				job.put(TYPES[t], counts[t]);
+			}
+		}
+		return job;
+	}
+
+	// CONCURRENT CHECK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// ONE THREAD PER SERVER LOGS IN OVER AND OVER (EACH LOGIN FINISHES ITS LAST JOB),
+	// WHILE `submitters` THREADS EACH SPECIFY `jobsPerSubmitter` RANDOM JOBS. EVERY
+	// JOB FITS IN THE SERVERS THERE ARE, SO ALL OF THEM MUST EVENTUALLY RUN.
+	// EVERY ASSIGNMENT IS CHECKED AS IT IS SEEN (A KNOWN JOB, OF A TYPE IT NEEDS, NOT
+	// MORE SERVERS THAN IT ASKED FOR), AND ONCE ALL THE SERVERS THE JOBS NEED HAVE
+	// BEEN ASSIGNED EVERY JOB MUST HAVE EXACTLY ITS REQUIREMENTS.
+	// FINALLY ONE JOB PER TYPE NEEDING EVERY SERVER OF THE TYPE IS SPECIFIED, WHICH
+	// ONLY RUNS IF ALL THE SERVERS HAVE COME BACK, AND STOPS THE SERVER THREADS.
+	public boolean concurrentCheck(String name, Supplier<Manager> factory, int submitters, int jobsPerSubmitter) {
+		Manager manager = factory.get();
+		Random random = new Random(seed);
+		ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+		AtomicLong operations = new AtomicLong();
+
+		// THE WHOLE WORKLOAD IS MADE UP FRONT, SO THE THREADS ONLY READ IT
+		HashMap<String, int[]> required = new HashMap<>();
+		HashMap<String, AtomicIntegerArray> granted = new HashMap<>();
+		JobRequest[][] jobs = new JobRequest[submitters][jobsPerSubmitter];
+		int demand = 0;
+		for (int s = 0; s < submitters; s++) {
+			for (int j = 0; j < jobsPerSubmitter; j++) {
+				JobRequest job = new JobRequest("s" + s + "-job" + j);
+				int[] counts = new int[TYPES.length];
+				for (int t = 0; t < TYPES.length; t++) {
+					if (t == j % TYPES.length || random.nextInt(3) == 0) {
+						counts[t] = 1 + random.nextInt(MAX_COUNT);
+						job.put(TYPES[t], counts[t]);
+						demand += counts[t];
+					}
+				}
+				jobs[s][j] = job;
+				required.put(job.jobName, counts);
+				granted.put(job.jobName, new AtomicIntegerArray(TYPES.length));
+			}
+		}
+		CountDownLatch outstanding = new CountDownLatch(demand);
+
+		// SERVER THREADS ARE DAEMONS, SO A MANAGER THAT LOSES A WAKE-UP CANNOT HANG THE HARNESS
+		ArrayList<Thread> servers = new ArrayList<>();
+		for (int t = 0; t < TYPES.length; t++) {
+			for (int i = 0; i < SERVERS_PER_TYPE; i++) {
+				int type = t;
+				int id = t * 100 + i;
+				Thread server = new Thread(() -> {
+					while (true) {
+						String jobName = manager.serverLogin(TYPES[type], id);
+						operations.incrementAndGet();
+						if (jobName.equals("stop-" + TYPES[type])) {
+							return;
+						}
+						int[] counts = required.get(jobName);
+						if (counts == null) {
+							violations.add(TYPES[type] + " " + id + " was given unknown job " + jobName);
+						} else if (granted.get(jobName).incrementAndGet(type) > counts[type]) {
+							violations.add(jobName + " was given more " + TYPES[type] + "s than the " + counts[type]
+									+ " it needs");
+						}
+						outstanding.countDown();
+					}
+				});
+				server.setDaemon(true);
+				servers.add(server);
+			}
+		}
+
+		long start = System.nanoTime();
+		for (Thread server : servers) {
+			server.start();
+		}
+		Thread[] submitting = new Thread[submitters];
+		for (int s = 0; s < submitters; s++) {
+			JobRequest[] batch = jobs[s];
+			submitting[s] = new Thread(() -> {
+				for (JobRequest job : batch) {
+					manager.specifyJob(job);
+					operations.incrementAndGet();
+				}
+			});
+			submitting[s].setDaemon(true);
+			submitting[s].start();
+		}
+
+		boolean finished = awaitProgress(outstanding);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long opCount = operations.get();
+
+		if (!finished) {
+			violations.add(outstanding.getCount() + " of " + demand + " server assignments never happened");
+		}
+		for (Map.Entry<String, int[]> job : required.entrySet()) {
+			AtomicIntegerArray got = granted.get(job.getKey());
+			boolean none = true;
+			boolean all = true;
+			for (int t = 0; t < TYPES.length; t++) {
+				none &= got.get(t) == 0;
+				all &= got.get(t) == job.getValue()[t];
+			}
+			if (!all && !(none && !finished)) {
+				violations.add(job.getKey() + " holds only part of its servers " + got + " of "
+						+ Arrays.toString(job.getValue()));
+			}
+		}
+
+		if (finished) {
+			for (String type : TYPES) {
+				JobRequest stop = new JobRequest("stop-" + type);
+				stop.put(type, SERVERS_PER_TYPE);
+				manager.specifyJob(stop);
+			}
+			for (Thread server : servers) {
+				try {
+					server.join(TimeUnit.SECONDS.toMillis(STALL_SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if (server.isAlive()) {
+					violations.add("not every server came back idle: the final stop jobs were never released");
+					break;
+				}
+			}
+		}
+
+		boolean passed = violations.isEmpty();
+		System.out.printf("%-24s %10d %12.0f %8s%n", name, opCount, opCount / seconds, passed ? "ok" : "FAILED");
+		for (String violation : violations) {
+			failures.add(name + ": seed " + seed + ", " + violation);
+		}
+		return passed;
+	}
+
+	// WAITS FOR THE LATCH, GIVING UP ONLY WHEN IT HAS NOT MOVED FOR STALL_SECONDS
+	private static boolean awaitProgress(CountDownLatch latch) {
+		long last = latch.getCount();
+		try {
+			while (!latch.await(STALL_SECONDS, TimeUnit.SECONDS)) {
+				if (latch.getCount() == last) {
+					return false;
+				}
+				last = latch.getCount();
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	// ADMISSION CHECK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// EACH SCENARIO SUBMITS A FEW JOBS TO A FRESH JobManager AND RETURNS WHAT HAPPENED
+	// AS A STRING: THE JOBS REJECTED, THEN THE JOBS THE LOGINS RAN. ANY OTHER EXCEPTION
+	// IS A FAILURE.
+	public boolean admissionCheck() {
+		long start = System.nanoTime();
+		boolean passed = admissionScenario("reject when full", "rejected [c], ran [a, b]", manager -> {
+			manager.setQueueLimit(2);
+		}, "a:X", "b:X", "c:X")
+				& admissionScenario("shed the oldest job", "rejected [], ran [b, c]", manager -> {
+					manager.setQueueLimit(2);
+					manager.setAdmissionPolicy(AdmissionPolicy.SHED_OLDEST);
+				}, "a:X", "b:X", "c:X")
+				& admissionScenario("shed the oldest job of the full type", "rejected [], ran [x, y2]", manager -> {
+					manager.setQueueLimit("Y", 1);
+					manager.setAdmissionPolicy(AdmissionPolicy.SHED_OLDEST);
+				}, "y1:Y", "x:X", "y2:Y")
+				& admissionScenario("shed with a global limit of 0", "rejected [a, b], ran []", manager -> {
+					manager.setQueueLimit(0);
+					manager.setAdmissionPolicy(AdmissionPolicy.SHED_OLDEST);
+				}, "a:X", "b:Y")
+				& admissionScenario("shed with a type limit of 0", "rejected [y], ran [x]", manager -> {
+					manager.setQueueLimit("Y", 0);
+					manager.setAdmissionPolicy(AdmissionPolicy.SHED_OLDEST);
+				}, "x:X", "y:Y");
+		report("JobManager", 5, start, passed);
+		return passed;
+	}
+
+	// JOBS ARE GIVEN AS "name:type", ONE SERVER EACH. ONCE ALL ARE SUBMITTED ONE SERVER
+	// OF EACH TYPE LOGS IN PER JOB, SO EVERY JOB THAT WAS ADMITTED RUNS.
+	private boolean admissionScenario(String scenario, String expected, Consumer<JobManager> setup, String... jobs) {
+		JobManager manager = new JobManager();
+		setup.accept(manager);
+		ArrayList<String> rejected = new ArrayList<>();
+		ArrayList<String> ran = new ArrayList<>();
+		String actual;
+		try {
+			for (String job : jobs) {
+				String[] nameAndType = job.split(":");
+				JobRequest request = new JobRequest(nameAndType[0]);
+				request.put(nameAndType[1], 1);
+				try {
+					manager.specifyJob(request);
+				} catch (JobRejectedException e) {
+					rejected.add(nameAndType[0]);
+				}
+			}
+			for (int id = 0; id < jobs.length; id++) {
+				for (String type : new String[] { "X", "Y" }) {
+					manager.serverLoginAsync(type, id, ran::add);
+				}
+			}
+			Collections.sort(ran);
+			actual = "rejected " + rejected + ", ran " + ran;
+		} catch (RuntimeException e) {
+			actual = e.toString();
+		}
+		if (!actual.equals(expected)) {
+			failures.add("admission, " + scenario + ":\n    expected " + expected + "\n    but got  " + actual);
+			return false;
+		}
+		return true;
+	}
+
+	// JOURNAL CHECK
+	// --------------------------------------------------------------------------------------------------------------------------
+	// QUEUES RANDOM JOBS OF ONE TO THREE TYPES (WITH LONG TYPE NAMES, SO THE TYPE RECORDS
+	// TAKE UP ROOM) THROUGH A JOURNAL WITH THE SMALLEST SEGMENTS, LETS SOME SERVERS TAKE
+	// A FEW OF THEM, CLOSES THE JOURNAL AND OPENS IT AGAIN. THE JOBS RECOVERED MUST BE
+	// EXACTLY THE ONES STILL QUEUED, IN FIFO ORDER, AND A NEW JobManager MUST QUEUE THEM.
+	public boolean journalCheck(String name, JobJournal.Durability durability, int checkpointEvery) {
+		long start = System.nanoTime();
+		Random random = new Random(seed);
+		String[] types = new String[5];
+		for (int t = 0; t < types.length; t++) {
+			types[t] = TYPES[t % TYPES.length] + "-" + "x".repeat(40 + random.nextInt(40)) + t;
+		}
+		int jobs = 300;
+		Path directory = null;
+		String failure = null;
+		try {
+			directory = Files.createTempDirectory("journal-check");
+			JobJournal journal = JobJournal.open(directory, durability, 4096, checkpointEvery);
+			JobManager manager = new JobManager(false, journal);
+			LinkedHashMap<String, String> queued = new LinkedHashMap<>();
+			for (int j = 0; j < jobs; j++) {
+				JobRequest job = new JobRequest("job" + j);
+				for (int k = 1 + random.nextInt(3); k > 0; k--) {
+					job.put(types[random.nextInt(types.length)], 1 + random.nextInt(MAX_COUNT));
+				}
+				queued.put(job.jobName, new TreeMap<>(job).toString());
+				manager.specifyJob(job);
+				if (random.nextInt(10) == 0) {
+					String type = types[random.nextInt(types.length)];
+					manager.serverLoginAsync(type, j, queued::remove);
+				}
+			}
+			int segments = 0;
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+				for (Path file : files) {
+					segments++;
+				}
+			}
+			journal.close();
+
+			JobJournal reopened = JobJournal.open(directory, durability, 4096, checkpointEvery);
+			LinkedHashMap<String, String> recovered = new LinkedHashMap<>();
+			for (JobJournal.RecoveredJob job : reopened.getRecoveredJobs()) {
+				recovered.put(job.getJob().jobName, new TreeMap<>(job.getJob()).toString());
+			}
+			int requeued = new JobManager(false, reopened).getPendingJobCount();
+			reopened.close();
+			if (checkpointEvery == Integer.MAX_VALUE && segments < 3) {
+				failure = "the log only took " + segments + " segments";
+			} else if (!new ArrayList<>(recovered.entrySet()).equals(new ArrayList<>(queued.entrySet()))) {
+				failure = "recovered " + recovered.size() + " of " + queued.size() + " queued jobs, first difference "
+						+ firstDifference(new ArrayList<>(queued.entrySet()), new ArrayList<>(recovered.entrySet()));
+			} else if (requeued != queued.size()) {
+				failure = "a new JobManager queued " + requeued + " of the " + queued.size() + " jobs recovered";
+			}
+		} catch (IOException | RuntimeException e) {
+			failure = e.toString();
+		} finally {
+			deleteDirectory(directory);
+		}
+		if (failure != null) {
+			failures.add(name + ": seed " + seed + " " + failure);
+		}
+		report(name, jobs, start, failure == null);
+		return failure == null;
+	}
+
+	private static String firstDifference(List<?> expected, List<?> actual) {
+		for (int i = 0; i < Math.max(expected.size(), actual.size()); i++) {
+			Object wanted = i < expected.size() ? expected.get(i) : null;
+			Object got = i < actual.size() ? actual.get(i) : null;
+			if (!Objects.equals(wanted, got)) {
+				return "at " + i + ":\n    expected " + wanted + "\n    but got  " + got;
+			}
+		}
+		return "none";
+	}
+
+	private static void deleteDirectory(Path directory) {
+		if (directory == null) {
+			return;
+		}
+		try {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void report(String name, long operations, long start, boolean passed) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-24s %10d %12.0f %8s%n", name, operations, operations / seconds, passed ? "ok" : "FAILED");
+	}
+
+	// MODEL
+	// THE SPECIFICATION, WRITTEN AS PLAINLY AS POSSIBLE: AFTER EVERY LOGIN OR JOB, THE
+	// PENDING JOBS ARE SCANNED IN THE ORDER THEY WERE SPECIFIED AND EACH ONE THAT THE
+	// IDLE SERVERS CAN FULLY SATISFY IS GIVEN THE HIGHEST-ID SERVERS OF EACH TYPE.
+	// RETURNS THE ASSIGNMENTS AS "job/type/id".
+	private static class Model {
+		private final ArrayList<TreeSet<Integer>> idle = new ArrayList<>();
+		private final ArrayList<String> pendingNames = new ArrayList<>();
+		private final ArrayList<int[]> pendingCounts = new ArrayList<>();
+
+		public Model() {
+			for (int t = 0; t < TYPES.length; t++) {
+				idle.add(new TreeSet<>());
+			}
+		}
+
+		public boolean isIdle(int type, int id) {
+			return idle.get(type).contains(id);
+		}
+
+		public int idleCount(int type) {
+			return idle.get(type).size();
+		}
+
+		public List<String> login(int type, int id) {
+			idle.get(type).add(id);
+			return match();
+		}
+
+		public List<String> submit(String jobName, int[] counts) {
+			pendingNames.add(jobName);
+			pendingCounts.add(counts);
+			return match();
+		}
+
+		private List<String> match() {
+			ArrayList<String> assigned = new ArrayList<>();
+			for (int j = 0; j < pendingNames.size(); j++) {
+				int[] counts = pendingCounts.get(j);
+				boolean fits = true;
+				for (int t = 0; t < TYPES.length; t++) {
+					fits &= idle.get(t).size() >= counts[t];
+				}
+				if (!fits) {
+					continue;
+				}
+				for (int t = 0; t < TYPES.length; t++) {
+					for (int n = 0; n < counts[t]; n++) {
+						assigned.add(pendingNames.get(j) + "/" + TYPES[t] + "/" + idle.get(t).pollLast());
+					}
+				}
+				pendingNames.remove(j);
+				pendingCounts.remove(j);
+				j--;
+			}
+			return assigned;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+// A Manager that stripes its locking by server type.
+//
+// Like JobManager, the only thread-safe classes used are ReentrantLock and its Condition variables
+// (one lock per server type, plus one small lock taken only to add a stripe to the table),
+// signalAll() is not used and no thread ever sleeps or spins.
+//
+// Logins for unrelated server types take different locks and so no longer serialize against each
+// other. A job that needs several server types takes the locks of all of its types, always in the
+// same global order (sorted by type name), so it is allocated all-or-nothing without deadlock.
+//
+// As in JobManager, each stripe indexes its pending jobs by how many of its servers they need, so a
+// login only looks at the jobs it has just satisfied on its type and only locks their stripes.
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.*;
+
+public class StripedJobManager implements BatchManager {
+
+	// LOCKING FOR ADDING A STRIPE TO THE TABLE
+	// NEVER HELD WHILE WAITING FOR A STRIPE LOCK, SO IT CAN BE TAKEN INSIDE ONE
+    private final ReentrantLock registryLock = new ReentrantLock();
+
+	// ONE STRIPE PER SERVER TYPE, CREATED ON FIRST USE AND NEVER REMOVED.
+	// THE MAP IS NEVER CHANGED ONCE PUBLISHED: A NEW STRIPE IS ADDED TO A COPY UNDER
+	// registryLock, SO FINDING AN EXISTING STRIPE TAKES NO LOCK AT ALL.
+    private volatile Map<String, Stripe> stripes = Collections.emptyMap();
+
+	// GLOBAL LOCK ORDER FOR THE STRIPES
+    private static final Comparator<Stripe> LOCK_ORDER = Comparator.comparing(Stripe::getType);
+
+	// FIFO ORDER FOR THE JOBS. JOBS WITH THE SAME SEQUENCE NUMBER SHARE NO STRIPE (SEE
+	// queueJob), SO THEIR FIRST STRIPES DIFFER AND BREAK THE TIE
+    private static final Comparator<StripedJob> FIFO_ORDER =
+            Comparator.comparingLong(StripedJob::getSeq).thenComparing(job -> job.stripes.get(0), LOCK_ORDER);
+
+    @Override
+    public void specifyJob(JobRequest job) {
+        specifyJobs(Collections.singletonList(job));
+    }
+
+	// SPECIFYING A BATCH OF JOBS
+	// QUEUES THE WHOLE BATCH WHILE HOLDING THE STRIPES OF EVERY JOB IN IT, RELEASING
+	// EACH JOB THAT CAN RUN AS IT GOES.
+	// NO JOB ALREADY QUEUED CAN RUN (EVERY LOGIN RELEASES THE JOBS IT SATISFIES), SO
+	// A NEW JOB THAT CAN RUN IS THE EARLIEST ONE THAT CAN AND IS RELEASED AT ONCE.
+    @Override
+    public void specifyJobs(Collection<JobRequest> jobs) {
+        TreeSet<Stripe> batchStripes = new TreeSet<>(LOCK_ORDER);
+        ArrayList<StripedJob> batch = new ArrayList<>();
+        for (JobRequest job : jobs) {
+            TreeMap<Stripe, Integer> needs = new TreeMap<>(LOCK_ORDER);
+            for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+                if (requirement.getValue() > 0) {
+                    needs.put(stripe(requirement.getKey()), requirement.getValue());
+                }
+            }
+            // A JOB NEEDING NO SERVERS IS SATISFIED STRAIGHT AWAY
+            if (!needs.isEmpty()) {
+                batchStripes.addAll(needs.keySet());
+                batch.add(new StripedJob(job, new ArrayList<>(needs.keySet()), new ArrayList<>(needs.values())));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        lockAll(batchStripes);
+        try {
+            for (StripedJob pending : batch) {
+                queueJob(pending);
+                if (canSatisfyJob(pending)) {
+                    assignJob(pending);
+                }
+            }
+        } finally {
+            unlockAll(batchStripes);
+        }
+    }
+
+	// LOGGING IN
+	// FIRST LOCKS THE SERVER'S STRIPE TOGETHER WITH THE STRIPES OF EVERY JOB ONE MORE
+	// IDLE SERVER THERE WOULD SATISFY ON THAT TYPE (SEE lockForLogin), THEN ADDS THE
+	// SERVER AND RELEASES THOSE JOBS THAT CAN NOW RUN, ALL UNDER THE SAME LOCKS.
+    @Override
+    public String serverLogin(String type, int ID) {
+        Stripe stripe = stripe(type);
+        ServerThread server = new ServerThread(stripe, ID);
+        TreeSet<Stripe> held = lockForLogin(stripe);
+        try {
+            stripe.availableServers.add(server);
+            releaseSatisfied(stripe);
+        } finally {
+        	// THE SERVER'S OWN STRIPE STAYS LOCKED TO WAIT ON ITS CONDITION
+            held.remove(stripe);
+            unlockAll(held);
+        }
+
+        try {
+        	// WAITING FOR AN JOB TO BE AVAILABLE
+            while (!server.isAssigned()) {
+                server.waitForAssignment();
+            }
+            return server.getAssignedJob();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+	// IDLE SERVERS OF THE TYPE
+    public int getIdleServerCount(String type) {
+        Stripe stripe = stripes.get(type);
+        if (stripe == null) {
+            return 0;
+        }
+        stripe.lock.lock();
+        try {
+            return stripe.availableServers.size();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+	// LOCKING FOR A LOGIN
+	// LOCKS THE STRIPE AND EVERY OTHER STRIPE NEEDED BY A JOB THAT IS ONE IDLE SERVER
+	// SHORT ON IT, IN THE GLOBAL ORDER, AND RETURNS THEM ALL LOCKED.
+	// WHICH JOBS THOSE ARE CAN ONLY BE SEEN WITH THE STRIPE LOCKED, AND MAY CHANGE WHILE
+	// IT IS UNLOCKED TO TAKE THE OTHERS IN ORDER, SO THE CHECK IS REPEATED EACH TIME
+	// WITH THE LARGER SET UNTIL NOTHING IS MISSING. NOTHING IS CHANGED UNTIL THEN, SO NO
+	// LATER JOB CAN BE RELEASED AHEAD OF ONE WHOSE STRIPES WERE NOT YET HELD. THE SET
+	// ONLY GROWS, SO THIS ENDS.
+    private TreeSet<Stripe> lockForLogin(Stripe stripe) {
+        TreeSet<Stripe> held = new TreeSet<>(LOCK_ORDER);
+        held.add(stripe);
+        while (true) {
+            lockAll(held);
+            ArrayList<Stripe> missing = new ArrayList<>();
+            Bucket bucket = stripe.jobsByCount.get(stripe.availableServers.size() + 1);
+            if (bucket != null) {
+                for (Stripe other : bucket.otherStripes.keySet()) {
+                    if (!held.contains(other)) {
+                        missing.add(other);
+                    }
+                }
+            }
+            if (missing.isEmpty()) {
+                return held;
+            }
+            unlockAll(held);
+            held.addAll(missing);
+        }
+    }
+
+	// RELEASING THE SATISFIED JOBS
+	// THE IDLE COUNT OF THE STRIPE HAS JUST RISEN BY ONE, SO ONLY THE JOBS NEEDING
+	// EXACTLY THAT MANY OF ITS SERVERS HAVE BECOME SATISFIED ON IT. THEY ARE TRIED IN
+	// FIFO ORDER; ASSIGNING SERVERS ONLY REMOVES IDLE SERVERS, SO ONE PASS IS ENOUGH.
+	// CALLER MUST HOLD THE LOCKS OF ALL THOSE JOBS' STRIPES (SEE lockForLogin)
+    private void releaseSatisfied(Stripe stripe) {
+        Bucket bucket = stripe.jobsByCount.get(stripe.availableServers.size());
+        if (bucket == null) {
+            return;
+        }
+        for (StripedJob pending : bucket.jobs.toArray(new StripedJob[0])) {
+            if (canSatisfyJob(pending)) {
+                assignJob(pending);
+            }
+        }
+    }
+
+	// QUEUEING THE JOB
+	// GIVES THE JOB A SEQUENCE NUMBER ONE ABOVE THE LAST ONE GIVEN ON ANY OF ITS
+	// STRIPES AND FILES IT UNDER THE COUNT IT NEEDS ON EACH. JOBS SHARING A STRIPE SO
+	// GET THEIR NUMBERS IN THE ORDER THEY WERE QUEUED THERE, WITHOUT A GLOBAL COUNTER.
+	// CALLER MUST HOLD THE LOCKS OF ALL THE JOB'S STRIPES
+    private void queueJob(StripedJob pending) {
+        long seq = 0;
+        for (Stripe stripe : pending.stripes) {
+            seq = Math.max(seq, stripe.lastSeq + 1);
+        }
+        pending.seq = seq;
+        for (int i = 0; i < pending.stripes.size(); i++) {
+            Stripe stripe = pending.stripes.get(i);
+            stripe.lastSeq = seq;
+            stripe.jobsByCount.computeIfAbsent(pending.counts.get(i), c -> new Bucket()).add(pending, stripe);
+        }
+    }
+
+	// CAN SATISFY THE JOBS
+	// CALLER MUST HOLD THE LOCKS OF ALL THE JOB'S STRIPES
+    private boolean canSatisfyJob(StripedJob pending) {
+        for (int i = 0; i < pending.stripes.size(); i++) {
+            if (pending.stripes.get(i).availableServers.size() < pending.counts.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+	// ASSGNING THE JOBS
+	// TAKES THE HIGHEST-ID SERVERS OF EACH TYPE, SIGNALS THEM AND REMOVES THE JOB
+	// FROM EVERY STRIPE IT WAS QUEUED ON.
+	// CALLER MUST HOLD THE LOCKS OF ALL THE JOB'S STRIPES
+    private void assignJob(StripedJob pending) {
+        for (int i = 0; i < pending.stripes.size(); i++) {
+            Stripe stripe = pending.stripes.get(i);
+            int count = pending.counts.get(i);
+            for (int n = 0; n < count; n++) {
+                stripe.availableServers.poll().assignJob(pending.job.jobName);
+            }
+            Bucket bucket = stripe.jobsByCount.get(count);
+            bucket.remove(pending, stripe);
+            if (bucket.jobs.isEmpty()) {
+                stripe.jobsByCount.remove(count);
+            }
+        }
+    }
+
+	// FINDS THE STRIPE OF A TYPE, ADDING IT UNDER registryLock THE FIRST TIME
+    private Stripe stripe(String type) {
+        Stripe stripe = stripes.get(type);
+        if (stripe != null) {
+            return stripe;
+        }
+        registryLock.lock();
+        try {
+            stripe = stripes.get(type);
+            if (stripe == null) {
+                HashMap<String, Stripe> grown = new HashMap<>(stripes);
+                stripe = new Stripe(type);
+                grown.put(type, stripe);
+                stripes = grown;
+            }
+            return stripe;
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+	// THE SETS ARE SORTED BY LOCK_ORDER, SO EVERY THREAD LOCKS IN THE SAME ORDER
+    private static void lockAll(TreeSet<Stripe> sorted) {
+        for (Stripe stripe : sorted) {
+            stripe.lock.lock();
+        }
+    }
+
+    private static void unlockAll(TreeSet<Stripe> sorted) {
+        for (Stripe stripe : sorted.descendingSet()) {
+            stripe.lock.unlock();
+        }
+    }
+
+	// STRIPE
+	// THE LOCK, IDLE SERVERS (HIGHEST ID FIRST) AND PENDING JOBS OF ONE SERVER TYPE.
+	// A JOB NEEDING SEVERAL TYPES IS QUEUED ON EACH OF THEIR STRIPES, UNDER THE NUMBER
+	// OF SERVERS OF THAT TYPE IT NEEDS, IN FIFO ORDER.
+    private static class Stripe {
+        private final String type;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<ServerThread> availableServers =
+                new PriorityQueue<>(Comparator.comparingInt(ServerThread::getID).reversed());
+        private final HashMap<Integer, Bucket> jobsByCount = new HashMap<>();
+        // THE LAST SEQUENCE NUMBER GIVEN TO A JOB QUEUED HERE
+        private long lastSeq = 0;
+
+        public Stripe(String type) {
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+	// BUCKET
+	// THE JOBS NEEDING ONE COUNT OF A STRIPE'S SERVERS, IN FIFO ORDER, AND HOW MANY OF
+	// THEM NEED EACH OTHER STRIPE, SO A LOGIN SEES WHICH LOCKS IT NEEDS WITHOUT LOOKING
+	// AT EVERY JOB
+    private static class Bucket {
+        private final TreeSet<StripedJob> jobs = new TreeSet<>(FIFO_ORDER);
+        private final HashMap<Stripe, Integer> otherStripes = new HashMap<>();
+
+        public void add(StripedJob pending, Stripe own) {
+            jobs.add(pending);
+            for (Stripe other : pending.stripes) {
+                if (other != own) {
+                    otherStripes.merge(other, 1, Integer::sum);
+                }
+            }
+        }
+
+        public void remove(StripedJob pending, Stripe own) {
+            jobs.remove(pending);
+            for (Stripe other : pending.stripes) {
+                if (other != own) {
+                    otherStripes.merge(other, -1, (a, b) -> a + b == 0 ? null : a + b);
+                }
+            }
+        }
+    }
+
+	// STRIPED JOB
+	// A QUEUED JOB WITH ITS FIFO SEQUENCE NUMBER AND ITS STRIPES (IN LOCK ORDER) AND COUNTS.
+    private static class StripedJob {
+        private final JobRequest job;
+        private final ArrayList<Stripe> stripes;
+        private final ArrayList<Integer> counts;
+        private long seq;
+
+        public StripedJob(JobRequest job, ArrayList<Stripe> stripes, ArrayList<Integer> counts) {
+            this.job = job;
+            this.stripes = stripes;
+            this.counts = counts;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+    }
+
+    private static class ServerThread {
+        private final int id;
+        private String assignedJob;
+        private final Condition condition;
+        private boolean assigned;
+
+        public ServerThread(Stripe stripe, int id) {
+            this.id = id;
+            this.assigned = false;
+            this.assignedJob = "";
+            this.condition = stripe.lock.newCondition();
+        }
+
+        public int getID() {
+            return id;
+        }
+
+        public boolean isAssigned() {
+            return assigned;
+        }
+
+        public String getAssignedJob() {
+            return assignedJob;
+        }
+
+        public void assignJob(String jobName) {
+            this.assignedJob = jobName;
+            this.assigned = true;
+            this.condition.signal();
+        }
+
+        // UNINTERRUPTIBLE: AN INTERRUPT STAYS SET FOR THE CALLER, RATHER THAN MAKING
+        // EVERY LATER await THROW AT ONCE AND THE LOGIN LOOP SPIN
+        public void waitForAssignment() {
+            condition.awaitUninterruptibly();
+        }
+    }
+}
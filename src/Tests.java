@@ -17,6 +17,7 @@
 // v001 11/10/2024
 
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
 import java.util.*;
 
 public class Tests {
@@ -24,13 +25,28 @@ public class Tests {
 	ConcurrentLinkedQueue<String> events; // "wait-free" FIFO queue
 	String threadName = Thread.currentThread().getName();
 
+	// Creates the Manager under test (a JobManager unless another implementation is given)
+	Supplier<Manager> managerFactory;
+
+	public Tests() {
+		this(JobManager::new);
+	}
+
+	public Tests(Supplier<Manager> managerFactory) {
+		this.managerFactory = managerFactory;
+	}
+
+	Manager newManager() {
+		return managerFactory.get();
+	}
+
 	// TEST CASE UR1
 	// --------------------------------------------------------------------------------------------------------------------------
 	// COMPUTESERVER LOGINS ARE FOLLOWED BY AN O
 	public void userRequirement1() {
 		// INITIALIZE EVENT LOG AND JOB MANAGER
 		events = new ConcurrentLinkedQueue<String>();
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		events.add(threadName + ": --- Testing UR1: ComputeServer Logins followed by One Job Request ---");
 
@@ -96,7 +112,7 @@ public class Tests {
 		// c) the names of the threads ('Thread-0' etc. can change)
 
 		events = new ConcurrentLinkedQueue<String>(); // We are using this
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		// Start four "ComputeServer"s and one "StorageServer":
 		events.add(threadName + ": starting 4 ComputeServers and 1 StorageServer:"); // "wait-free" FIFO queue
@@ -139,7 +155,7 @@ public class Tests {
 //	public void userRequirement2() {
 //		// INITIALIZE EVENT LOG AND JOB MANAGER
 //		events = new ConcurrentLinkedQueue<String>();
-//		JobManager manager = new JobManager();
+//		Manager manager = newManager();
 //
 //		// LOGGINT AN EVENT FOR THE STARTING THE TEST
 //		events.add(threadName + ": --- Testing UR2: Mixed Server Logins followed by Multiple Job requests ---");
@@ -210,7 +226,7 @@ public class Tests {
 		// INITIALIZING THE EVENT LOG AND JOB MANAGER
 		events = new ConcurrentLinkedQueue<String>();
 		// CREATING A NEW JOBMANAGER INSTANCE
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		events.add(threadName + ": --- Testing UR3: Multiple Job Requests followed by Mixed Server Logins ---");
 
@@ -257,7 +273,7 @@ public class Tests {
 	public void userRequirement4() {
 		// INITIALIZE EVENT LOG AND JOB MANAGER
 		events = new ConcurrentLinkedQueue<String>();
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		// LOGGING THE START OF THE TEST CASE
 		events.add(threadName + ": --- Testing UR4: Any order of Server Logins and Job Requests ---");
@@ -331,7 +347,7 @@ public class Tests {
 	public void userRequirement5() {
 		// INITIALIZE EVENT LOG AND JOB MANAGER
 		events = new ConcurrentLinkedQueue<String>();
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		events.add(threadName + ": --- Testing UR5: Returned JobNames must match Job Specifications ---");
 
@@ -424,7 +440,7 @@ public class Tests {
 		// Note that the names of the threads ('Thread-0' etc. can change)
 		//
 		events = new ConcurrentLinkedQueue<String>(); // "wait-free" FIFO queue
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		JobRequest job01 = new JobRequest("job01");
 		job01.put("ComputeServer", 2);
@@ -475,7 +491,7 @@ public class Tests {
 	public void userRequirement6() {
 		// INITIALIZE A THREAD-SAFE QUEUE TO STORE EVENTS FOR LOGGING
 		events = new ConcurrentLinkedQueue<>();
-		JobManager manager = new JobManager();
+		Manager manager = newManager();
 
 		// ADDING LOG MESSAGE TO INDICATE TESTING OF UR6 WITH MULTIPLE SERVER TYPES
 		events.add(threadName
@@ -542,12 +558,12 @@ public class Tests {
 	}
 
 	private class ServerThread extends Thread {
-		JobManager manager;
+		Manager manager;
 		String type;
 		int ID = 100;
 		String threadName;
 
-		ServerThread(JobManager manager, String type, int ID) {
+		ServerThread(Manager manager, String type, int ID) {
 			this.manager = manager;
 			this.type = type;
 			this.ID = ID;
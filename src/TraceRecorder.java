@@ -0,0 +1,347 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// TRACE RECORDER
+// RECORDS EVERY specifyJob AND serverLogin CALL MADE THROUGH A Manager WRAPPED BY wrap(),
+// WITH ITS TIME, INTO A BINARY TRACE FILE THAT TraceReplay CAN PLAY BACK INTO ANY Manager.
+//
+//	int magic ("JMTR") | int version, THEN ONE RECORD PER EVENT:
+//
+//	SPECIFY   byte kind, long nanos, utf jobName, int priority, short n, n x (utf type, int count)
+//	LOGIN     byte kind, long nanos, utf type, int ID				(serverLogin CALLED)
+//	ASSIGNED  byte kind, long nanos, utf type, int ID, utf jobName	(serverLogin RETURNED)
+//
+// TIMES ARE NANOSECONDS SINCE THE RECORDER WAS OPENED.
+//
+// A CALLING THREAD NEVER TAKES A LOCK OR TOUCHES THE FILE: IT CLAIMS A SLOT IN A
+// FIXED-SIZE RING WITH ONE compareAndSet, FILLS IN THE PREALLOCATED EVENT THERE AND
+// PUBLISHES IT. A FLUSHER THREAD DRAINS THE RING IN CLAIM ORDER AND WRITES THE RECORDS
+// OUT EVERY FLUSH INTERVAL. WHEN THE RING IS FULL THE EVENT IS DROPPED AND COUNTED
+// RATHER THAN HOLDING UP THE CALLER (getDroppedCount()). A SPECIFY EVENT KEEPS THE
+// JobRequest ITSELF UNTIL IT IS WRITTEN, SO A JOB MUST NOT BE CHANGED ONCE SPECIFIED.
+// THIS CLASS SITS OUTSIDE THE MANAGER, SO IT IS FREE TO USE ATOMICS; THE MANAGER BEING
+// TRACED IS UNCHANGED.
+public class TraceRecorder implements AutoCloseable {
+
+	static final int MAGIC = 0x4A4D5452;	// "JMTR"
+	static final int VERSION = 1;
+
+	public static final byte SPECIFY = 1;
+	public static final byte LOGIN = 2;
+	public static final byte ASSIGNED = 3;
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	private static final long FLUSH_INTERVAL_NANOS = 10_000_000L;
+
+	// THE RING: SLOT i HOLDS EVENT seq WHEN published[i] == seq + 1
+	private final Event[] ring;
+	private final int mask;
+	private final AtomicLongArray published;
+	private final AtomicLong claimed = new AtomicLong();
+	// EVENTS THE FLUSHER HAS WRITTEN OUT; ONLY THE FLUSHER WRITES IT
+	private volatile long consumed = 0;
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile boolean closed = false;
+
+	private final long startNanos = System.nanoTime();
+	private final DataOutputStream out;
+	private IOException failure;
+
+	// THE FLUSHER WAITS HERE BETWEEN DRAINS, AND close() WAKES IT
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition closing = lock.newCondition();
+	private final Thread flusher;
+
+	// CREATES (OR REPLACES) THE TRACE FILE AND STARTS THE FLUSHER
+	public static TraceRecorder open(Path file) throws IOException {
+		return open(file, DEFAULT_CAPACITY);
+	}
+
+	// `capacity` IS THE NUMBER OF RING SLOTS, ROUNDED UP TO A POWER OF TWO
+	public static TraceRecorder open(Path file, int capacity) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		return new TraceRecorder(out, capacity);
+	}
+
+	private TraceRecorder(DataOutputStream out, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.out = out;
+		this.ring = new Event[size];
+		this.mask = size - 1;
+		this.published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Event();
+		}
+		this.flusher = new Thread(this::flushLoop, "trace-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	// A Manager THAT RECORDS EVERY CALL AND THEN PASSES IT ON
+	public Manager wrap(Manager manager) {
+		return new RecordingManager(manager);
+	}
+
+	public long getRecordedCount() {
+		return consumed;
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	// WRITES OUT EVERY EVENT PUBLISHED SO FAR AND CLOSES THE FILE. EVENTS FROM CALLS STILL
+	// IN FLIGHT ARE NOT RECORDED.
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			closing.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	// READS A WHOLE TRACE BACK, IN THE ORDER IT WAS WRITTEN. A RECORD CUT SHORT AT THE END
+	// (A TRACE FROM A PROCESS THAT DIED) IS IGNORED.
+	public static List<Event> read(Path file) throws IOException {
+		ArrayList<Event> events = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a job manager trace");
+			}
+			while (true) {
+				Event event = new Event();
+				try {
+					event.readFrom(in);
+				} catch (EOFException e) {
+					return events;
+				}
+				events.add(event);
+			}
+		}
+	}
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+	// RECORDING ONE EVENT
+	// CLAIMS THE NEXT SLOT UNLESS THE RING IS FULL. THE compareAndSet ONLY FAILS WHEN
+	// ANOTHER THREAD CLAIMED THE SAME SLOT FIRST, AND THEN THE NEXT ONE IS TRIED.
+	private void record(byte kind, String type, int ID, JobRequest job, String jobName) {
+		long nanos = System.nanoTime() - startNanos;
+		if (closed) {
+			return;
+		}
+		long seq;
+		do {
+			seq = claimed.get();
+			if (seq - consumed >= ring.length) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!claimed.compareAndSet(seq, seq + 1));
+		int slot = (int) seq & mask;
+		Event event = ring[slot];
+		event.kind = kind;
+		event.nanos = nanos;
+		event.type = type;
+		event.ID = ID;
+		event.job = job;
+		event.jobName = jobName;
+		published.set(slot, seq + 1);
+	}
+
+	// FLUSHER
+	// DRAINS THE RING EVERY FLUSH INTERVAL, AND ONE LAST TIME WHEN THE RECORDER IS CLOSED
+	private void flushLoop() {
+		boolean stopping = false;
+		while (!stopping) {
+			lock.lock();
+			try {
+				if (!closed) {
+					closing.awaitNanos(FLUSH_INTERVAL_NANOS);
+				}
+				stopping = closed;
+			} catch (InterruptedException e) {
+				stopping = true;
+			} finally {
+				lock.unlock();
+			}
+			drain();
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	// WRITES OUT THE PUBLISHED EVENTS IN CLAIM ORDER, STOPPING AT THE FIRST SLOT WHOSE
+	// EVENT IS STILL BEING FILLED IN. EACH SLOT IS HANDED BACK ONLY ONCE IT IS WRITTEN.
+	private void drain() {
+		long seq = consumed;
+		while (published.get((int) seq & mask) == seq + 1) {
+			Event event = ring[(int) seq & mask];
+			if (failure == null) {
+				try {
+					event.writeTo(out);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			event.job = null;
+			consumed = ++seq;
+		}
+		if (failure == null) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	// RECORDING MANAGER
+	// THE LOGIN IS RECORDED TWICE, WHEN IT IS CALLED AND WHEN IT RETURNS, SO THE TRACE
+	// ALSO HOLDS HOW LONG EACH SERVER WAITED AND WHICH JOB IT WAS GIVEN.
+	private class RecordingManager implements Manager {
+		private final Manager manager;
+
+		public RecordingManager(Manager manager) {
+			this.manager = manager;
+		}
+
+		@Override
+		public void specifyJob(JobRequest job) {
+			record(SPECIFY, null, 0, job, job.jobName);
+			manager.specifyJob(job);
+		}
+
+		@Override
+		public String serverLogin(String type, int ID) {
+			record(LOGIN, type, ID, null, null);
+			String jobName = manager.serverLogin(type, ID);
+			record(ASSIGNED, type, ID, null, jobName);
+			return jobName;
+		}
+	}
+
+	// EVENT
+	// ONE RECORDED CALL. THE RING'S EVENTS ARE REUSED; THOSE FROM read() ARE NOT.
+	public static class Event {
+		private byte kind;
+		private long nanos;
+		private String type;
+		private int ID;
+		private JobRequest job;
+		private String jobName;
+
+		public byte getKind() {
+			return kind;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		// THE SERVER TYPE OF A LOGIN OR ASSIGNED EVENT
+		public String getType() {
+			return type;
+		}
+
+		public int getID() {
+			return ID;
+		}
+
+		// THE JOB OF A SPECIFY EVENT
+		public JobRequest getJob() {
+			return job;
+		}
+
+		// THE JOB OF A SPECIFY EVENT, OR THE JOB A SERVER WAS GIVEN IN AN ASSIGNED EVENT
+		public String getJobName() {
+			return jobName;
+		}
+
+		private void writeTo(DataOutputStream out) throws IOException {
+			out.writeByte(kind);
+			out.writeLong(nanos);
+			if (kind == SPECIFY) {
+				out.writeUTF(job.jobName);
+				out.writeInt(job.priority);
+				out.writeShort(job.size());
+				for (Map.Entry<String, Integer> requirement : job.entrySet()) {
+					out.writeUTF(requirement.getKey());
+					out.writeInt(requirement.getValue());
+				}
+				return;
+			}
+			out.writeUTF(type);
+			out.writeInt(ID);
+			if (kind == ASSIGNED) {
+				out.writeUTF(jobName);
+			}
+		}
+
+		private void readFrom(DataInputStream in) throws IOException {
+			kind = in.readByte();
+			nanos = in.readLong();
+			if (kind == SPECIFY) {
+				jobName = in.readUTF();
+				job = new JobRequest(jobName, in.readInt());
+				for (int n = in.readShort(); n > 0; n--) {
+					job.put(in.readUTF(), in.readInt());
+				}
+				return;
+			}
+			if (kind != LOGIN && kind != ASSIGNED) {
+				throw new IOException("unknown trace record kind " + kind);
+			}
+			type = in.readUTF();
+			ID = in.readInt();
+			if (kind == ASSIGNED) {
+				jobName = in.readUTF();
+			}
+		}
+
+		@Override
+		public String toString() {
+			switch (kind) {
+			case SPECIFY:
+				return nanos + " specifyJob(" + job + ")";
+			case LOGIN:
+				return nanos + " serverLogin(" + type + ", " + ID + ")";
+			default:
+				return nanos + " " + type + " " + ID + " -> " + jobName;
+			}
+		}
+	}
+}
@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// TRACE REPLAY
+// PLAYS A TRACE RECORDED BY TraceRecorder INTO ANY Manager, SO DIFFERENT MATCHERS CAN BE
+// COMPARED ON EXACTLY THE SAME LOAD:
+//
+//	java TraceReplay <trace> [speed] [JobManager|StripedJobManager|ShardedJobManager ...]
+//
+// THE JOBS ARE SPECIFIED FROM ONE THREAD, IN THEIR RECORDED ORDER. EACH SERVER GETS A
+// THREAD OF ITS OWN THAT MAKES THE SERVER'S RECORDED LOGINS IN ORDER; A LOGIN IS NOT
+// MADE BEFORE THE SERVER'S PREVIOUS ONE HAS RETURNED, SO A SLOWER MANAGER SEES THE SAME
+// CLOSED LOOP THE ORIGINAL SERVERS RAN IN RATHER THAN A PILE OF DUPLICATE LOGINS.
+// ANOTHER MANAGER MAY SHARE THE JOBS OUT AMONG THE SERVERS DIFFERENTLY, SO A SERVER
+// THAT HAS MADE ALL ITS RECORDED LOGINS KEEPS LOGGING IN UNTIL EVERY JOB HAS RUN.
+// EVERY CALL IS MADE AT ITS RECORDED TIME DIVIDED BY `speed` (1 IS THE ORIGINAL PACE,
+// 10 IS TEN TIMES FASTER) OR AS SOON AS POSSIBLE WHEN `speed` IS 0.
+//
+// REPORTS THE LATENCY OF specifyJob CALLS, THE TIME FROM SPECIFYING EACH JOB UNTIL ITS
+// LAST SERVER WAS RELEASED, AND THE SAME JOB WAIT AS ORIGINALLY RECORDED.
+public class TraceReplay {
+
+	// GIVES UP WAITING FOR THE REPLAY TO FINISH ONCE NO JOB HAS RUN FOR THIS LONG
+	private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	// SPECIFIED ONCE EVERY JOB HAS RUN, ONE PER SERVER THREAD, TO SEND THE SERVERS HOME
+	private static final String END = "<end of replay>";
+
+	private final ArrayList<TraceRecorder.Event> specifies = new ArrayList<>();
+	private final LinkedHashMap<String, ArrayList<TraceRecorder.Event>> loginsByServer = new LinkedHashMap<>();
+	private final LatencyHistogram recordedJobWait = new LatencyHistogram();
+	private final long firstNanos;
+
+	public TraceReplay(List<TraceRecorder.Event> events) {
+		HashMap<String, Long> specifiedAt = new HashMap<>();
+		HashMap<String, Integer> unassigned = new HashMap<>();
+		long first = Long.MAX_VALUE;
+		for (TraceRecorder.Event event : events) {
+			first = Math.min(first, event.getNanos());
+			if (event.getKind() == TraceRecorder.SPECIFY) {
+				specifies.add(event);
+				specifiedAt.put(event.getJobName(), event.getNanos());
+				unassigned.put(event.getJobName(), serverCount(event.getJob()));
+			} else if (event.getKind() == TraceRecorder.LOGIN) {
+				loginsByServer.computeIfAbsent(event.getType() + "#" + event.getID(), s -> new ArrayList<>()).add(event);
+			} else {
+				Integer left = unassigned.get(event.getJobName());
+				if (left != null && left == 1) {
+					recordedJobWait.record(event.getNanos() - specifiedAt.get(event.getJobName()));
+				}
+				if (left != null) {
+					unassigned.put(event.getJobName(), left - 1);
+				}
+			}
+		}
+		// THE RING IS DRAINED IN CLAIM ORDER, WHICH CAN DIFFER FROM TIME ORDER BY A FEW NANOSECONDS
+		specifies.sort(Comparator.comparingLong(TraceRecorder.Event::getNanos));
+		for (ArrayList<TraceRecorder.Event> logins : loginsByServer.values()) {
+			logins.sort(Comparator.comparingLong(TraceRecorder.Event::getNanos));
+		}
+		this.firstNanos = first == Long.MAX_VALUE ? 0 : first;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("usage: java TraceReplay <trace> [speed] [JobManager|StripedJobManager|ShardedJobManager ...]");
+			return;
+		}
+		Path file = Paths.get(args[0]);
+		double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+		List<String> managers = args.length > 2 ? Arrays.asList(args).subList(2, args.length)
+				: Arrays.asList("JobManager", "StripedJobManager", "ShardedJobManager");
+
+		TraceReplay replay = new TraceReplay(TraceRecorder.read(file));
+		System.out.println(replay.getJobCount() + " jobs, " + replay.getServerCount() + " servers, replayed at "
+				+ (speed > 0 ? speed + "x" : "full speed"));
+		printHeader();
+		replay.printRecorded();
+		for (String name : managers) {
+			replay.replay(name, managerFactory(name), speed).print();
+		}
+	}
+
+	public int getJobCount() {
+		return specifies.size();
+	}
+
+	public int getServerCount() {
+		return loginsByServer.size();
+	}
+
+	public LatencyHistogram getRecordedJobWait() {
+		return recordedJobWait;
+	}
+
+	public static Supplier<Manager> managerFactory(String name) {
+		switch (name) {
+		case "JobManager":
+			return JobManager::new;
+		case "JobManager:COMBINING":
+			return () -> new JobManager(LockMode.COMBINING);
+		case "StripedJobManager":
+			return StripedJobManager::new;
+		case "ShardedJobManager":
+			return () -> new ShardedJobManager(4);
+		default:
+			throw new IllegalArgumentException("unknown manager " + name);
+		}
+	}
+
+	public static void printHeader() {
+		System.out.printf("%-20s %10s %10s %10s %10s %10s %12s%n", "manager", "jobs run", "wait p50", "wait p99",
+				"wait p99.9", "wait max", "specify p99");
+	}
+
+	// THE JOB WAITS AS RECORDED, IN THE SAME COLUMNS AS A REPLAY
+	public void printRecorded() {
+		System.out.printf("%-20s %10d %10s %10s %10s %10s %12s%n", "(recorded)", recordedJobWait.getCount(),
+				micros(recordedJobWait.getValueAtPercentile(50)), micros(recordedJobWait.getValueAtPercentile(99)),
+				micros(recordedJobWait.getValueAtPercentile(99.9)), micros(recordedJobWait.getMax()), "-");
+	}
+
+	// REPLAYING THE TRACE
+	// RETURNS ONCE EVERY JOB IN THE TRACE HAS RUN (AND THE SERVER THREADS HAVE BEEN SENT
+	// HOME WITH ONE LAST JOB EACH), OR WHEN THE REPLAY STOPS MAKING PROGRESS (THE RESULT
+	// THEN SHOWS FEWER JOBS RUN). THE SERVER THREADS ARE DAEMONS, SO A LOGIN LEFT WAITING
+	// BY A MANAGER THAT STALLED DOES NOT KEEP THE PROCESS ALIVE.
+	public Result replay(String name, Supplier<Manager> factory, double speed) {
+		Manager manager = factory.get();
+		Result result = new Result(name);
+		ConcurrentHashMap<String, Long> specifiedAt = new ConcurrentHashMap<>();
+		ConcurrentHashMap<String, AtomicInteger> unassigned = new ConcurrentHashMap<>();
+		for (TraceRecorder.Event specify : specifies) {
+			unassigned.put(specify.getJobName(), new AtomicInteger(serverCount(specify.getJob())));
+		}
+		AtomicLong jobsLeft = new AtomicLong(unassigned.size());
+		AtomicLong released = new AtomicLong();
+		long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+
+		ArrayList<Thread> servers = new ArrayList<>();
+		ArrayList<String> serverTypes = new ArrayList<>();
+		for (ArrayList<TraceRecorder.Event> logins : loginsByServer.values()) {
+			String type = logins.get(0).getType();
+			int ID = logins.get(0).getID();
+			serverTypes.add(type);
+			servers.add(new Thread(() -> {
+				for (int k = 0; k < logins.size() || jobsLeft.get() > 0; k++) {
+					if (k < logins.size()) {
+						waitUntil(due(start, logins.get(k).getNanos(), speed));
+					}
+					String jobName = manager.serverLogin(type, ID);
+					long now = System.nanoTime();
+					if (jobName.equals(END)) {
+						return;
+					}
+					AtomicInteger left = unassigned.get(jobName);
+					if (left != null && left.decrementAndGet() == 0) {
+						result.record(result.jobWait, now - specifiedAt.get(jobName));
+						jobsLeft.decrementAndGet();
+						result.progress();
+					}
+					released.incrementAndGet();
+				}
+			}));
+		}
+		ArrayList<Thread> threads = new ArrayList<>(servers);
+		threads.add(new Thread(() -> {
+			for (TraceRecorder.Event specify : specifies) {
+				waitUntil(due(start, specify.getNanos(), speed));
+				long now = System.nanoTime();
+				specifiedAt.put(specify.getJobName(), now);
+				manager.specifyJob(specify.getJob().clone());
+				result.record(result.specifyCall, System.nanoTime() - now);
+				// A JOB NEEDING NO SERVERS IS NEVER HANDED TO A LOGIN, SO IT IS DONE ONCE
+				// SPECIFIED (WITH NO WAIT RECORDED, AS IN THE RECORDED TRACE)
+				if (unassigned.get(specify.getJobName()).compareAndSet(0, -1)) {
+					jobsLeft.decrementAndGet();
+					result.progress();
+				}
+			}
+		}));
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		result.awaitJobs(jobsLeft);
+		result.released = released.get();
+		result.jobsRun = unassigned.size() - jobsLeft.get();
+		result.seconds = (System.nanoTime() - start) / 1e9;
+
+		// A SERVER STILL LOGGED IN IS HANDED THE END JOB; ONE THAT HAS ALREADY GONE LEAVES
+		// ITS END JOB QUEUED, WHICH DOES NO HARM AS THE MANAGER IS THROWN AWAY
+		if (jobsLeft.get() == 0) {
+			for (int i = 0; i < servers.size(); i++) {
+				if (servers.get(i).isAlive()) {
+					JobRequest end = new JobRequest(END);
+					end.put(serverTypes.get(i), 1);
+					manager.specifyJob(end);
+				}
+			}
+		}
+		return result;
+	}
+
+	// ==================================== PRIVATE METHODS & CLASSES
+	// ===============================================
+
+	private long due(long start, long nanos, double speed) {
+		return speed > 0 ? start + (long) ((nanos - firstNanos) / speed) : start;
+	}
+
+	private static void waitUntil(long deadline) {
+		for (long wait = deadline - System.nanoTime(); wait > 0; wait = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(wait);
+		}
+	}
+
+	private static int serverCount(JobRequest job) {
+		int count = 0;
+		for (int required : job.values()) {
+			count += Math.max(0, required);
+		}
+		return count;
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1fus", nanos / 1e3);
+	}
+
+	// RESULT
+	// THE LATENCIES OF ONE REPLAY. LatencyHistogram IS NOT THREAD-SAFE, SO THE REPLAY'S
+	// THREADS RECORD INTO IT UNDER A LOCK, AFTER TAKING THEIR TIMINGS.
+	public static class Result {
+		private final String name;
+		private final LatencyHistogram specifyCall = new LatencyHistogram();
+		private final LatencyHistogram jobWait = new LatencyHistogram();
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition progressed = lock.newCondition();
+		private long released;
+		private long jobsRun;
+		private double seconds;
+
+		private Result(String name) {
+			this.name = name;
+		}
+
+		public LatencyHistogram getSpecifyCall() {
+			return specifyCall;
+		}
+
+		// FROM specifyJob UNTIL THE JOB'S LAST SERVER RETURNED FROM serverLogin
+		public LatencyHistogram getJobWait() {
+			return jobWait;
+		}
+
+		// SERVERS RELEASED, AND JOBS THAT GOT ALL OF THEIR SERVERS
+		public long getReleased() {
+			return released;
+		}
+
+		public long getJobsRun() {
+			return jobsRun;
+		}
+
+		public double getSeconds() {
+			return seconds;
+		}
+
+		public void print() {
+			System.out.printf("%-20s %10d %10s %10s %10s %10s %12s%n", name, jobsRun,
+					micros(jobWait.getValueAtPercentile(50)), micros(jobWait.getValueAtPercentile(99)),
+					micros(jobWait.getValueAtPercentile(99.9)), micros(jobWait.getMax()),
+					micros(specifyCall.getValueAtPercentile(99)));
+		}
+
+		private void record(LatencyHistogram histogram, long nanos) {
+			lock.lock();
+			try {
+				histogram.record(nanos);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void progress() {
+			lock.lock();
+			try {
+				progressed.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// ONLY THE REPLAYING THREAD WAITS HERE, SO ONE signal() PER FINISHED JOB IS ENOUGH
+		private void awaitJobs(AtomicLong jobsLeft) {
+			lock.lock();
+			try {
+				long lastProgress = System.nanoTime();
+				long lastCount = jobsLeft.get();
+				while (jobsLeft.get() > 0) {
+					progressed.awaitNanos(STALL_NANOS);
+					if (jobsLeft.get() != lastCount) {
+						lastCount = jobsLeft.get();
+						lastProgress = System.nanoTime();
+					} else if (System.nanoTime() - lastProgress >= STALL_NANOS) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}